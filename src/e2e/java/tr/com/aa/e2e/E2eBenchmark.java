@@ -0,0 +1,286 @@
+package tr.com.aa.e2e;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import org.apache.commons.io.FileUtils;
+import tr.com.aa.client.Client;
+import tr.com.aa.client.ClientFactory;
+import tr.com.aa.client.ClientFactory.Protocol;
+import tr.com.aa.connection.Connection;
+import tr.com.aa.e2e.Workload.WorkFile;
+
+/**
+ * End to end throughput benchmark. Starts the embedded servers on loopback, generates every
+ * workload once and uploads and downloads it over every protocol with {@link Client} and
+ * {@link Connection}, the same way an application does. Each file is one uploadFile or downloadFile
+ * call, timed on its own for the latency percentiles .
+ *
+ * <p>A summary is printed to the console and every run is written as one line of JSON to the
+ * output file. Options, all optional:
+ * <pre>
+ *   --protocols=ftp,ftps,sftp      protocols to run, all by default
+ *   --workloads=large,medium,small,deep
+ *                                  workloads to run, all by default
+ *   --scale=1                      factor applied to the workloads, e.g. 0.01 for a quick run
+ *   --connections=1                connections transferring files at the same time
+ *   --output=e2e-results.json      JSON lines output
+ *   --dir=/tmp                     where data is generated, the system temp dir by default
+ * </pre>
+ */
+public class E2eBenchmark {
+
+  private static final String UPLOAD = "upload";
+  private static final String DOWNLOAD = "download";
+  private static final int REPORTED_FAILURES = 5;
+  private static final String TEMP_PREFIX = "ftp-e2e";
+
+  private final Options options;
+  private final EmbeddedServers servers;
+  private final Path serverRoot;
+  private final ClientFactory clientFactory = new ClientFactory();
+
+  E2eBenchmark(Options options, EmbeddedServers servers, Path serverRoot) {
+
+    this.options = options;
+    this.servers = servers;
+    this.serverRoot = serverRoot;
+  }
+
+  public static void main(String[] args) throws Exception {
+
+    Options options = Options.parse(args);
+    Path base = options.directory == null ? Files.createTempDirectory(TEMP_PREFIX)
+        : Files.createTempDirectory(options.directory, TEMP_PREFIX);
+    Path serverRoot = base.resolve("server");
+
+    if (options.output.getParent() != null) {
+      Files.createDirectories(options.output.getParent());
+    }
+
+    try (EmbeddedServers servers = new EmbeddedServers(serverRoot, base.resolve("work"));
+         PrintStream json = new PrintStream(Files.newOutputStream(options.output), true,
+             StandardCharsets.UTF_8.name())) {
+      servers.start();
+      E2eBenchmark benchmark = new E2eBenchmark(options, servers, serverRoot);
+
+      for (Workload workload : options.workloads) {
+        Path source = base.resolve("source").resolve(workload.getName());
+        System.out.printf("Generating %s workload at scale %s%n", workload.getName(),
+            options.scale);
+        List<WorkFile> files = workload.generate(source, options.scale);
+
+        for (Protocol protocol : options.protocols) {
+          String remoteRoot = "/" + protocol.name().toLowerCase(Locale.ROOT) + "-"
+              + workload.getName();
+          Path target = base.resolve("download").resolve(protocol.name().toLowerCase(Locale.ROOT));
+          try {
+            for (RunResult result : benchmark.run(protocol, workload, files, source, remoteRoot,
+                target)) {
+              System.out.println(result);
+              json.println(result.toJson());
+            }
+          } finally {
+            // keep the disk usage at one copy of the workload per side
+            FileUtils.deleteQuietly(serverRoot.resolve(remoteRoot.substring(1)).toFile());
+            FileUtils.deleteQuietly(target.toFile());
+          }
+        }
+        FileUtils.deleteQuietly(source.toFile());
+      }
+    } finally {
+      FileUtils.deleteQuietly(base.toFile());
+    }
+
+    System.out.println("Results written to " + options.output.toAbsolutePath());
+  }
+
+  private List<RunResult> run(Protocol protocol, Workload workload, List<WorkFile> files,
+                              Path source, String remoteRoot, Path target) throws Exception {
+
+    Set<String> remoteDirectories = new LinkedHashSet<>();
+    remoteDirectories.add(remoteRoot);
+    for (WorkFile file : files) {
+      remoteDirectories.add(remoteDirectory(remoteRoot, file));
+    }
+
+    List<RunResult> results = new ArrayList<>(2);
+    results.add(transfer(protocol, workload, UPLOAD, files, (connection, file) -> {
+      connection.uploadFile(source.resolve(file.getRelativePath()).toString(),
+          remoteDirectory(remoteRoot, file), false);
+      return Files.size(serverRoot.resolve(remoteRoot.substring(1))
+          .resolve(file.getRelativePath())) == file.getSize();
+    }, connection -> connection.ensureDirectories(remoteDirectories)));
+
+    results.add(transfer(protocol, workload, DOWNLOAD, files, (connection, file) -> {
+      Path local = target.resolve(file.getRelativePath());
+      connection.downloadFile(remoteRoot + "/" + file.getRelativePath(),
+          local.getParent().toString(), null, false, false);
+      return Files.exists(local) && Files.size(local) == file.getSize();
+    }, connection -> { }));
+
+    return results;
+  }
+
+  private RunResult transfer(Protocol protocol, Workload workload, String direction,
+                             List<WorkFile> files, FileAction action,
+                             ConnectionAction prepare) throws Exception {
+
+    Queue<WorkFile> queue = new ConcurrentLinkedQueue<>(files);
+    long[] latencies = new long[files.size()];
+    AtomicInteger transferred = new AtomicInteger();
+    AtomicInteger failures = new AtomicInteger();
+    LongAdder bytes = new LongAdder();
+    List<Client> clients = new ArrayList<>(options.connections);
+    ExecutorService workers = Executors.newFixedThreadPool(options.connections);
+
+    try {
+      List<Connection> connections = new ArrayList<>(options.connections);
+      for (int i = 0; i < options.connections; i++) {
+        Client client = clientFactory.createClient(protocol);
+        client.setHost(EmbeddedServers.HOST);
+        client.setPort(servers.getPort(protocol));
+        client.setCredentials(EmbeddedServers.USER, EmbeddedServers.PASSWORD);
+        clients.add(client);
+        connections.add(client.connect());
+      }
+
+      long started = System.nanoTime();
+      prepare.accept(connections.get(0));
+
+      List<Future<?>> futures = new ArrayList<>(connections.size());
+      for (Connection connection : connections) {
+        futures.add(workers.submit(() -> {
+          WorkFile file;
+          while ((file = queue.poll()) != null) {
+            long start = System.nanoTime();
+            boolean complete;
+            try {
+              complete = action.transfer(connection, file);
+            } catch (IOException | RuntimeException e) {
+              if (failures.get() < REPORTED_FAILURES) {
+                System.err.println("Unable to " + direction + " " + file.getRelativePath()
+                    + ": " + e);
+              }
+              complete = false;
+            }
+            if (complete) {
+              latencies[transferred.getAndIncrement()] = System.nanoTime() - start;
+              bytes.add(file.getSize());
+            } else {
+              failures.incrementAndGet();
+            }
+          }
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+      long elapsed = System.nanoTime() - started;
+
+      return new RunResult(protocol.name().toLowerCase(Locale.ROOT), workload.getName(),
+          direction, options.connections, bytes.sum(), elapsed,
+          Arrays.copyOf(latencies, transferred.get()), failures.get());
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("Benchmark worker failed", e.getCause());
+    } finally {
+      workers.shutdownNow();
+      for (Client client : clients) {
+        try {
+          client.disconnect();
+        } catch (RuntimeException e) {
+          System.err.println("Unable to disconnect: " + e);
+        }
+      }
+    }
+  }
+
+  private static String remoteDirectory(String remoteRoot, WorkFile file) {
+
+    return file.getDirectory().isEmpty() ? remoteRoot : remoteRoot + "/" + file.getDirectory();
+  }
+
+  private interface FileAction {
+
+    /**
+     * @return true if the file arrived complete .
+     */
+    boolean transfer(Connection connection, WorkFile file) throws IOException;
+  }
+
+  private interface ConnectionAction {
+
+    void accept(Connection connection);
+  }
+
+  static class Options {
+
+    private List<Protocol> protocols = Arrays.asList(Protocol.values());
+    private List<Workload> workloads = Arrays.asList(Workload.values());
+    private double scale = 1;
+    private int connections = 1;
+    private Path output = Paths.get("e2e-results.json");
+    private Path directory;
+
+    static Options parse(String[] args) {
+
+      Options options = new Options();
+      for (String arg : args) {
+        int equals = arg.indexOf('=');
+        if (!arg.startsWith("--") || equals < 0) {
+          throw new IllegalArgumentException("Expected --name=value but got " + arg);
+        }
+        String value = arg.substring(equals + 1);
+        switch (arg.substring(2, equals)) {
+          case "protocols":
+            options.protocols = new ArrayList<>();
+            for (String name : value.split(",")) {
+              options.protocols.add(Protocol.valueOf(name.trim().toUpperCase(Locale.ROOT)));
+            }
+            break;
+          case "workloads":
+            options.workloads = new ArrayList<>();
+            for (String name : value.split(",")) {
+              options.workloads.add(Workload.valueOf(name.trim().toUpperCase(Locale.ROOT)));
+            }
+            break;
+          case "scale":
+            options.scale = Double.parseDouble(value);
+            break;
+          case "connections":
+            options.connections = Integer.parseInt(value);
+            break;
+          case "output":
+            options.output = Paths.get(value);
+            break;
+          case "dir":
+            options.directory = Paths.get(value);
+            break;
+          default:
+            throw new IllegalArgumentException("Unknown option " + arg);
+        }
+      }
+      if (options.scale <= 0 || options.connections < 1) {
+        throw new IllegalArgumentException("scale must be positive and connections at least 1");
+      }
+      return options;
+    }
+  }
+}
@@ -0,0 +1,187 @@
+package tr.com.aa.e2e;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import org.apache.ftpserver.ConnectionConfigFactory;
+import org.apache.ftpserver.FtpServer;
+import org.apache.ftpserver.FtpServerFactory;
+import org.apache.ftpserver.ftplet.FtpException;
+import org.apache.ftpserver.ftplet.UserManager;
+import org.apache.ftpserver.listener.ListenerFactory;
+import org.apache.ftpserver.ssl.SslConfigurationFactory;
+import org.apache.ftpserver.usermanager.PropertiesUserManagerFactory;
+import org.apache.ftpserver.usermanager.impl.BaseUser;
+import org.apache.ftpserver.usermanager.impl.ConcurrentLoginPermission;
+import org.apache.ftpserver.usermanager.impl.WritePermission;
+import org.apache.sshd.common.file.virtualfs.VirtualFileSystemFactory;
+import org.apache.sshd.server.SshServer;
+import org.apache.sshd.server.keyprovider.SimpleGeneratorHostKeyProvider;
+import org.apache.sshd.server.subsystem.sftp.SftpSubsystemFactory;
+import tr.com.aa.client.ClientFactory.Protocol;
+
+/**
+ * In-process FTP, implicit FTPS (Apache FtpServer) and SFTP (Apache MINA SSHD) servers on the
+ * loopback interface, all serving the same directory to one user .
+ */
+public class EmbeddedServers implements Closeable {
+
+  public static final String HOST = "127.0.0.1";
+  public static final String USER = "bench";
+  public static final String PASSWORD = "bench";
+  private static final String KEYSTORE_PASSWORD = "benchmark";
+  private static final int MAX_LOGINS = 256;
+
+  private final Path root;
+  private final Path work;
+  private FtpServer ftpServer;
+  private SshServer sshServer;
+  private int ftpPort;
+  private int ftpsPort;
+  private int sftpPort;
+
+  /**
+   * @param root directory the servers serve .
+   * @param work directory for the host key and the keystore .
+   */
+  public EmbeddedServers(Path root, Path work) {
+
+    this.root = root;
+    this.work = work;
+  }
+
+  public void start() throws IOException {
+
+    Files.createDirectories(root);
+    Files.createDirectories(work);
+    startFtp();
+    startSftp();
+  }
+
+  public int getPort(Protocol protocol) {
+
+    switch (protocol) {
+      case FTP:
+        return ftpPort;
+      case FTPS:
+        return ftpsPort;
+      default:
+        return sftpPort;
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+
+    if (ftpServer != null) {
+      ftpServer.stop();
+    }
+    if (sshServer != null) {
+      sshServer.stop(true);
+    }
+  }
+
+  private void startFtp() throws IOException {
+
+    FtpServerFactory serverFactory = new FtpServerFactory();
+    UserManager userManager = new PropertiesUserManagerFactory().createUserManager();
+    BaseUser user = new BaseUser();
+    user.setName(USER);
+    user.setPassword(PASSWORD);
+    user.setHomeDirectory(root.toAbsolutePath().toString());
+    // 0 is no limit, every benchmark connection logs in as this user
+    user.setAuthorities(Arrays.asList(new WritePermission(), new ConcurrentLoginPermission(0, 0)));
+
+    ListenerFactory plain = new ListenerFactory();
+    plain.setServerAddress(HOST);
+    ftpPort = freePort();
+    plain.setPort(ftpPort);
+
+    ListenerFactory secure = new ListenerFactory();
+    secure.setServerAddress(HOST);
+    ftpsPort = freePort();
+    secure.setPort(ftpsPort);
+    SslConfigurationFactory ssl = new SslConfigurationFactory();
+    ssl.setKeystoreFile(createKeystore().toFile());
+    ssl.setKeystorePassword(KEYSTORE_PASSWORD);
+    secure.setSslConfiguration(ssl.createSslConfiguration());
+    // FtpsClient connects with implicit SSL
+    secure.setImplicitSsl(true);
+
+    try {
+      userManager.save(user);
+      serverFactory.setUserManager(userManager);
+      serverFactory.addListener("default", plain.createListener());
+      serverFactory.addListener("ftps", secure.createListener());
+      ConnectionConfigFactory connectionConfig = new ConnectionConfigFactory();
+      connectionConfig.setMaxLogins(MAX_LOGINS);
+      connectionConfig.setAnonymousLoginEnabled(false);
+      serverFactory.setConnectionConfig(connectionConfig.createConnectionConfig());
+      ftpServer = serverFactory.createServer();
+      ftpServer.start();
+    } catch (FtpException e) {
+      throw new IOException("Unable to start the embedded ftp server", e);
+    }
+  }
+
+  private void startSftp() throws IOException {
+
+    SimpleGeneratorHostKeyProvider hostKeys =
+        new SimpleGeneratorHostKeyProvider(work.resolve("hostkey.ser"));
+    // JSch 0.1.55 does not know the newer host key types
+    hostKeys.setAlgorithm("RSA");
+
+    sshServer = SshServer.setUpDefaultServer();
+    sshServer.setHost(HOST);
+    sftpPort = freePort();
+    sshServer.setPort(sftpPort);
+    sshServer.setKeyPairProvider(hostKeys);
+    sshServer.setPasswordAuthenticator(
+        (username, password, session) -> USER.equals(username) && PASSWORD.equals(password));
+    sshServer.setSubsystemFactories(Collections.singletonList(new SftpSubsystemFactory()));
+    sshServer.setFileSystemFactory(new VirtualFileSystemFactory(root.toAbsolutePath()));
+    sshServer.start();
+  }
+
+  /**
+   * A self signed key for the FTPS listener, made with the keytool of the running JDK .
+   */
+  private Path createKeystore() throws IOException {
+
+    Path keystore = work.resolve("ftps.jks");
+    if (Files.exists(keystore)) {
+      return keystore;
+    }
+
+    String keytool = Paths.get(System.getProperty("java.home"), "bin", "keytool").toString();
+    Process process = new ProcessBuilder(keytool, "-genkeypair", "-alias", "ftps",
+        "-keyalg", "RSA", "-keysize", "2048", "-validity", "365", "-dname", "CN=localhost",
+        "-storetype", "JKS", "-keystore", keystore.toString(),
+        "-storepass", KEYSTORE_PASSWORD, "-keypass", KEYSTORE_PASSWORD)
+        .redirectErrorStream(true)
+        .redirectOutput(new File(work.toFile(), "keytool.log"))
+        .start();
+    try {
+      if (process.waitFor() != 0) {
+        throw new IOException("keytool failed, see " + work.resolve("keytool.log"));
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while creating the keystore", e);
+    }
+    return keystore;
+  }
+
+  private static int freePort() throws IOException {
+
+    try (ServerSocket socket = new ServerSocket(0)) {
+      return socket.getLocalPort();
+    }
+  }
+}
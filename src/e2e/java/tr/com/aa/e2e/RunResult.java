@@ -0,0 +1,89 @@
+package tr.com.aa.e2e;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Outcome of one workload in one direction over one protocol, written as one line of JSON .
+ */
+public class RunResult {
+
+  private static final double NANOS_PER_SECOND = 1_000_000_000d;
+  private static final double NANOS_PER_MILLI = 1_000_000d;
+  private static final double BYTES_PER_MB = 1024d * 1024d;
+
+  private final String protocol;
+  private final String workload;
+  private final String direction;
+  private final int connections;
+  private final long bytes;
+  private final long elapsedNanos;
+  private final long[] latencyNanos;
+  private final int failures;
+
+  /**
+   * @param latencyNanos time of every file that was transferred, in any order .
+   */
+  RunResult(String protocol, String workload, String direction, int connections, long bytes,
+            long elapsedNanos, long[] latencyNanos, int failures) {
+
+    this.protocol = protocol;
+    this.workload = workload;
+    this.direction = direction;
+    this.connections = connections;
+    this.bytes = bytes;
+    this.elapsedNanos = elapsedNanos;
+    this.latencyNanos = latencyNanos.clone();
+    this.failures = failures;
+    Arrays.sort(this.latencyNanos);
+  }
+
+  public double getMegabytesPerSecond() {
+
+    return elapsedNanos == 0 ? 0 : bytes / BYTES_PER_MB / (elapsedNanos / NANOS_PER_SECOND);
+  }
+
+  public double getFilesPerSecond() {
+
+    return elapsedNanos == 0 ? 0 : latencyNanos.length / (elapsedNanos / NANOS_PER_SECOND);
+  }
+
+  /**
+   * @param percentile between 0 and 100 .
+   * @return per file latency at the percentile in milliseconds, nearest rank .
+   */
+  public double getLatencyMillis(double percentile) {
+
+    if (latencyNanos.length == 0) {
+      return 0;
+    }
+    int rank = (int) Math.ceil(percentile / 100 * latencyNanos.length);
+    return latencyNanos[Math.max(0, rank - 1)] / NANOS_PER_MILLI;
+  }
+
+  public int getFailures() {
+
+    return failures;
+  }
+
+  public String toJson() {
+
+    return String.format(Locale.ROOT, "{\"protocol\":\"%s\",\"workload\":\"%s\","
+            + "\"direction\":\"%s\",\"connections\":%d,\"files\":%d,\"failures\":%d,"
+            + "\"bytes\":%d,\"seconds\":%.3f,\"mbPerSecond\":%.2f,\"filesPerSecond\":%.1f,"
+            + "\"p50Millis\":%.3f,\"p99Millis\":%.3f,\"maxMillis\":%.3f}",
+        protocol, workload, direction, connections, latencyNanos.length, failures, bytes,
+        elapsedNanos / NANOS_PER_SECOND, getMegabytesPerSecond(), getFilesPerSecond(),
+        getLatencyMillis(50), getLatencyMillis(99), getLatencyMillis(100));
+  }
+
+  @Override
+  public String toString() {
+
+    return String.format(Locale.ROOT,
+        "%-5s %-7s %-9s %8d files %10.2f MB/s %10.1f files/s  p50 %9.3f ms  p99 %9.3f ms%s",
+        protocol, workload, direction, latencyNanos.length, getMegabytesPerSecond(),
+        getFilesPerSecond(), getLatencyMillis(50), getLatencyMillis(99),
+        failures == 0 ? "" : "  " + failures + " failed");
+  }
+}
@@ -0,0 +1,154 @@
+package tr.com.aa.e2e;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * The standard data sets of the end to end benchmark. Flat sets are split into directories of at
+ * most {@value #FILES_PER_DIRECTORY} files, the way they are usually stored on real servers .
+ */
+public enum Workload {
+
+  /**
+   * One file of 10 GB .
+   */
+  LARGE(1, 10L * 1024 * 1024 * 1024, 0, 0),
+  /**
+   * 10k files of 100 KB .
+   */
+  MEDIUM(10_000, 100 * 1024, 0, 0),
+  /**
+   * 1M files of 1 KB .
+   */
+  SMALL(1_000_000, 1024, 0, 0),
+  /**
+   * Binary tree of directories 12 levels deep with 2 files of 4 KB in each of them .
+   */
+  DEEP(2, 4 * 1024, 12, 2);
+
+  static final int FILES_PER_DIRECTORY = 1000;
+  private static final int BLOCK_SIZE = 1024 * 1024;
+
+  private final int files;
+  private final long fileSize;
+  private final int depth;
+  private final int fanOut;
+
+  Workload(int files, long fileSize, int depth, int fanOut) {
+
+    this.files = files;
+    this.fileSize = fileSize;
+    this.depth = depth;
+    this.fanOut = fanOut;
+  }
+
+  public String getName() {
+
+    return name().toLowerCase(Locale.ROOT);
+  }
+
+  /**
+   * Write the files of the workload below the root .
+   *
+   * @param root  local directory, created if missing .
+   * @param scale factor applied to the number of files of flat sets with many files and to the
+   *              size of single file sets, 1 for the full workload .
+   * @return the files written, relative to the root .
+   * @throws IOException .
+   */
+  public List<WorkFile> generate(Path root, double scale) throws IOException {
+
+    byte[] block = new byte[BLOCK_SIZE];
+    new Random(files).nextBytes(block);
+    List<WorkFile> written = new ArrayList<>();
+
+    if (depth > 0) {
+      generateTree(root, "", 0, block, written);
+      return written;
+    }
+
+    int count = files == 1 ? 1 : Math.max(1, (int) (files * scale));
+    long size = files == 1 ? Math.max(1, (long) (fileSize * scale)) : fileSize;
+    for (int i = 0; i < count; i++) {
+      String directory = count <= FILES_PER_DIRECTORY
+          ? "" : String.format("d%04d/", i / FILES_PER_DIRECTORY);
+      written.add(write(root, directory + String.format("f%07d.bin", i), size, block));
+    }
+    return written;
+  }
+
+  private void generateTree(Path root, String directory, int level, byte[] block,
+                            List<WorkFile> written) throws IOException {
+
+    for (int i = 0; i < files; i++) {
+      written.add(write(root, directory + "f" + i + ".bin", fileSize, block));
+    }
+    if (level == depth) {
+      return;
+    }
+    for (int i = 0; i < fanOut; i++) {
+      generateTree(root, directory + "l" + level + "_" + i + "/", level + 1, block, written);
+    }
+  }
+
+  private static WorkFile write(Path root, String relativePath, long size, byte[] block)
+      throws IOException {
+
+    Path file = root.resolve(relativePath);
+    Files.createDirectories(file.getParent());
+    try (OutputStream out = Files.newOutputStream(file)) {
+      for (long remaining = size; remaining > 0; remaining -= block.length) {
+        out.write(block, 0, (int) Math.min(block.length, remaining));
+      }
+    }
+    return new WorkFile(relativePath, size);
+  }
+
+  /**
+   * A file of a generated workload .
+   */
+  public static class WorkFile {
+
+    private final String relativePath;
+    private final long size;
+
+    WorkFile(String relativePath, long size) {
+
+      this.relativePath = relativePath;
+      this.size = size;
+    }
+
+    /**
+     * @return "/" separated path below the workload root .
+     */
+    public String getRelativePath() {
+
+      return relativePath;
+    }
+
+    public long getSize() {
+
+      return size;
+    }
+
+    /**
+     * @return "/" separated directory below the workload root, empty for the root itself .
+     */
+    public String getDirectory() {
+
+      int slash = relativePath.lastIndexOf('/');
+      return slash < 0 ? "" : relativePath.substring(0, slash);
+    }
+
+    public String getName() {
+
+      return relativePath.substring(relativePath.lastIndexOf('/') + 1);
+    }
+  }
+}
@@ -0,0 +1,139 @@
+package tr.com.aa.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.NullOutputStream;
+import org.apache.commons.net.io.Util;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import tr.com.aa.connection.FtpConnection;
+import tr.com.aa.util.ChannelCopier;
+
+/**
+ * The copy loops of FtpConnection: download copies the data stream into the local file, upload
+ * copies the local file into the data stream. The network is left out, an in-memory stream stands
+ * for the data connection of a download and a null stream for the one of an upload .
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class CopyLoopBenchmark {
+
+  @Param({"1048576", "67108864"})
+  private int size;
+
+  @Param({"65536", "262144"})
+  private int bufferSize;
+
+  private byte[] content;
+  private Path sourceFile;
+  private Path targetFile;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+
+    content = new byte[size];
+    new Random(42).nextBytes(content);
+    sourceFile = Files.createTempFile("copy-source", ".bin");
+    targetFile = Files.createTempFile("copy-target", ".bin");
+    Files.write(sourceFile, content);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+
+    Files.deleteIfExists(sourceFile);
+    Files.deleteIfExists(targetFile);
+  }
+
+  @Benchmark
+  public long downloadIoUtilsCopy() throws IOException {
+
+    try (InputStream in = new ByteArrayInputStream(content);
+         OutputStream out = new FileOutputStream(targetFile.toFile())) {
+      return IOUtils.copyLarge(in, out, new byte[bufferSize]);
+    }
+  }
+
+  /**
+   * The logProcess path of downloadFile .
+   */
+  @Benchmark
+  public long downloadUtilCopyStream() throws IOException {
+
+    try (InputStream in = new ByteArrayInputStream(content);
+         OutputStream out = new FileOutputStream(targetFile.toFile())) {
+      return Util.copyStream(in, out, FtpConnection.DEFAULT_TCP_BUFFER_SIZE, size, null, true);
+    }
+  }
+
+  /**
+   * The default path of downloadFile .
+   */
+  @Benchmark
+  public long downloadChannelCopier() throws IOException {
+
+    try (InputStream in = new ByteArrayInputStream(content);
+         OutputStream out = new FileOutputStream(targetFile.toFile())) {
+      return ChannelCopier.copy(in, out, bufferSize);
+    }
+  }
+
+  @Benchmark
+  public long uploadIoUtilsCopy() throws IOException {
+
+    try (InputStream in = new FileInputStream(sourceFile.toFile())) {
+      return IOUtils.copyLarge(in, NullOutputStream.NULL_OUTPUT_STREAM, new byte[bufferSize]);
+    }
+  }
+
+  /**
+   * The logProcess path of uploadFile .
+   */
+  @Benchmark
+  public long uploadBufferLoop() throws IOException {
+
+    long total = 0;
+    try (FileChannel in = FileChannel.open(sourceFile)) {
+      OutputStream out = NullOutputStream.NULL_OUTPUT_STREAM;
+      ByteBuffer buffer = ByteBuffer.allocate(bufferSize);
+      int c;
+      while ((c = in.read(buffer)) != -1) {
+        out.write(buffer.array(), 0, c);
+        buffer.clear();
+        total += c;
+      }
+    }
+    return total;
+  }
+
+  /**
+   * The default path of uploadFile .
+   */
+  @Benchmark
+  public long uploadChannelCopier() throws IOException {
+
+    try (FileChannel in = FileChannel.open(sourceFile)) {
+      return ChannelCopier.copy(in, NullOutputStream.NULL_OUTPUT_STREAM, bufferSize);
+    }
+  }
+}
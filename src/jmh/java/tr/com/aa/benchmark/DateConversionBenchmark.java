@@ -0,0 +1,56 @@
+package tr.com.aa.benchmark;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import tr.com.aa.util.MyDateUtils;
+
+/**
+ * The {@link MyDateUtils} conversions done for every listed entry and every synced file .
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DateConversionBenchmark {
+
+  private static final String MDTM_PATTERN = "yyyyMMddHHmmss";
+
+  private long millis = 1_584_180_900_000L;
+  private LocalDateTime dateTime = LocalDateTime.of(2020, 3, 14, 10, 15);
+  private String mdtm = "20200314101500";
+
+  @Benchmark
+  public LocalDateTime asLocalDateTime() {
+
+    return MyDateUtils.asLocalDateTime(millis);
+  }
+
+  @Benchmark
+  public Long asLong() {
+
+    return MyDateUtils.asLong(dateTime);
+  }
+
+  @Benchmark
+  public LocalDateTime fromUtc() {
+
+    return MyDateUtils.fromUtc(dateTime);
+  }
+
+  @Benchmark
+  public LocalDateTime parseMdtm() {
+
+    return MyDateUtils.parseLocalDateTime(mdtm, MDTM_PATTERN);
+  }
+
+  @Benchmark
+  public String formatDateTime() {
+
+    return MyDateUtils.parseLocalDateTime(dateTime, MyDateUtils.dateTime24Pattern);
+  }
+}
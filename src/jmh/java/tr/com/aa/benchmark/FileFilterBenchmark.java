@@ -0,0 +1,83 @@
+package tr.com.aa.benchmark;
+
+import java.util.Calendar;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.net.ftp.FTPFile;
+import org.apache.commons.net.ftp.FTPFileFilter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import tr.com.aa.filefilter.FileNameEqualFilter;
+import tr.com.aa.filefilter.FileNamePrefixFilter;
+import tr.com.aa.filefilter.FileNameSuffixFilter;
+
+/**
+ * The filefilter classes over a large directory listing, as applied by listFiles with a filter .
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FileFilterBenchmark {
+
+  private static final String[] SUFFIXES = {"csv", "txt", "xml", "json", "gz"};
+  private static final String[] PREFIXES = {"", "/", "C:", "~"};
+
+  @Param({"10000"})
+  private int entries;
+
+  private FTPFile[] files;
+  private FTPFileFilter equalFilter;
+  private FTPFileFilter prefixFilter;
+  private FTPFileFilter suffixFilter;
+
+  @Setup
+  public void setUp() {
+
+    files = new FTPFile[entries];
+    for (int i = 0; i < entries; i++) {
+      FTPFile file = new FTPFile();
+      file.setName("file_" + i + "." + SUFFIXES[i % SUFFIXES.length]);
+      file.setType(i % 20 == 0 ? FTPFile.DIRECTORY_TYPE : FTPFile.FILE_TYPE);
+      file.setSize(i);
+      file.setTimestamp(Calendar.getInstance());
+      files[i] = file;
+    }
+    equalFilter = new FileNameEqualFilter("file_" + entries / 2 + ".csv");
+    prefixFilter = new FileNamePrefixFilter(PREFIXES);
+    suffixFilter = new FileNameSuffixFilter(new String[] {"csv", "gz"});
+  }
+
+  @Benchmark
+  public int equalFilter() {
+
+    return count(equalFilter);
+  }
+
+  @Benchmark
+  public int prefixFilter() {
+
+    return count(prefixFilter);
+  }
+
+  @Benchmark
+  public int suffixFilter() {
+
+    return count(suffixFilter);
+  }
+
+  private int count(FTPFileFilter filter) {
+
+    int accepted = 0;
+    for (FTPFile file : files) {
+      if (filter.accept(file)) {
+        accepted++;
+      }
+    }
+    return accepted;
+  }
+}
@@ -0,0 +1,96 @@
+package tr.com.aa.connection;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.net.ftp.FTPFile;
+import org.apache.commons.net.ftp.FTPListParseEngine;
+import org.apache.commons.net.ftp.parser.MLSxEntryParser;
+import org.apache.commons.net.ftp.parser.UnixFTPEntryParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Parsing of large LIST and MLSD answers and their conversion to {@link AaFtpFile}, the work done
+ * per entry by listFiles and streamFiles once the bytes have arrived .
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ListingBenchmark {
+
+  private static final String DIRECTORY = "/data/incoming";
+
+  @Param({"1000", "100000"})
+  private int entries;
+
+  private byte[] unixListing;
+  private String[] mlsdLines;
+  private FTPFile[] parsed;
+
+  @Setup
+  public void setUp() {
+
+    StringBuilder unix = new StringBuilder();
+    mlsdLines = new String[entries];
+    for (int i = 0; i < entries; i++) {
+      boolean directory = i % 20 == 0;
+      String name = (directory ? "dir_" : "file_") + i + (directory ? "" : ".csv");
+      long size = directory ? 4096 : 1_000L + i * 37L;
+      unix.append(directory ? 'd' : '-').append("rw-r--r--   1 ftp      ftp  ")
+          .append(String.format("%12d", size)).append(" Mar 14  2020 ").append(name)
+          .append("\r\n");
+      mlsdLines[i] = "type=" + (directory ? "dir" : "file") + ";size=" + size
+          + ";modify=20200314101500;perm=r; " + name;
+    }
+    unixListing = unix.toString().getBytes(StandardCharsets.UTF_8);
+
+    List<FTPFile> files = new ArrayList<>(entries);
+    for (String line : mlsdLines) {
+      files.add(MLSxEntryParser.parseEntry(line));
+    }
+    parsed = files.toArray(new FTPFile[0]);
+  }
+
+  @Benchmark
+  public FTPFile[] parseUnixList() throws IOException {
+
+    FTPListParseEngine engine = new FTPListParseEngine(new UnixFTPEntryParser());
+    engine.readServerList(new ByteArrayInputStream(unixListing), "UTF-8");
+    return engine.getFiles();
+  }
+
+  @Benchmark
+  public void parseMlsd(Blackhole blackhole) {
+
+    for (String line : mlsdLines) {
+      blackhole.consume(MLSxEntryParser.parseEntry(line));
+    }
+  }
+
+  @Benchmark
+  public void toFtpFile(Blackhole blackhole) {
+
+    for (FTPFile file : parsed) {
+      blackhole.consume(FtpConnection.toFtpFile(file, DIRECTORY));
+    }
+  }
+
+  @Benchmark
+  public void parseMlsdToFtpFile(Blackhole blackhole) {
+
+    for (String line : mlsdLines) {
+      blackhole.consume(FtpConnection.toFtpFile(MLSxEntryParser.parseEntry(line), DIRECTORY));
+    }
+  }
+}
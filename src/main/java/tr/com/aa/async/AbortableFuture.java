@@ -0,0 +1,37 @@
+package tr.com.aa.async;
+
+import java.util.concurrent.CompletableFuture;
+import tr.com.aa.connection.Connection;
+
+/**
+ * Future whose cancel aborts the transfer on the connection attached to it .
+ */
+class AbortableFuture<T> extends CompletableFuture<T> {
+
+  private Connection connection;
+
+  /**
+   * @param connection connection the work runs on from now on, null once it is finished .
+   */
+  synchronized void attach(Connection connection) {
+
+    this.connection = connection;
+    if (connection != null && isCancelled()) {
+      connection.abort();
+    }
+  }
+
+  @Override
+  public boolean cancel(boolean mayInterruptIfRunning) {
+
+    boolean cancelled = super.cancel(mayInterruptIfRunning);
+    if (cancelled) {
+      synchronized (this) {
+        if (connection != null) {
+          connection.abort();
+        }
+      }
+    }
+    return cancelled;
+  }
+}
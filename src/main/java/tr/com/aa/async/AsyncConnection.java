@@ -0,0 +1,104 @@
+package tr.com.aa.async;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+import tr.com.aa.connection.AaFtpFile;
+import tr.com.aa.connection.Connection;
+import tr.com.aa.pool.ConnectionKey;
+import tr.com.aa.pool.ConnectionPool;
+
+/**
+ * Non-blocking front of a {@link ConnectionPool}: every call returns at once with a future, and the
+ * work runs on the executor with a connection borrowed for its duration. Cancelling the returned
+ * future aborts the transfer with {@link Connection#abort()}; futures derived from it with
+ * thenApply and the like do not pass a cancel on, so keep the original to cancel .
+ */
+public class AsyncConnection {
+
+  private final ConnectionPool connectionPool;
+  private final ConnectionKey connectionKey;
+  private final Executor executor;
+
+  /**
+   * @param connectionPool pool the connections are borrowed from .
+   * @param connectionKey  host, port, user and protocol of the server .
+   * @param executor       runs the blocking calls, see {@link AsyncExecutors} .
+   */
+  public AsyncConnection(ConnectionPool connectionPool, ConnectionKey connectionKey,
+                         Executor executor) {
+
+    this.connectionPool = connectionPool;
+    this.connectionKey = connectionKey;
+    this.executor = executor;
+  }
+
+  public CompletableFuture<List<AaFtpFile>> listFiles(String remotePath) {
+
+    return submit(connection -> connection.listFiles(remotePath));
+  }
+
+  public CompletableFuture<Optional<AaFtpFile>> stat(String remotePath) {
+
+    return submit(connection -> connection.stat(remotePath));
+  }
+
+  public CompletableFuture<Void> downloadFile(String remoteFilePath, String localDirectoryPath) {
+
+    return submit(connection -> {
+      connection.downloadFile(remoteFilePath, localDirectoryPath);
+      return null;
+    });
+  }
+
+  public CompletableFuture<Void> uploadFile(String localFilePath, String remoteDirectoryPath) {
+
+    return submit(connection -> {
+      connection.uploadFile(localFilePath, remoteDirectoryPath, false);
+      return null;
+    });
+  }
+
+  public CompletableFuture<Void> removeFileOrDirectory(String remoteFileOrDirectoryPath) {
+
+    return submit(connection -> {
+      connection.removeFileOrDirectory(remoteFileOrDirectoryPath);
+      return null;
+    });
+  }
+
+  /**
+   * Run any blocking action with a borrowed connection .
+   *
+   * @param action work to do with the connection .
+   * @param <T>    result type of the action .
+   * @return future of the result, cancelling it aborts the action .
+   */
+  public <T> CompletableFuture<T> submit(Function<Connection, T> action) {
+
+    AbortableFuture<T> future = new AbortableFuture<>();
+
+    executor.execute(() -> {
+      if (future.isDone()) {
+        // cancelled while waiting for a thread
+        return;
+      }
+      try {
+        future.complete(connectionPool.execute(connectionKey, connection -> {
+          future.attach(connection);
+          try {
+            return action.apply(connection);
+          } finally {
+            future.attach(null);
+          }
+        }));
+      } catch (Throwable e) {
+        future.completeExceptionally(e);
+      }
+    });
+
+    return future;
+  }
+}
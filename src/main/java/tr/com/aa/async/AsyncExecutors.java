@@ -0,0 +1,77 @@
+package tr.com.aa.async;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Executors for {@link AsyncConnection}. A transfer spends nearly all its time blocked on a socket,
+ * which is what virtual threads are for; on a JDK without them a bounded pool of daemon threads is
+ * used instead. Either way the pool of connections limits how many transfers really run .
+ */
+@Slf4j
+public class AsyncExecutors {
+
+  private static final long KEEP_ALIVE_SECONDS = 60L;
+
+  private AsyncExecutors() {
+    // static factories only
+  }
+
+  /**
+   * @param maxThreads threads of the bounded pool, ignored when virtual threads are available .
+   * @return a virtual-thread-per-task executor, or a bounded pool on older JDKs .
+   */
+  public static ExecutorService newTransferExecutor(int maxThreads) {
+
+    ExecutorService virtual = newVirtualThreadExecutor();
+    return virtual != null ? virtual : newBoundedExecutor(maxThreads);
+  }
+
+  /**
+   * @return a virtual-thread-per-task executor, null if the JDK has none. The method is looked up
+   *     reflectively, the code is compiled for a JDK without it .
+   */
+  public static ExecutorService newVirtualThreadExecutor() {
+
+    try {
+      return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor")
+          .invoke(null);
+    } catch (NoSuchMethodException e) {
+      log.debug("Virtual threads are not available on this JDK");
+    } catch (InvocationTargetException | IllegalAccessException e) {
+      // a JDK where they are a preview feature that is not enabled
+      log.debug("Virtual threads can not be used", e);
+    }
+    return null;
+  }
+
+  /**
+   * @param maxThreads .
+   * @return pool of at most maxThreads daemon threads that end after a minute of idleness .
+   */
+  public static ExecutorService newBoundedExecutor(int maxThreads) {
+
+    if (maxThreads < 1) {
+      throw new IllegalArgumentException("maxThreads must be at least 1");
+    }
+
+    AtomicInteger count = new AtomicInteger();
+    ThreadFactory threadFactory = runnable -> {
+      Thread thread = new Thread(runnable, "aa-transfer-" + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    };
+
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(maxThreads, maxThreads,
+        KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), threadFactory);
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
+}
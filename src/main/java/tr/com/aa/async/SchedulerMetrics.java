@@ -0,0 +1,112 @@
+package tr.com.aa.async;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import tr.com.aa.pool.ConnectionKey;
+
+/**
+ * Queue counters of one server of a {@link TransferScheduler}. Queued and running are live values,
+ * the others add up since the scheduler started .
+ */
+public class SchedulerMetrics {
+
+  private final ConnectionKey key;
+  private final LongAdder submitted = new LongAdder();
+  private final LongAdder dispatched = new LongAdder();
+  private final LongAdder cancelled = new LongAdder();
+  private final LongAdder waitNanos = new LongAdder();
+  private final AtomicLong maxWaitNanos = new AtomicLong();
+  private volatile int queued;
+  private volatile int running;
+
+  SchedulerMetrics(ConnectionKey key) {
+
+    this.key = key;
+  }
+
+  void onSubmitted(int queued) {
+
+    submitted.increment();
+    this.queued = queued;
+  }
+
+  void onDispatched(long waitNanos, int queued, int running) {
+
+    dispatched.increment();
+    this.waitNanos.add(waitNanos);
+    maxWaitNanos.accumulateAndGet(waitNanos, Math::max);
+    this.queued = queued;
+    this.running = running;
+  }
+
+  void onCancelled(int queued) {
+
+    cancelled.increment();
+    this.queued = queued;
+  }
+
+  void onFinished(int running) {
+
+    this.running = running;
+  }
+
+  public ConnectionKey getKey() {
+
+    return key;
+  }
+
+  /**
+   * @return jobs waiting for a slot .
+   */
+  public int getQueued() {
+
+    return queued;
+  }
+
+  public int getRunning() {
+
+    return running;
+  }
+
+  public long getSubmittedCount() {
+
+    return submitted.sum();
+  }
+
+  public long getDispatchedCount() {
+
+    return dispatched.sum();
+  }
+
+  /**
+   * @return jobs cancelled before they started .
+   */
+  public long getCancelledCount() {
+
+    return cancelled.sum();
+  }
+
+  /**
+   * @return mean time a dispatched job waited in the queue .
+   */
+  public double getAverageWaitMillis() {
+
+    long count = dispatched.sum();
+    return count == 0 ? 0 : (double) waitNanos.sum() / count / TimeUnit.MILLISECONDS.toNanos(1);
+  }
+
+  public long getMaxWaitMillis() {
+
+    return TimeUnit.NANOSECONDS.toMillis(maxWaitNanos.get());
+  }
+
+  @Override
+  public String toString() {
+
+    return String.format(
+        "SchedulerMetrics[%s queued=%d, running=%d, dispatched=%d, avgWait=%.1fms, maxWait=%dms]",
+        key, getQueued(), getRunning(), getDispatchedCount(), getAverageWaitMillis(),
+        getMaxWaitMillis());
+  }
+}
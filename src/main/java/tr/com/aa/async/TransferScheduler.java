@@ -0,0 +1,302 @@
+package tr.com.aa.async;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import lombok.extern.slf4j.Slf4j;
+import tr.com.aa.connection.Connection;
+import tr.com.aa.pool.ConnectionKey;
+import tr.com.aa.pool.ConnectionPool;
+
+/**
+ * Runs transfer jobs against many servers with a cap on the jobs running per server and in total.
+ * Every server has its own queue, ordered by priority and then by arrival. When a slot frees up,
+ * the servers whose next job has the highest priority share it by weighted deficit round robin:
+ * a server of weight 3 gets three jobs started for every one of a server of weight 1, so a server
+ * with a long queue can not starve the others .
+ *
+ * <p>The per server cap should not exceed maxTotalPerKey of the pool, a job beyond it would hold a
+ * slot here while it waits for a connection there .
+ */
+@Slf4j
+public class TransferScheduler {
+
+  public static final int DEFAULT_PRIORITY = 0;
+
+  private final ConnectionPool connectionPool;
+  private final Executor executor;
+  private final int maxRunning;
+  private final int defaultHostLimit;
+  private final Map<ConnectionKey, HostQueue> hosts = new HashMap<>();
+  private final List<HostQueue> ring = new ArrayList<>();
+  private final AtomicLong sequence = new AtomicLong();
+  private int cursor;
+  private int running;
+
+  /**
+   * @param connectionPool   pool the connections are borrowed from .
+   * @param executor         runs the jobs, see {@link AsyncExecutors} .
+   * @param maxRunning       jobs running at the same time over all servers .
+   * @param defaultHostLimit jobs running at the same time on a server without its own limit .
+   */
+  public TransferScheduler(ConnectionPool connectionPool, Executor executor, int maxRunning,
+                           int defaultHostLimit) {
+
+    if (maxRunning < 1 || defaultHostLimit < 1) {
+      throw new IllegalArgumentException("limits must be at least 1");
+    }
+    this.connectionPool = connectionPool;
+    this.executor = executor;
+    this.maxRunning = maxRunning;
+    this.defaultHostLimit = defaultHostLimit;
+  }
+
+  /**
+   * @param key   server .
+   * @param limit jobs running at the same time on the server .
+   */
+  public synchronized void setHostLimit(ConnectionKey key, int limit) {
+
+    if (limit < 1) {
+      throw new IllegalArgumentException("limit must be at least 1");
+    }
+    host(key).limit = limit;
+    dispatch();
+  }
+
+  /**
+   * @param key    server .
+   * @param weight share of the free slots relative to the other servers, 1 by default .
+   */
+  public synchronized void setHostWeight(ConnectionKey key, int weight) {
+
+    if (weight < 1) {
+      throw new IllegalArgumentException("weight must be at least 1");
+    }
+    host(key).weight = weight;
+  }
+
+  public <T> CompletableFuture<T> submit(ConnectionKey key, Function<Connection, T> action) {
+
+    return submit(key, DEFAULT_PRIORITY, action);
+  }
+
+  /**
+   * @param key      server the job runs against .
+   * @param priority jobs with a higher priority start first .
+   * @param action   work to do with a borrowed connection .
+   * @param <T>      result type of the action .
+   * @return future of the result; cancelling it removes a waiting job or aborts a running one .
+   */
+  public <T> CompletableFuture<T> submit(ConnectionKey key, int priority,
+                                         Function<Connection, T> action) {
+
+    Job<T> job = new Job<>(key, priority, sequence.getAndIncrement(), action);
+
+    synchronized (this) {
+      HostQueue host = host(key);
+      host.queue.add(job);
+      host.metrics.onSubmitted(host.queue.size());
+      dispatch();
+    }
+
+    job.future.whenComplete((result, failure) -> {
+      if (job.future.isCancelled()) {
+        removeCancelled(job);
+      }
+    });
+    return job.future;
+  }
+
+  /**
+   * @param key .
+   * @return queue counters of the server .
+   */
+  public synchronized SchedulerMetrics getMetrics(ConnectionKey key) {
+
+    return host(key).metrics;
+  }
+
+  public synchronized Map<ConnectionKey, SchedulerMetrics> getAllMetrics() {
+
+    Map<ConnectionKey, SchedulerMetrics> metrics = new HashMap<>();
+    hosts.forEach((key, host) -> metrics.put(key, host.metrics));
+    return Collections.unmodifiableMap(metrics);
+  }
+
+  /**
+   * @return jobs waiting over all servers .
+   */
+  public synchronized int getQueueDepth() {
+
+    return hosts.values().stream().mapToInt(host -> host.queue.size()).sum();
+  }
+
+  public synchronized int getRunning() {
+
+    return running;
+  }
+
+  private HostQueue host(ConnectionKey key) {
+
+    return hosts.computeIfAbsent(key, k -> {
+      HostQueue host = new HostQueue(k, defaultHostLimit);
+      ring.add(host);
+      return host;
+    });
+  }
+
+  /**
+   * Start queued jobs while there are free slots. Called with the lock held .
+   */
+  private void dispatch() {
+
+    while (running < maxRunning) {
+      HostQueue host = next();
+      if (host == null) {
+        return;
+      }
+      start(host, host.queue.poll());
+    }
+  }
+
+  /**
+   * @return server of the next job to start, null if no server may start one .
+   */
+  private HostQueue next() {
+
+    int priority = Integer.MIN_VALUE;
+    boolean ready = false;
+    for (HostQueue host : ring) {
+      if (host.isReady()) {
+        priority = Math.max(priority, host.queue.peek().priority);
+        ready = true;
+      }
+    }
+    if (!ready) {
+      return null;
+    }
+
+    // deficit round robin over the servers whose next job has the top priority, every job
+    // costs one unit and a server gets its weight in units per round
+    while (true) {
+      HostQueue host = ring.get(cursor);
+      if (host.isReady() && host.queue.peek().priority == priority) {
+        if (host.deficit <= 0) {
+          host.deficit += host.weight;
+        }
+        host.deficit--;
+        if (host.deficit <= 0) {
+          cursor = (cursor + 1) % ring.size();
+        }
+        return host;
+      }
+      // a server that can not use its turn does not save it up
+      host.deficit = 0;
+      cursor = (cursor + 1) % ring.size();
+    }
+  }
+
+  private <T> void start(HostQueue host, Job<T> job) {
+
+    running++;
+    host.running++;
+    host.metrics.onDispatched(System.nanoTime() - job.submittedNanos, host.queue.size(),
+        host.running);
+
+    try {
+      executor.execute(() -> run(host, job));
+    } catch (RuntimeException e) {
+      // executor shut down or saturated
+      finished(host);
+      job.future.completeExceptionally(e);
+    }
+  }
+
+  private <T> void run(HostQueue host, Job<T> job) {
+
+    try {
+      if (!job.future.isDone()) {
+        job.future.complete(connectionPool.execute(job.key, connection -> {
+          job.future.attach(connection);
+          try {
+            return job.action.apply(connection);
+          } finally {
+            job.future.attach(null);
+          }
+        }));
+      }
+    } catch (Throwable e) {
+      job.future.completeExceptionally(e);
+    } finally {
+      synchronized (this) {
+        finished(host);
+        dispatch();
+      }
+    }
+  }
+
+  private void finished(HostQueue host) {
+
+    running--;
+    host.running--;
+    host.metrics.onFinished(host.running);
+  }
+
+  private synchronized void removeCancelled(Job<?> job) {
+
+    HostQueue host = hosts.get(job.key);
+    if (host != null && host.queue.remove(job)) {
+      host.metrics.onCancelled(host.queue.size());
+      log.debug("Cancelled queued job of {}", job.key);
+    }
+  }
+
+  private static class HostQueue {
+
+    private final PriorityQueue<Job<?>> queue = new PriorityQueue<>(
+        Comparator.<Job<?>>comparingInt(job -> -job.priority).thenComparingLong(job -> job.order));
+    private final SchedulerMetrics metrics;
+    private int limit;
+    private int weight = 1;
+    private int deficit;
+    private int running;
+
+    HostQueue(ConnectionKey key, int limit) {
+
+      this.metrics = new SchedulerMetrics(key);
+      this.limit = limit;
+    }
+
+    boolean isReady() {
+
+      return !queue.isEmpty() && running < limit;
+    }
+  }
+
+  private static class Job<T> {
+
+    private final ConnectionKey key;
+    private final int priority;
+    private final long order;
+    private final Function<Connection, T> action;
+    private final AbortableFuture<T> future = new AbortableFuture<>();
+    private final long submittedNanos = System.nanoTime();
+
+    Job(ConnectionKey key, int priority, long order, Function<Connection, T> action) {
+
+      this.key = key;
+      this.priority = priority;
+      this.order = order;
+      this.action = action;
+    }
+  }
+}
@@ -0,0 +1,220 @@
+package tr.com.aa.cache;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import tr.com.aa.connection.AaFtpFile;
+import tr.com.aa.util.RemotePaths;
+
+/**
+ * Bounded cache of remote metadata, so that recursive operations ask the server about a hot path
+ * once per time-to-live instead of once per file. Entries expire a fixed time after they were
+ * loaded and the least recently used ones are dropped when the cache is full .
+ *
+ * <p>A cache describes a single server and may be shared by all connections to it. Paths are
+ * normalized before they are used as keys. Relative paths are not cached: the connections
+ * sharing a cache may have different working directories, so the same relative path can name
+ * different files. Invalidating a relative path clears the whole cache for the same reason.
+ * Connections invalidate what they change themselves, changes made by other clients are seen
+ * after the time-to-live .
+ */
+public class MetadataCache {
+
+  public static final long DEFAULT_TTL_MILLIS = 30_000L;
+  public static final long DEFAULT_MAXIMUM_SIZE = 10_000L;
+
+  private final Cache<String, Optional<AaFtpFile>> entries;
+  private final Cache<String, List<AaFtpFile>> listings;
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder invalidations = new LongAdder();
+
+  public MetadataCache() {
+
+    this(DEFAULT_TTL_MILLIS, DEFAULT_MAXIMUM_SIZE);
+  }
+
+  /**
+   * @param ttlMillis   how long an answer of the server is trusted .
+   * @param maximumSize maximum number of paths kept for each of stat answers and listings .
+   */
+  public MetadataCache(long ttlMillis, long maximumSize) {
+
+    this.entries = CacheBuilder.newBuilder()
+        .expireAfterWrite(ttlMillis, TimeUnit.MILLISECONDS)
+        .maximumSize(maximumSize)
+        .build();
+    this.listings = CacheBuilder.newBuilder()
+        .expireAfterWrite(ttlMillis, TimeUnit.MILLISECONDS)
+        .maximumSize(maximumSize)
+        .build();
+  }
+
+  /**
+   * @param remotePath .
+   * @param loader     asks the server on a miss .
+   * @return the cached or freshly loaded answer, empty if nothing exists at the path .
+   */
+  public Optional<AaFtpFile> stat(String remotePath, Supplier<Optional<AaFtpFile>> loader) {
+
+    String key = RemotePaths.normalize(remotePath);
+    if (!isAbsolute(key)) {
+      misses.increment();
+      return loader.get();
+    }
+    Optional<AaFtpFile> entry = entries.getIfPresent(key);
+
+    if (entry != null) {
+      hits.increment();
+      return entry;
+    }
+
+    misses.increment();
+    entry = loader.get();
+    entries.put(key, entry);
+    return entry;
+  }
+
+  /**
+   * @param remoteDirectoryPath .
+   * @param loader              lists the directory on a miss .
+   * @return the cached or freshly loaded entries of the directory .
+   */
+  public List<AaFtpFile> list(String remoteDirectoryPath, Supplier<List<AaFtpFile>> loader) {
+
+    String key = RemotePaths.normalize(remoteDirectoryPath);
+    if (!isAbsolute(key)) {
+      misses.increment();
+      return loader.get();
+    }
+    List<AaFtpFile> listing = listings.getIfPresent(key);
+
+    if (listing != null) {
+      hits.increment();
+      return listing;
+    }
+
+    misses.increment();
+    listing = Collections.unmodifiableList(new ArrayList<>(loader.get()));
+    listings.put(key, listing);
+    return listing;
+  }
+
+  /**
+   * Forget a path that was written or removed, together with the listing of its directory .
+   *
+   * @param remotePath .
+   */
+  public void invalidate(String remotePath) {
+
+    String key = RemotePaths.normalize(remotePath);
+    if (!isAbsolute(key)) {
+      invalidateAll();
+      return;
+    }
+    entries.invalidate(key);
+    listings.invalidate(key);
+    String parent = RemotePaths.parentOf(key);
+    if (parent != null) {
+      listings.invalidate(parent);
+    }
+    invalidations.increment();
+  }
+
+  /**
+   * Forget a path and every one of its parents, after directories may have been created along it .
+   *
+   * @param remotePath .
+   */
+  public void invalidateWithParents(String remotePath) {
+
+    String key = RemotePaths.normalize(remotePath);
+    if (!isAbsolute(key)) {
+      invalidateAll();
+      return;
+    }
+    while (key != null) {
+      invalidate(key);
+      key = RemotePaths.parentOf(key);
+    }
+  }
+
+  /**
+   * Forget a removed directory and everything cached below it .
+   *
+   * @param remotePath .
+   */
+  public void invalidateTree(String remotePath) {
+
+    String key = RemotePaths.normalize(remotePath);
+    if (!isAbsolute(key)) {
+      invalidateAll();
+      return;
+    }
+    String prefix = key.endsWith(RemotePaths.FILE_SEPARATOR)
+        ? key : key + RemotePaths.FILE_SEPARATOR;
+
+    invalidate(key);
+    entries.invalidateAll(keysBelow(entries.asMap().keySet(), prefix));
+    listings.invalidateAll(keysBelow(listings.asMap().keySet(), prefix));
+  }
+
+  public void invalidateAll() {
+
+    entries.invalidateAll();
+    listings.invalidateAll();
+    invalidations.increment();
+  }
+
+  public long getHitCount() {
+
+    return hits.sum();
+  }
+
+  public long getMissCount() {
+
+    return misses.sum();
+  }
+
+  public long getInvalidationCount() {
+
+    return invalidations.sum();
+  }
+
+  /**
+   * @return number of stat answers and listings currently held .
+   */
+  public long size() {
+
+    return entries.size() + listings.size();
+  }
+
+  @Override
+  public String toString() {
+
+    return String.format("MetadataCache[size=%d, hits=%d, misses=%d, invalidations=%d]", size(),
+        getHitCount(), getMissCount(), getInvalidationCount());
+  }
+
+  private static boolean isAbsolute(String normalizedPath) {
+
+    return normalizedPath.startsWith(RemotePaths.FILE_SEPARATOR);
+  }
+
+  private static List<String> keysBelow(Iterable<String> keys, String prefix) {
+
+    List<String> below = new ArrayList<>();
+    for (String key : keys) {
+      if (key.startsWith(prefix)) {
+        below.add(key);
+      }
+    }
+    return below;
+  }
+}
@@ -0,0 +1,94 @@
+package tr.com.aa.checksum;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.zip.CRC32;
+import java.util.zip.CRC32C;
+import tr.com.aa.exception.FtpException;
+
+/**
+ * Checksums that can be computed while a file is transferred, with the names FTP servers know them
+ * by: the algorithm name of the HASH command, the non standard X command and the extension of a
+ * sidecar file next to the remote file .
+ */
+public enum ChecksumAlgorithm {
+
+  CRC32("CRC32", "XCRC", ".crc32"),
+  CRC32C("CRC32C", null, ".crc32c"),
+  MD5("MD5", "XMD5", ".md5"),
+  SHA_1("SHA-1", "XSHA1", ".sha1"),
+  SHA_256("SHA-256", "XSHA256", ".sha256");
+
+  private final String hashName;
+  private final String command;
+  private final String sidecarExtension;
+
+  ChecksumAlgorithm(String hashName, String command, String sidecarExtension) {
+
+    this.hashName = hashName;
+    this.command = command;
+    this.sidecarExtension = sidecarExtension;
+  }
+
+  /**
+   * @return name used by FEAT HASH and OPTS HASH, also the MessageDigest name of the digests .
+   */
+  public String getHashName() {
+
+    return hashName;
+  }
+
+  /**
+   * @return X command that returns this checksum of a file, null if there is none .
+   */
+  public String getCommand() {
+
+    return command;
+  }
+
+  public String getSidecarExtension() {
+
+    return sidecarExtension;
+  }
+
+  /**
+   * @return a new, empty checksum .
+   */
+  public StreamingChecksum newChecksum() {
+
+    switch (this) {
+      case CRC32:
+        return StreamingChecksum.of(new CRC32());
+      case CRC32C:
+        return StreamingChecksum.of(new CRC32C());
+      default:
+        try {
+          return StreamingChecksum.of(MessageDigest.getInstance(hashName));
+        } catch (NoSuchAlgorithmException e) {
+          throw new FtpException("Checksum algorithm " + hashName + " is not available", e);
+        }
+    }
+  }
+
+  /**
+   * CRC values are compared as numbers, servers drop their leading zeros .
+   *
+   * @param expected hex value from the server, a sidecar or a manifest .
+   * @param actual   hex value computed locally .
+   * @return true if both are the same checksum .
+   */
+  public boolean matches(String expected, String actual) {
+
+    if (expected == null || actual == null) {
+      return false;
+    }
+    if (this == CRC32 || this == CRC32C) {
+      try {
+        return Long.parseLong(expected.trim(), 16) == Long.parseLong(actual.trim(), 16);
+      } catch (NumberFormatException e) {
+        return false;
+      }
+    }
+    return expected.trim().equalsIgnoreCase(actual.trim());
+  }
+}
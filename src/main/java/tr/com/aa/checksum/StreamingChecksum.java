@@ -0,0 +1,179 @@
+package tr.com.aa.checksum;
+
+import com.google.common.io.BaseEncoding;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.util.zip.Checksum;
+
+/**
+ * A checksum or digest fed by the bytes of a transfer as they pass through the copy loop, so the
+ * data is never read a second time. CRC32 and CRC32C are intrinsics of the JVM and cost next to
+ * nothing next to the network; MD5 and SHA-256 cost CPU time but no extra IO .
+ */
+public abstract class StreamingChecksum {
+
+  private static final int PREFIX_BUFFER_SIZE = 64 * 1024;
+
+  static StreamingChecksum of(Checksum checksum) {
+
+    return new StreamingChecksum() {
+      @Override
+      public void update(byte[] bytes, int offset, int length) {
+
+        checksum.update(bytes, offset, length);
+      }
+
+      @Override
+      public void update(ByteBuffer buffer) {
+
+        checksum.update(buffer);
+      }
+
+      @Override
+      public String getValue() {
+
+        return String.format("%08x", checksum.getValue());
+      }
+    };
+  }
+
+  static StreamingChecksum of(MessageDigest digest) {
+
+    return new StreamingChecksum() {
+      private String value;
+
+      @Override
+      public void update(byte[] bytes, int offset, int length) {
+
+        digest.update(bytes, offset, length);
+      }
+
+      @Override
+      public void update(ByteBuffer buffer) {
+
+        digest.update(buffer);
+      }
+
+      @Override
+      public String getValue() {
+
+        // digest() resets the MessageDigest, the value is kept for later calls
+        if (value == null) {
+          value = BaseEncoding.base16().lowerCase().encode(digest.digest());
+        }
+        return value;
+      }
+    };
+  }
+
+  public abstract void update(byte[] bytes, int offset, int length);
+
+  /**
+   * Consume the remaining bytes of the buffer .
+   *
+   * @param buffer .
+   */
+  public abstract void update(ByteBuffer buffer);
+
+  /**
+   * @return lower case hex value of everything seen so far, a digest can not be updated
+   *     afterwards .
+   */
+  public abstract String getValue();
+
+  /**
+   * Feed the first bytes of a local file, the part a resumed transfer does not copy again .
+   *
+   * @param channel local file .
+   * @param length  number of bytes from the start of the file .
+   * @throws IOException .
+   */
+  public void updatePrefix(FileChannel channel, long length) throws IOException {
+
+    ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(PREFIX_BUFFER_SIZE, length));
+    long position = 0;
+
+    while (position < length) {
+      buffer.clear();
+      buffer.limit((int) Math.min(buffer.capacity(), length - position));
+      int read = channel.read(buffer, position);
+      if (read < 0) {
+        throw new IOException("File ended at byte " + position + " of " + length);
+      }
+      buffer.flip();
+      update(buffer);
+      position += read;
+    }
+  }
+
+  /**
+   * @param in stream whose bytes are added to this checksum as they are read .
+   * @return .
+   */
+  public InputStream track(InputStream in) {
+
+    return new FilterInputStream(in) {
+      @Override
+      public int read() throws IOException {
+
+        int b = super.read();
+        if (b >= 0) {
+          update(new byte[] {(byte) b}, 0, 1);
+        }
+        return b;
+      }
+
+      @Override
+      public int read(byte[] bytes, int offset, int length) throws IOException {
+
+        int read = super.read(bytes, offset, length);
+        if (read > 0) {
+          update(bytes, offset, read);
+        }
+        return read;
+      }
+
+      @Override
+      public long skip(long n) throws IOException {
+
+        throw new IOException("A checksummed stream can not skip");
+      }
+
+      @Override
+      public boolean markSupported() {
+
+        return false;
+      }
+    };
+  }
+
+  /**
+   * @param out stream whose bytes are added to this checksum as they are written .
+   * @return .
+   */
+  public OutputStream track(OutputStream out) {
+
+    return new FilterOutputStream(out) {
+      @Override
+      public void write(int b) throws IOException {
+
+        update(new byte[] {(byte) b}, 0, 1);
+        out.write(b);
+      }
+
+      @Override
+      public void write(byte[] bytes, int offset, int length) throws IOException {
+
+        // FilterOutputStream would write byte by byte
+        update(bytes, offset, length);
+        out.write(bytes, offset, length);
+      }
+    };
+  }
+}
@@ -1,7 +1,14 @@
 package tr.com.aa.client;
 
+import tr.com.aa.cache.MetadataCache;
+import tr.com.aa.checksum.ChecksumAlgorithm;
 import tr.com.aa.client.auth.UserCredentials;
+import tr.com.aa.compression.CompressionOptions;
 import tr.com.aa.connection.Connection;
+import tr.com.aa.metrics.ClientMetrics;
+import tr.com.aa.throttle.BandwidthLimits;
+import tr.com.aa.trace.ProtocolEventStream;
+import tr.com.aa.tuning.TransferTuning;
 
 public abstract class Client {
 
@@ -10,6 +17,22 @@ public abstract class Client {
 
   protected UserCredentials userCredentials = UserCredentials.ANONYMOUS;
 
+  protected MetadataCache metadataCache;
+
+  protected ChecksumAlgorithm checksumAlgorithm;
+
+  protected boolean sidecarChecksums;
+
+  protected CompressionOptions compressionOptions;
+
+  protected BandwidthLimits bandwidthLimits;
+
+  protected TransferTuning transferTuning;
+
+  protected ClientMetrics clientMetrics;
+
+  protected ProtocolEventStream protocolEventStream;
+
   public void setCredentials(UserCredentials userCredentials) {
 
     this.userCredentials = userCredentials;
@@ -30,6 +53,94 @@ public abstract class Client {
     this.port = port;
   }
 
+  /**
+   * Cache of remote metadata handed to the connections of this client. Share one cache between the
+   * clients of the same server, null (the default) disables caching .
+   *
+   * @param metadataCache .
+   */
+  public void setMetadataCache(MetadataCache metadataCache) {
+
+    this.metadataCache = metadataCache;
+  }
+
+  /**
+   * Checksum computed during every transfer and compared with the server's, null (the default)
+   * for no verification. Only FTP connections verify checksums .
+   *
+   * @param checksumAlgorithm .
+   */
+  public void setChecksumAlgorithm(ChecksumAlgorithm checksumAlgorithm) {
+
+    this.checksumAlgorithm = checksumAlgorithm;
+  }
+
+  /**
+   * Look up the expected checksum of a download in a sidecar file when the server computes none,
+   * false (the default) to save the extra data connection per file .
+   *
+   * @param sidecarChecksums .
+   */
+  public void setSidecarChecksums(boolean sidecarChecksums) {
+
+    this.sidecarChecksums = sidecarChecksums;
+  }
+
+  /**
+   * Compress transfers on the wire, null (the default) for none. FTP uses MODE Z when the server
+   * has it, SFTP asks for zlib on the SSH session .
+   *
+   * @param compressionOptions .
+   */
+  public void setCompressionOptions(CompressionOptions compressionOptions) {
+
+    this.compressionOptions = compressionOptions;
+  }
+
+  /**
+   * Bandwidth caps the transfers of the connections are paced by, under the host name of this
+   * client. Null (the default) for no limit .
+   *
+   * @param bandwidthLimits .
+   */
+  public void setBandwidthLimits(BandwidthLimits bandwidthLimits) {
+
+    this.bandwidthLimits = bandwidthLimits;
+  }
+
+  /**
+   * Socket and buffer sizes adapted to the measured link of every server, null (the default) for
+   * the fixed defaults .
+   *
+   * @param transferTuning .
+   */
+  public void setTransferTuning(TransferTuning transferTuning) {
+
+    this.transferTuning = transferTuning;
+  }
+
+  /**
+   * Micrometer meters the commands and transfers of the connections are recorded in, null (the
+   * default) for none .
+   *
+   * @param clientMetrics .
+   */
+  public void setClientMetrics(ClientMetrics clientMetrics) {
+
+    this.clientMetrics = clientMetrics;
+  }
+
+  /**
+   * Stream the protocol commands and replies of the connections are recorded in, null (the
+   * default) for none .
+   *
+   * @param protocolEventStream .
+   */
+  public void setProtocolEventStream(ProtocolEventStream protocolEventStream) {
+
+    this.protocolEventStream = protocolEventStream;
+  }
+
   /**
    * Opens a connection to the given host and port. All activity and communication should be handled
    * using this connection.
@@ -1,7 +1,18 @@
 package tr.com.aa.client;
 
+import tr.com.aa.cache.MetadataCache;
+import tr.com.aa.client.auth.UserCredentials;
+import tr.com.aa.connection.Connection;
+import tr.com.aa.pool.ConnectionKey;
+import tr.com.aa.pool.ConnectionPool;
+import tr.com.aa.pool.PoolConfig;
+import tr.com.aa.pool.PoolMetrics;
+
 public class ClientFactory {
 
+  private PoolConfig poolConfig = new PoolConfig();
+  private ConnectionPool connectionPool;
+
   /**
    * @param clientType .
    * @return .
@@ -19,7 +30,102 @@ public class ClientFactory {
     return new SftpClient();
   }
 
+  /**
+   * Pool settings, used when the pool is created on the first borrow .
+   *
+   * @param poolConfig .
+   */
+  public synchronized void setPoolConfig(PoolConfig poolConfig) {
+
+    if (connectionPool != null) {
+      throw new IllegalStateException("The connection pool has already been created.");
+    }
+    this.poolConfig = poolConfig;
+  }
+
+  /**
+   * @return the pool shared by every borrow made through this factory .
+   */
+  public synchronized ConnectionPool getConnectionPool() {
+
+    if (connectionPool == null) {
+      connectionPool = new ConnectionPool(this, poolConfig);
+    }
+    return connectionPool;
+  }
+
+  /**
+   * Borrow a logged-in connection from the pool, reusing an idle session of the same host, port,
+   * user and protocol when there is one .
+   *
+   * @param protocol        .
+   * @param host            .
+   * @param port            .
+   * @param userCredentials .
+   * @return .
+   */
+  public Connection borrowConnection(Protocol protocol, String host, int port,
+                                     UserCredentials userCredentials) {
+
+    return getConnectionPool().borrow(new ConnectionKey(protocol, host, port, userCredentials));
+  }
+
+  /**
+   * @param connection a connection obtained from {@link #borrowConnection} .
+   */
+  public void returnConnection(Connection connection) {
+
+    getConnectionPool().release(connection);
+  }
+
+  /**
+   * @param connection a borrowed connection that must not be reused .
+   */
+  public void invalidateConnection(Connection connection) {
+
+    getConnectionPool().invalidate(connection);
+  }
+
+  /**
+   * @param protocol        .
+   * @param host            .
+   * @param port            .
+   * @param userCredentials .
+   * @return .
+   */
+  public PoolMetrics getPoolMetrics(Protocol protocol, String host, int port,
+                                    UserCredentials userCredentials) {
+
+    return getConnectionPool()
+        .getMetrics(new ConnectionKey(protocol, host, port, userCredentials));
+  }
+
+  /**
+   * @param protocol        .
+   * @param host            .
+   * @param port            .
+   * @param userCredentials .
+   * @return metadata cache of the pooled connections, null unless enabled in the pool config .
+   */
+  public MetadataCache getMetadataCache(Protocol protocol, String host, int port,
+                                       UserCredentials userCredentials) {
+
+    return getConnectionPool()
+        .getMetadataCache(new ConnectionKey(protocol, host, port, userCredentials));
+  }
+
+  /**
+   * Close every idle session and drop the pool .
+   */
+  public synchronized void closePool() {
+
+    if (connectionPool != null) {
+      connectionPool.close();
+      connectionPool = null;
+    }
+  }
+
   public enum Protocol {
     FTP, FTPS, SFTP
   }
-}
\ No newline at end of file
+}
@@ -1,15 +1,18 @@
 package tr.com.aa.client;
 
 import java.io.IOException;
-import java.io.PrintWriter;
 import java.net.SocketException;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.net.PrintCommandListener;
 import org.apache.commons.net.ftp.FTPClient;
 import org.apache.commons.net.ftp.FTPReply;
+import org.apache.commons.net.ftp.FTPSClient;
 import tr.com.aa.connection.Connection;
 import tr.com.aa.connection.ConnectionFactory;
+import tr.com.aa.connection.FtpConnection;
+import tr.com.aa.connection.StreamingFTPClient;
 import tr.com.aa.exception.FtpException;
+import tr.com.aa.metrics.FtpCommandTimer;
+import tr.com.aa.trace.FtpEventRecorder;
 
 @Slf4j
 public class FtpClient extends Client {
@@ -19,13 +22,15 @@ public class FtpClient extends Client {
   private static final String CONNECTION_ERROR_MESSAGE = "Unable to connect to host %s on port %d";
   private static final String STATUS_ERROR_MESSAGE =
       "The host %s on port %d returned a bad status code.";
-  private static Connection connection;
+  private Connection connection;
   protected FTPClient ftpClient;
   private ConnectionFactory connectionFactory = new ConnectionFactory();
+  private FtpCommandTimer commandTimer;
+  private FtpEventRecorder eventRecorder;
 
   public FtpClient() {
 
-    ftpClient = new FTPClient();
+    ftpClient = new StreamingFTPClient();
   }
 
   /**
@@ -45,20 +50,34 @@ public class FtpClient extends Client {
    */
   public Connection connect() {
 
+    if (connection != null && isConnect()) {
+      return connection;
+    }
+
     try {
       connectClientAndCheckStatus();
       setSpecificModesOnClient();
       login();
 
     } catch (IOException e) {
+      dumpProtocolEvents();
       throw new FtpException(String.format(CONNECTION_ERROR_MESSAGE, host, port), e);
+    } catch (FtpException e) {
+      dumpProtocolEvents();
+      throw e;
     }
 
-    if (connection != null && isConnect()) {
-      return connection;
-    } else {
-      return connectionFactory.createFtpConnection(ftpClient);
-    }
+    FtpConnection ftpConnection = connectionFactory.createFtpConnection(ftpClient);
+    ftpConnection.setMetadataCache(metadataCache);
+    ftpConnection.setChecksumAlgorithm(checksumAlgorithm);
+    ftpConnection.setSidecarChecksums(sidecarChecksums);
+    ftpConnection.setCompressionOptions(compressionOptions);
+    ftpConnection.setBandwidthLimits(bandwidthLimits, host);
+    ftpConnection.setLinkTuner(transferTuning == null ? null : transferTuning.forHost(host));
+    ftpConnection.setHostMetrics(
+        clientMetrics == null ? null : clientMetrics.forHost(protocolName(), host));
+    connection = ftpConnection;
+    return connection;
   }
 
   /**
@@ -95,11 +114,29 @@ public class FtpClient extends Client {
 
   }
 
+  private void dumpProtocolEvents() {
+
+    if (protocolEventStream != null) {
+      protocolEventStream.dump();
+    }
+  }
+
+  private String protocolName() {
+
+    return ftpClient instanceof FTPSClient ? "ftps" : "ftp";
+  }
+
   private void connectClientAndCheckStatus() throws SocketException, IOException, FtpException {
 
     log.info("Connected to " + host + ":" + port + "  via ftp ...");
-    ftpClient.addProtocolCommandListener(
-        new PrintCommandListener(new PrintWriter(System.out), true)); // Print the executed command
+    if (protocolEventStream != null && eventRecorder == null) {
+      eventRecorder = new FtpEventRecorder(protocolEventStream, host);
+      ftpClient.addProtocolCommandListener(eventRecorder);
+    }
+    if (clientMetrics != null && commandTimer == null) {
+      commandTimer = new FtpCommandTimer(clientMetrics.forHost(protocolName(), host));
+      ftpClient.addProtocolCommandListener(commandTimer);
+    }
     ftpClient.connect(host, port);
 
     if (!FTPReply.isPositiveCompletion(ftpClient.getReplyCode())) {
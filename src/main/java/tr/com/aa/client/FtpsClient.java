@@ -1,6 +1,6 @@
 package tr.com.aa.client;
 
-import org.apache.commons.net.ftp.FTPSClient;
+import tr.com.aa.connection.StreamingFTPSClient;
 
 public class FtpsClient extends FtpClient {
 
@@ -8,6 +8,6 @@ public class FtpsClient extends FtpClient {
 
   public FtpsClient() {
 
-    ftpClient = new FTPSClient(SSL, true);
+    ftpClient = new StreamingFTPSClient(SSL, true);
   }
 }
@@ -4,12 +4,21 @@ import com.jcraft.jsch.Channel;
 import com.jcraft.jsch.JSch;
 import com.jcraft.jsch.JSchException;
 import com.jcraft.jsch.Session;
+import com.jcraft.jsch.SocketFactory;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
 import lombok.extern.slf4j.Slf4j;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import tr.com.aa.connection.Connection;
 import tr.com.aa.connection.ConnectionFactory;
+import tr.com.aa.connection.SftpConnection;
+import tr.com.aa.delta.BlockManifestStore;
 import tr.com.aa.exception.FtpException;
+import tr.com.aa.tuning.LinkTuner;
 
 /**
  * No method was found to output the executed command in the console.
@@ -18,12 +27,15 @@ import tr.com.aa.exception.FtpException;
 public class SftpClient extends Client {
 
   private static final String SFTP = "sftp";
+  // openssh only offers the delayed variant, which starts after authentication
+  private static final String ZLIB = "zlib@openssh.com,zlib,none";
   private static final String CONNECTION_ERROR_MESSAGE = "Unable to connect to host %s on port %d";
-  private static Connection connection;
+  private Connection connection;
   private JSch jsch;
   private ConnectionFactory connectionFactory;
   private Session session;
   private Channel channel;
+  private BlockManifestStore deltaManifestStore;
 
   /**
    * sftp client .
@@ -33,6 +45,17 @@ public class SftpClient extends Client {
     this.connectionFactory = new ConnectionFactory();
   }
 
+  /**
+   * Keep block manifests in the store and upload only changed blocks, null (the default) for full
+   * uploads .
+   *
+   * @param deltaManifestStore .
+   */
+  public void setDeltaManifestStore(BlockManifestStore deltaManifestStore) {
+
+    this.deltaManifestStore = deltaManifestStore;
+  }
+
   /**
    *
    * @return .
@@ -49,6 +72,11 @@ public class SftpClient extends Client {
    * @return .
    */
   public Connection connect() {
+
+    if (connection != null && isConnect()) {
+      return connection;
+    }
+
     session = null;
     channel = null;
 
@@ -61,11 +89,15 @@ public class SftpClient extends Client {
       throw new FtpException(String.format(CONNECTION_ERROR_MESSAGE, host, port), e);
     }
 
-    if (connection != null && isConnect()) {
-      return connection;
-    } else {
-      return connectionFactory.createSftpConnection(channel);
-    }
+    SftpConnection sftpConnection = connectionFactory.createSftpConnection(channel);
+    sftpConnection.setMetadataCache(metadataCache);
+    sftpConnection.setDeltaManifestStore(deltaManifestStore);
+    sftpConnection.setBandwidthLimits(bandwidthLimits, host);
+    sftpConnection.setLinkTuner(transferTuning == null ? null : transferTuning.forHost(host));
+    sftpConnection.setHostMetrics(
+        clientMetrics == null ? null : clientMetrics.forHost(SFTP, host));
+    connection = sftpConnection;
+    return connection;
   }
 
   /**
@@ -99,6 +131,14 @@ public class SftpClient extends Client {
     session = jsch.getSession(userCredentials.getUsername(), host, port);
     session.setConfig("StrictHostKeyChecking", "no");
     session.setPassword(userCredentials.getPassword());
+    if (compressionOptions != null) {
+      session.setConfig("compression.s2c", ZLIB);
+      session.setConfig("compression.c2s", ZLIB);
+      session.setConfig("compression_level", String.valueOf(compressionOptions.getLevel()));
+    }
+    if (transferTuning != null) {
+      session.setSocketFactory(new TunedSocketFactory(transferTuning.forHost(host)));
+    }
     session.connect();
   }
 
@@ -107,4 +147,47 @@ public class SftpClient extends Client {
     channel = session.openChannel(SFTP);
     channel.connect();
   }
+
+  /**
+   * Everything of an ssh session goes through one socket. Its buffers are left to the autotuning of
+   * the kernel unless the profile of the server fixes them, and the receive buffer it got is
+   * reported to the tuner .
+   */
+  private static class TunedSocketFactory implements SocketFactory {
+
+    private final LinkTuner linkTuner;
+
+    TunedSocketFactory(LinkTuner linkTuner) {
+
+      this.linkTuner = linkTuner;
+    }
+
+    @Override
+    public Socket createSocket(String host, int port) throws IOException {
+
+      Socket socket = new Socket();
+      int socketBufferSize = linkTuner.getSocketBufferSize();
+      if (socketBufferSize > 0) {
+        // the receive buffer must be set before connect for the window scale to be negotiated
+        socket.setReceiveBufferSize(socketBufferSize);
+        socket.setSendBufferSize(socketBufferSize);
+      }
+      socket.setTcpNoDelay(true);
+      socket.connect(new InetSocketAddress(host, port));
+      linkTuner.onSocketBuffer(socket.getReceiveBufferSize());
+      return socket;
+    }
+
+    @Override
+    public InputStream getInputStream(Socket socket) throws IOException {
+
+      return socket.getInputStream();
+    }
+
+    @Override
+    public OutputStream getOutputStream(Socket socket) throws IOException {
+
+      return socket.getOutputStream();
+    }
+  }
 }
\ No newline at end of file
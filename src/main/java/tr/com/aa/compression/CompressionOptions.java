@@ -0,0 +1,87 @@
+package tr.com.aa.compression;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.zip.Deflater;
+import org.apache.commons.io.FilenameUtils;
+
+/**
+ * Settings of on-the-fly transfer compression: MODE Z on FTP, zlib on the SSH session for SFTP.
+ * FTP decides per file and leaves small and already compressed files alone; SFTP compresses the
+ * whole session, so only the level applies there .
+ */
+public class CompressionOptions {
+
+  /**
+   * Below this size the extra MODE commands cost more than the compression saves .
+   */
+  public static final long DEFAULT_MINIMUM_SIZE = 64 * 1024;
+  public static final int DEFAULT_LEVEL = 6;
+  /**
+   * Extensions of formats that are compressed already .
+   */
+  public static final Set<String> DEFAULT_SKIPPED_EXTENSIONS = Collections.unmodifiableSet(
+      new HashSet<>(Arrays.asList("gz", "tgz", "zip", "bz2", "xz", "7z", "rar", "zst", "lz4", "z",
+          "jar", "war", "jpg", "jpeg", "png", "gif", "webp", "mp3", "mp4", "mkv", "avi", "mov",
+          "pdf", "docx", "xlsx", "pptx")));
+
+  private int level = DEFAULT_LEVEL;
+  private long minimumSize = DEFAULT_MINIMUM_SIZE;
+  private Set<String> skippedExtensions = DEFAULT_SKIPPED_EXTENSIONS;
+
+  public int getLevel() {
+
+    return level;
+  }
+
+  /**
+   * @param level deflate level from 1 (fastest) to 9 (smallest) .
+   */
+  public void setLevel(int level) {
+
+    if (level < Deflater.BEST_SPEED || level > Deflater.BEST_COMPRESSION) {
+      throw new IllegalArgumentException("level must be between 1 and 9");
+    }
+    this.level = level;
+  }
+
+  public long getMinimumSize() {
+
+    return minimumSize;
+  }
+
+  public void setMinimumSize(long minimumSize) {
+
+    this.minimumSize = minimumSize;
+  }
+
+  public Set<String> getSkippedExtensions() {
+
+    return skippedExtensions;
+  }
+
+  /**
+   * @param skippedExtensions extensions, without the dot, of files sent uncompressed .
+   */
+  public void setSkippedExtensions(Collection<String> skippedExtensions) {
+
+    Set<String> extensions = new HashSet<>();
+    skippedExtensions.forEach(extension -> extensions.add(extension.toLowerCase(Locale.ROOT)));
+    this.skippedExtensions = Collections.unmodifiableSet(extensions);
+  }
+
+  /**
+   * @param fileName name or path of the file .
+   * @param size     size of the file .
+   * @return true if the file is worth compressing on the wire .
+   */
+  public boolean shouldCompress(String fileName, long size) {
+
+    return size >= minimumSize && !skippedExtensions.contains(
+        FilenameUtils.getExtension(fileName).toLowerCase(Locale.ROOT));
+  }
+}
@@ -1,7 +1,10 @@
 package tr.com.aa.connection;
 
 import java.io.IOException;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 import org.apache.commons.net.ftp.FTPFileFilter;
 import tr.com.aa.exception.FtpException;
 
@@ -59,6 +62,18 @@ public interface Connection {
    */
   List<AaFtpFile> listFiles(String remotePath, FTPFileFilter ftpFileFilter) throws FtpException;
 
+  /**
+   * List the entries of a directory lazily, page by page, so that huge directories can be
+   * processed while they are listed. Whether the raw listing is buffered in full depends on the
+   * implementation. The connection must not be used for anything else until the stream is consumed
+   * or closed, so use it in a try-with-resources block .
+   *
+   * @param remotePath .
+   * @return .
+   * @throws FtpException .
+   */
+  Stream<AaFtpFile> streamFiles(String remotePath) throws FtpException;
+
   /**
    * Upload a single file to the FTP server .
    *
@@ -126,6 +141,23 @@ public interface Connection {
   void downloadDirectory(String remoteDirectoryPath, String localDirectoryPath, boolean compareTime,
                          boolean logProcess);
 
+  /**
+   * Create a directory and all missing parent directories on the server .
+   *
+   * @param remoteDirectoryPath .
+   * @throws FtpException .
+   */
+  void createDirectory(String remoteDirectoryPath) throws FtpException;
+
+  /**
+   * Make sure every given directory exists, creating the missing ones top-down. Directories known
+   * to exist are remembered for the session, so asking again costs no round trip .
+   *
+   * @param remoteDirectoryPaths .
+   * @throws FtpException if a directory could not be created .
+   */
+  void ensureDirectories(Collection<String> remoteDirectoryPaths) throws FtpException;
+
   /**
    * This method calculates total number of sub directories, files and size of a remote directory.
    *
@@ -146,6 +178,16 @@ public interface Connection {
    */
   void removeFileOrDirectory(String remoteFileOrDirectoryPath) throws FtpException;
 
+  /**
+   * Existence, type, size and modification time of a single remote path, asked with as few round
+   * trips as the server allows .
+   *
+   * @param remotePath .
+   * @return the entry, or empty if nothing exists at the path .
+   * @throws FtpException if the server could not be asked .
+   */
+  Optional<AaFtpFile> stat(String remotePath) throws FtpException;
+
   /**
    * Determines whether a file exists or not false
    *
@@ -187,4 +229,19 @@ public interface Connection {
    * @return .
    */
   boolean isAvailable();
+
+  /**
+   * Bring the session back to the state the login left it in, the pool does so before the next
+   * borrower gets it: the initial working directory and the default transfer settings .
+   *
+   * @throws FtpException if the server did not accept it, the session is then unusable .
+   */
+  void reset() throws FtpException;
+
+  /**
+   * Abort the transfer running on this connection, called from another thread. The running call
+   * fails with an FtpException. An aborted FTP connection is no longer available and is closed by
+   * the pool, an sftp connection can be used again .
+   */
+  void abort();
 }
\ No newline at end of file
@@ -0,0 +1,28 @@
+package tr.com.aa.connection;
+
+import java.io.IOException;
+import java.net.Socket;
+import org.apache.commons.net.ftp.FTPCmd;
+
+/**
+ * An FTP client that hands the data connection of a command to the caller, so that a listing can
+ * be parsed while it arrives instead of being read into memory first .
+ */
+public interface DataConnectionOpener {
+
+  /**
+   * Send the command and open its data connection. The caller closes the socket and then reads the
+   * final reply with completePendingCommand .
+   *
+   * @param command  .
+   * @param argument .
+   * @return the data connection, null if the server did not accept the command .
+   * @throws IOException .
+   */
+  Socket openDataConnection(FTPCmd command, String argument) throws IOException;
+
+  /**
+   * @return SO_RCVBUF of the last data connection as the kernel reports it, -1 before the first .
+   */
+  int getDataReceiveBufferSize();
+}
@@ -0,0 +1,141 @@
+package tr.com.aa.connection;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.TreeSet;
+import lombok.extern.slf4j.Slf4j;
+import tr.com.aa.exception.FtpException;
+import tr.com.aa.util.RemotePaths;
+
+/**
+ * Makes sure the remote directories of a batch of uploads exist, with as few commands as possible.
+ * Directories seen or created once are remembered for the life of the session, so only the first
+ * upload into a directory costs a round trip .
+ *
+ * <p>For a batch, the deepest directories are asked first since an existing one proves all of its
+ * parents. What is still unknown is then walked top-down: a directory is asked only when its parent
+ * was not just created, and everything below a created directory is created without asking .
+ */
+@Slf4j
+class DirectoryEnsurer {
+
+  private static final String MKDIR_FAILURE_MESSAGE = "Unable to create directory %s";
+
+  private final DirectoryOperations operations;
+  private final Set<String> knownDirectories = new HashSet<>();
+
+  DirectoryEnsurer(DirectoryOperations operations) {
+
+    this.operations = operations;
+  }
+
+  /**
+   * @param remoteDirectoryPaths directories needed by the batch, in any order .
+   * @return number of directories created .
+   * @throws FtpException if a directory could not be created .
+   */
+  int ensure(Collection<String> remoteDirectoryPaths) throws FtpException {
+
+    TreeSet<String> pending = new TreeSet<>(RemotePaths.TOP_DOWN);
+    for (String remoteDirectoryPath : remoteDirectoryPaths) {
+      String directory = RemotePaths.normalize(remoteDirectoryPath);
+      while (directory != null && !isKnown(directory)) {
+        pending.add(directory);
+        directory = RemotePaths.parentOf(directory);
+      }
+    }
+
+    if (pending.isEmpty()) {
+      return 0;
+    }
+
+    Set<String> missing = new HashSet<>();
+    for (String leaf : leaves(pending)) {
+      if (operations.exists(leaf)) {
+        markKnown(leaf);
+      } else {
+        missing.add(leaf);
+      }
+    }
+    pending.removeIf(knownDirectories::contains);
+
+    Set<String> created = new HashSet<>();
+    for (String directory : pending) {
+      String parent = RemotePaths.parentOf(directory);
+      boolean parentCreated = parent != null && created.contains(parent);
+
+      if (!parentCreated && !missing.contains(directory) && operations.exists(directory)) {
+        knownDirectories.add(directory);
+        continue;
+      }
+
+      if (!operations.makeDirectory(directory) && !operations.exists(directory)) {
+        throw new FtpException(String.format(MKDIR_FAILURE_MESSAGE, directory));
+      }
+      created.add(directory);
+      knownDirectories.add(directory);
+    }
+
+    log.debug("Ensured {} directories, created {}", remoteDirectoryPaths.size(), created.size());
+    return created.size();
+  }
+
+  /**
+   * Remember a directory and its parents as existing .
+   *
+   * @param remoteDirectoryPath .
+   */
+  void markKnown(String remoteDirectoryPath) {
+
+    String directory = RemotePaths.normalize(remoteDirectoryPath);
+    while (directory != null && knownDirectories.add(directory)) {
+      directory = RemotePaths.parentOf(directory);
+    }
+  }
+
+  /**
+   * Forget a removed path and everything below it .
+   *
+   * @param remotePath .
+   */
+  void forget(String remotePath) {
+
+    String path = RemotePaths.normalize(remotePath);
+    String prefix = path + RemotePaths.FILE_SEPARATOR;
+    knownDirectories.removeIf(directory -> directory.equals(path) || directory.startsWith(prefix));
+  }
+
+  private boolean isKnown(String directory) {
+
+    return directory.equals(RemotePaths.FILE_SEPARATOR) || directory.equals(".")
+        || knownDirectories.contains(directory);
+  }
+
+  /**
+   * @return the pending directories that are not the parent of another pending one .
+   */
+  private static Set<String> leaves(Set<String> pending) {
+
+    Set<String> leaves = new HashSet<>(pending);
+    for (String directory : pending) {
+      leaves.remove(RemotePaths.parentOf(directory));
+    }
+    return leaves;
+  }
+
+  /**
+   * Single level commands of the protocol .
+   */
+  interface DirectoryOperations {
+
+    boolean exists(String remoteDirectoryPath);
+
+    /**
+     * Create one directory whose parent exists .
+     *
+     * @return false if the server refused .
+     */
+    boolean makeDirectory(String remoteDirectoryPath);
+  }
+}
@@ -1,33 +1,74 @@
 package tr.com.aa.connection;
 
+import java.io.BufferedReader;
+import java.io.Closeable;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.function.LongConsumer;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.net.ftp.FTP;
 import org.apache.commons.net.ftp.FTPClient;
 import org.apache.commons.net.ftp.FTPCmd;
 import org.apache.commons.net.ftp.FTPFile;
+import org.apache.commons.net.ftp.FTPFileEntryParser;
 import org.apache.commons.net.ftp.FTPFileFilter;
+import org.apache.commons.net.ftp.FTPListParseEngine;
+import org.apache.commons.net.ftp.FTPReply;
+import org.apache.commons.net.ftp.parser.DefaultFTPFileEntryParserFactory;
+import org.apache.commons.net.ftp.parser.MLSxEntryParser;
 import org.apache.commons.net.io.CopyStreamListener;
 import org.apache.commons.net.io.Util;
+import tr.com.aa.cache.MetadataCache;
+import tr.com.aa.checksum.ChecksumAlgorithm;
+import tr.com.aa.checksum.StreamingChecksum;
+import tr.com.aa.compression.CompressionOptions;
 import tr.com.aa.exception.FtpException;
 import tr.com.aa.filefilter.FileNameEqualFilter;
+import tr.com.aa.metrics.HostMetrics;
+import tr.com.aa.throttle.BandwidthLimits;
+import tr.com.aa.tuning.LinkTuner;
+import tr.com.aa.util.ChannelCopier;
+import tr.com.aa.util.FileStreamFactory;
 import tr.com.aa.util.MyDateUtils;
 
 @Slf4j
@@ -35,6 +76,11 @@ public class FtpConnection implements Connection {
 
   public static final int FTP_FILE_NOT_FOUND = 550;
   public static final int FTP_PATH_CREATED = 257;
+  /**
+   * Number of entries parsed at a time by {@link #streamFiles(String)} when it falls back to
+   * FTPListParseEngine .
+   */
+  public static final int LIST_PAGE_SIZE = 1000;
   /**
    * Default SO_SNDBUF and SO_RCVBUF size .
    */
@@ -48,11 +94,56 @@ public class FtpConnection implements Connection {
       "The directory %s doesn't exist on the remote server.";
   private static final String UNABLE_TO_CD_MESSAGE =
       "Remote server was unable to change directory.";
+  private static final String STAT_FAILURE_MESSAGE = "Unable to stat %s";
+  private static final String CHECKSUM_MISMATCH_MESSAGE =
+      "%s of %s does not match: expected %s, transferred %s";
+  private static final String HASH_FEATURE = "HASH";
+  private static final String TRANSFER_ABORTED_MESSAGE = "Transfer of %s was aborted";
   //  private static final String FILE_SEPARATOR = "/";
 
   //  private String currentFileName = "";
   private FTPClient client;
-  private int replyCode;
+  private int transferBufferSize = DEFAULT_TCP_BUFFER_SIZE;
+  private FileStreamFactory fileStreamFactory = new FileStreamFactory();
+  private MetadataCache metadataCache;
+  private ChecksumAlgorithm checksumAlgorithm;
+  private Function<String, String> expectedChecksums;
+  private boolean sidecarChecksums;
+  // algorithm last selected with OPTS HASH on this control connection
+  private ChecksumAlgorithm selectedHash;
+  private CompressionOptions compressionOptions;
+  // null until FEAT has been asked, false once MODE Z turned out to be missing
+  private Boolean deflateSupported;
+  // data stream of the running transfer, closed by abort()
+  private volatile Closeable activeStream;
+  private volatile boolean aborted;
+  // set when a RETR was cut short, the replies of the control connection may be out of step
+  private volatile boolean unsynchronized;
+  // working directory of the login, known once a CWD moved away from it
+  private String homeDirectory;
+  // true from an accepted MODE Z until an accepted MODE S
+  private boolean deflateActive;
+  private BandwidthLimits bandwidthLimits;
+  private String bandwidthHost;
+  private LinkTuner linkTuner;
+  private HostMetrics hostMetrics;
+  private final DirectoryEnsurer directoryEnsurer =
+      new DirectoryEnsurer(new DirectoryEnsurer.DirectoryOperations() {
+
+        @Override
+        public boolean exists(String remoteDirectoryPath) {
+
+          return existsDirectory(remoteDirectoryPath);
+        }
+
+        @Override
+        public boolean makeDirectory(String remoteDirectoryPath) {
+
+          return makeSingleDirectory(remoteDirectoryPath);
+        }
+      });
+  // null until FEAT has been asked, false once MLSD turned out to be missing or broken
+  private Boolean mlsdSupported;
   //ftp MDTM Last modified time format returned by the command
   private String ftpModificationTimePattern = "yyyyMMddHHmmss";
 
@@ -61,6 +152,122 @@ public class FtpConnection implements Connection {
     this.client = client;
   }
 
+  /**
+   * Size of the pooled buffer of the copy loops, which is also the most read or written per call .
+   *
+   * @param transferBufferSize .
+   */
+  public void setTransferBufferSize(int transferBufferSize) {
+
+    this.transferBufferSize = transferBufferSize;
+  }
+
+  /**
+   * Source of the local file streams and channels used by uploads and downloads .
+   *
+   * @param fileStreamFactory .
+   */
+  public void setFileStreamFactory(FileStreamFactory fileStreamFactory) {
+
+    this.fileStreamFactory = fileStreamFactory;
+  }
+
+  /**
+   * Answer stat and listing requests from a cache of the server metadata, null to always ask the
+   * server .
+   *
+   * @param metadataCache .
+   */
+  public void setMetadataCache(MetadataCache metadataCache) {
+
+    this.metadataCache = metadataCache;
+  }
+
+  /**
+   * Verify every download and upload with a checksum computed while the bytes are copied, null (the
+   * default) for no verification. The expected value comes from HASH or the X command of the
+   * algorithm when FEAT advertises it, for downloads otherwise from
+   * {@link #setExpectedChecksums(Function)} or, when enabled, a sidecar file .
+   *
+   * @param checksumAlgorithm .
+   */
+  public void setChecksumAlgorithm(ChecksumAlgorithm checksumAlgorithm) {
+
+    this.checksumAlgorithm = checksumAlgorithm;
+  }
+
+  /**
+   * Expected checksums of downloads by remote path, e.g. read from a manifest, for servers that
+   * compute none. The function returns null for paths it does not know .
+   *
+   * @param expectedChecksums .
+   */
+  public void setExpectedChecksums(Function<String, String> expectedChecksums) {
+
+    this.expectedChecksums = expectedChecksums;
+  }
+
+  /**
+   * Read the expected checksum of a download from a sidecar file next to it, e.g.
+   * report.csv.sha256, when the server computes none. Off by default: every lookup is one more data
+   * connection and RETR, for a file most servers do not have .
+   *
+   * @param sidecarChecksums .
+   */
+  public void setSidecarChecksums(boolean sidecarChecksums) {
+
+    this.sidecarChecksums = sidecarChecksums;
+  }
+
+  /**
+   * Compress file transfers with MODE Z when the server advertises it, null (the default) for
+   * plain stream mode. Resumed transfers, small and already compressed files are sent as they
+   * are .
+   *
+   * @param compressionOptions .
+   */
+  public void setCompressionOptions(CompressionOptions compressionOptions) {
+
+    this.compressionOptions = compressionOptions;
+  }
+
+  /**
+   * Pace the data streams of downloads and uploads by the caps of the transfer, the server and the
+   * JVM, null (the default) for no limit .
+   *
+   * @param bandwidthLimits .
+   * @param host            name of the server in the limits .
+   */
+  public void setBandwidthLimits(BandwidthLimits bandwidthLimits, String host) {
+
+    this.bandwidthLimits = bandwidthLimits;
+    this.bandwidthHost = host;
+  }
+
+  /**
+   * Size the copy buffer of every transfer to the measured bandwidth-delay product of the server,
+   * null (the default) for fixed sizes. The copy buffer set with
+   * {@link #setTransferBufferSize(int)} is replaced by the tuned one. The data socket buffers are
+   * left to the kernel unless the profile of the server fixes them .
+   *
+   * @param linkTuner .
+   */
+  public void setLinkTuner(LinkTuner linkTuner) {
+
+    this.linkTuner = linkTuner;
+  }
+
+  /**
+   * Record transfer sizes and throughput in the meters of the server, null (the default) for
+   * none .
+   *
+   * @param hostMetrics .
+   */
+  public void setHostMetrics(HostMetrics hostMetrics) {
+
+    this.hostMetrics = hostMetrics;
+  }
+
   /**
    * Returns the pathname of the current working directory .
    *
@@ -86,13 +293,56 @@ public class FtpConnection implements Connection {
   @Override
   public boolean isAvailable() {
 
-    return client.isAvailable();
+    return !aborted && !unsynchronized && client.isAvailable();
+  }
+
+  /**
+   * Closes the data connection of the running transfer. The reply of the aborted command is left
+   * on the control connection, so the connection reports itself unavailable from now on .
+   */
+  @Override
+  public void abort() {
+
+    aborted = true;
+    Closeable stream = activeStream;
+    if (stream != null) {
+      IOUtils.closeQuietly(stream);
+    }
+  }
+
+  /**
+   * CWD back to the directory of the login if the connection moved away from it, leave MODE Z if
+   * a failed transfer left it on, and send TYPE I, which also tells whether the control connection
+   * still answers in step .
+   */
+  @Override
+  public void reset() throws FtpException {
+
+    try {
+      if (homeDirectory != null && !client.changeWorkingDirectory(homeDirectory)) {
+        throw new FtpException(String.format(NO_SUCH_DIRECTORY_MESSAGE, homeDirectory));
+      }
+      if (deflateActive) {
+        leaveDeflateMode();
+        if (deflateActive) {
+          throw new FtpException("Unable to leave MODE Z: " + client.getReplyString());
+        }
+      }
+      if (!client.setFileType(FTP.BINARY_FILE_TYPE)) {
+        throw new FtpException("Unable to reset the transfer type: " + client.getReplyString());
+      }
+    } catch (IOException e) {
+      throw new FtpException("Unable to reset the connection", e);
+    }
   }
 
   @Override
   public void changeDirectory(String directory) throws FtpException {
 
     try {
+      if (homeDirectory == null) {
+        homeDirectory = client.printWorkingDirectory();
+      }
       boolean success = client.changeWorkingDirectory(directory);
       if (!success) {
         throw new FtpException(String.format(NO_SUCH_DIRECTORY_MESSAGE, directory));
@@ -158,6 +408,14 @@ public class FtpConnection implements Connection {
   public List<AaFtpFile> listFiles(String remotePath, FTPFileFilter ftpFileFilter)
       throws FtpException {
 
+    if (metadataCache != null && ftpFileFilter == null) {
+      return metadataCache.list(remotePath, () -> fetchFiles(remotePath, null));
+    }
+    return fetchFiles(remotePath, ftpFileFilter);
+  }
+
+  private List<AaFtpFile> fetchFiles(String remotePath, FTPFileFilter ftpFileFilter) {
+
     List<AaFtpFile> files = new ArrayList<AaFtpFile>();
 
     try {
@@ -171,13 +429,7 @@ public class FtpConnection implements Connection {
       String newWorkingDirectory = getWorkingDirectory();
       String originalWorkingDirectory = getWorkingDirectory();
 
-      FTPFile[] ftpFiles;
-
-      if (ftpFileFilter == null) {
-        ftpFiles = client.listFiles(newWorkingDirectory);
-      } else {
-        ftpFiles = client.listFiles(newWorkingDirectory, ftpFileFilter);
-      }
+      FTPFile[] ftpFiles = list(newWorkingDirectory, ftpFileFilter);
 
       for (FTPFile file : ftpFiles) {
         files.add(toFtpFile(file, newWorkingDirectory));
@@ -194,6 +446,193 @@ public class FtpConnection implements Connection {
     return files;
   }
 
+  /**
+   * List the entries of a directory while the MLSD or LIST reply arrives: every entry is read from
+   * the data connection and parsed when the stream reaches it, so memory does not grow with the
+   * size of the directory. The transfer ends with the stream, so close it, e.g. in a
+   * try-with-resources block. A client that cannot hand out its data connections, i.e. not a
+   * {@link DataConnectionOpener}, is listed page by page with FTPListParseEngine, which reads the
+   * whole reply into memory first .
+   *
+   * @param remotePath .
+   * @return .
+   * @throws FtpException .
+   */
+  @Override
+  public Stream<AaFtpFile> streamFiles(String remotePath) throws FtpException {
+
+    String directory = remotePath.length() > 1 && remotePath.endsWith("/")
+        ? remotePath.substring(0, remotePath.length() - 1) : remotePath;
+
+    if (!(client instanceof DataConnectionOpener)) {
+      return streamPages(remotePath, directory);
+    }
+
+    FTPFileEntryParser parser = null;
+    Socket socket = null;
+
+    try {
+      DataConnectionOpener opener = (DataConnectionOpener) client;
+      if (isMlsdSupported()) {
+        socket = opener.openDataConnection(FTPCmd.MLSD, directory);
+        int code = client.getReplyCode();
+        if (socket != null || !isUnsupported(code)) {
+          parser = MLSxEntryParser.getInstance();
+        } else {
+          log.info("MLSD was rejected with {}, falling back to LIST", code);
+          mlsdSupported = false;
+        }
+      }
+      if (parser == null) {
+        parser = new DefaultFTPFileEntryParserFactory()
+            .createFileEntryParser(client.getSystemType());
+        socket = opener.openDataConnection(FTPCmd.LIST, directory);
+      }
+    } catch (IOException e) {
+      throw new FtpException(String.format(FILE_LISTING_ERROR_MESSAGE, remotePath), e);
+    }
+
+    if (socket == null) {
+      // refused, e.g. a missing directory, which FTPListParseEngine also lists as empty
+      log.debug("Listing {} was refused with {}", directory, client.getReplyCode());
+      return Stream.empty();
+    }
+
+    BufferedReader reader;
+    try {
+      reader = new BufferedReader(new InputStreamReader(socket.getInputStream(),
+          Charset.forName(client.getControlEncoding())));
+    } catch (IOException e) {
+      IOUtils.closeQuietly(socket);
+      finishListing(remotePath, false);
+      throw new FtpException(String.format(FILE_LISTING_ERROR_MESSAGE, remotePath), e);
+    }
+
+    Socket dataConnection = socket;
+    FTPFileEntryParser entryParser = parser;
+    AtomicBoolean ended = new AtomicBoolean();
+    activeStream = dataConnection;
+
+    Iterator<AaFtpFile> iterator = new Iterator<AaFtpFile>() {
+
+      private FTPFile next;
+
+      @Override
+      public boolean hasNext() {
+
+        try {
+          while (next == null && !ended.get()) {
+            String entry = entryParser.readNextEntry(reader);
+            if (entry == null) {
+              ended.set(true);
+              break;
+            }
+            FTPFile file = entryParser.parseFTPEntry(entry);
+            // entries the parser could not read, and the MLSD entries of the directory itself
+            if (file != null && !isMlsdSelfOrParent(file)) {
+              next = file;
+            }
+          }
+        } catch (IOException e) {
+          throw new FtpException(String.format(FILE_LISTING_ERROR_MESSAGE, remotePath), e);
+        }
+        return next != null;
+      }
+
+      @Override
+      public AaFtpFile next() {
+
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        FTPFile file = next;
+        next = null;
+        return toFtpFile(file, directory);
+      }
+    };
+
+    return StreamSupport.stream(Spliterators.spliteratorUnknownSize(
+        iterator, Spliterator.ORDERED | Spliterator.NONNULL), false)
+        .onClose(() -> {
+          IOUtils.closeQuietly(dataConnection);
+          activeStream = null;
+          finishListing(remotePath, ended.get());
+        });
+  }
+
+  /**
+   * Read the final reply of a listing. A listing closed before its end may be answered with 426,
+   * which is not a failure .
+   */
+  private void finishListing(String remotePath, boolean complete) {
+
+    boolean succeeded;
+    try {
+      succeeded = client.completePendingCommand();
+    } catch (IOException e) {
+      unsynchronized = true;
+      throw new FtpException(String.format(FILE_LISTING_ERROR_MESSAGE, remotePath), e);
+    }
+    if (complete && !succeeded) {
+      throw new FtpException(String.format(FILE_LISTING_ERROR_MESSAGE, remotePath) + ": "
+          + client.getReplyString());
+    }
+  }
+
+  /**
+   * List page by page with FTPListParseEngine, which reads the whole reply into memory before the
+   * first page; only parsing and the conversion to AaFtpFile wait until the stream reaches an
+   * entry .
+   */
+  private Stream<AaFtpFile> streamPages(String remotePath, String directory) {
+
+    FTPListParseEngine engine;
+
+    try {
+      engine = initiateListing(directory);
+    } catch (IOException e) {
+      throw new FtpException(String.format(FILE_LISTING_ERROR_MESSAGE, remotePath), e);
+    }
+
+    Iterator<AaFtpFile> iterator = new Iterator<AaFtpFile>() {
+
+      private FTPFile[] page = new FTPFile[0];
+      private int index;
+
+      @Override
+      public boolean hasNext() {
+
+        skipUnusable();
+        while (index >= page.length && engine.hasNext()) {
+          page = engine.getNext(LIST_PAGE_SIZE);
+          index = 0;
+          skipUnusable();
+        }
+        return index < page.length;
+      }
+
+      private void skipUnusable() {
+
+        // entries the parser could not read, and the MLSD entries of the directory itself
+        while (index < page.length && (page[index] == null || isMlsdSelfOrParent(page[index]))) {
+          index++;
+        }
+      }
+
+      @Override
+      public AaFtpFile next() {
+
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        return toFtpFile(page[index++], directory);
+      }
+    };
+
+    return StreamSupport.stream(Spliterators.spliteratorUnknownSize(
+        iterator, Spliterator.ORDERED | Spliterator.NONNULL), false);
+  }
+
   /**
    * Download to the specified directory, the file name remains unchanged, time stamps are not
    * compared, and download progress is not recorded .
@@ -244,12 +683,16 @@ public class FtpConnection implements Connection {
   public void downloadFile(String remoteFilePath, String localDirectoryPath, String localFileName,
                            boolean compareTime, boolean logProcess) throws FtpException {
 
+    checkAborted(remoteFilePath);
+    boolean deflate = false;
+
     try {
 
-      //Check if remote file exists
-      if (!existsFile(remoteFilePath)) {
-        throw new FtpException("Unable to download file : " + remoteFilePath + " does not exist.");
-      }
+      //Check if remote file exists, size and time come with the same answer
+      AaFtpFile remoteFile = lookup(remoteFilePath, false, true)
+          .filter(file -> !file.isDirectory())
+          .orElseThrow(() -> new FtpException(
+              "Unable to download file : " + remoteFilePath + " does not exist."));
 
       //If the local folder does not exist, it can be created recursively
       String localFilePath;
@@ -268,11 +711,9 @@ public class FtpConnection implements Connection {
 
       log.info("localFilePath={}", localFilePath);
 
-      FTPFile[] files = client.listFiles(
-          new String(remoteFilePath.getBytes(StandardCharsets.UTF_8), "iso-8859-1"));
       File localFile = Paths.get(localFilePath).toFile();
       long localSize = localFile.length();
-      long remoteSize = files[0].getSize();
+      long remoteSize = remoteFile.getSize();
 
       if (localSize == 0) {
         log.info("Local file does not exist, ready to download...");
@@ -285,7 +726,7 @@ public class FtpConnection implements Connection {
 
       if (remoteSize == localSize) {
         if (compareTime) {
-          if (!isSync(remoteFilePath, localFilePath)) {
+          if (!isSync(remoteFile, localFile)) {
             log.info(
                 "The server file and the local file have the same size "
                     + "and the same timestamp: {} B = {} B, exit the download...",
@@ -319,14 +760,35 @@ public class FtpConnection implements Connection {
       //client.enterLocalPassiveMode();
       //Settings are transmitted in binary mode
       //client.setFileType(FTP.BINARY_FILE_TYPE);
+      StreamingChecksum checksum = newChecksum(localFile.toPath(), localFile.length());
       FileOutputStream out = new FileOutputStream(localFile, true);
+      deflate = enterDeflateMode(remoteFilePath, remoteSize, localFile.length());
+      tune();
+      long started = System.nanoTime();
       client.setRestartOffset(localFile.length());
       InputStream in = client
           .retrieveFileStream(new String(remoteFilePath.getBytes("GBK"), "iso-8859-1"));
+      if (in == null) {
+        IOUtils.closeQuietly(out);
+        throw new FtpException("Unable to download file : " + client.getReplyString());
+      }
+      activeStream = in;
+      if (bandwidthLimits != null && in != null) {
+        // the bytes on the wire are counted, before they are inflated
+        in = bandwidthLimits.newTransfer(bandwidthHost).throttle(in);
+      }
+      Inflater inflater = null;
+      if (deflate && in != null) {
+        inflater = new Inflater();
+        in = new InflaterInputStream(in, inflater, DEFAULT_TCP_BUFFER_SIZE);
+      }
+      if (checksum != null && in != null) {
+        in = checksum.track(in);
+      }
 
       if (logProcess) {
         /* org.apache.commons.net.io.Util.copyStream method*/
-        final long step = remoteSize / 100;
+        final long step = Math.max(1, remoteSize / 100);
         final long[] process = {localSize / step};
         final long[] readbytes = {localSize};
 
@@ -351,30 +813,160 @@ public class FtpConnection implements Connection {
             in, out, DEFAULT_TCP_BUFFER_SIZE, client.getBufferSize(), listener, true);
 
       } else {
-        // Use IOUtils Re-implementation, is efficiency better? Otherwise use if Statements in
-        //When greater than 2G
-        if (remoteSize - localSize >= 2 * FileUtils.ONE_GB) {
-          IOUtils.copyLarge(in, out);
-        } else {
-          IOUtils.copy(in, out);
-        }
-
+        // reads and writes of transferBufferSize bytes through one pooled buffer
+        ChannelCopier.copy(in, out, transferBufferSize);
       }
 
       out.flush();
       IOUtils.closeQuietly(in);
       IOUtils.closeQuietly(out);
-      client.completePendingCommand();
+      if (inflater != null) {
+        inflater.end();
+      }
+      activeStream = null;
+      checkAborted(remoteFilePath);
+      if (!client.completePendingCommand()) {
+        throw new FtpException("Download of " + remoteFilePath + " did not complete : "
+            + client.getReplyString());
+      }
+      long elapsed = System.nanoTime() - started;
+      if (linkTuner != null && !deflate) {
+        onTransfer(localFile.length() - localSize, elapsed);
+      }
+      if (hostMetrics != null) {
+        hostMetrics.recordTransfer(HostMetrics.DOWNLOAD, localFile.length() - localSize, elapsed);
+      }
+      if (deflate) {
+        // a sidecar read for the verification must not be compressed
+        leaveDeflateMode();
+        deflate = false;
+      }
+
+      if (checksum != null) {
+        try {
+          verify(remoteFilePath, checksum, true);
+        } catch (FtpException e) {
+          // a resume would keep the corrupt bytes, the next attempt starts over
+          Files.deleteIfExists(localFile.toPath());
+          throw e;
+        }
+      }
 
       // Last modified date of modified downloaded file is ftp File time
-      localFile.setLastModified(MyDateUtils.asLong(getModificationTime(remoteFilePath)));
+      long remoteTime = MyDateUtils.asLong(remoteFile.getLastModified());
+      if (remoteTime > 0) {
+        localFile.setLastModified(remoteTime);
+      }
       log.info("Download completed {} <--> {}B...", localFile.getAbsolutePath(),
           localFile.length());
 
     } catch (IOException e) {
-      e.printStackTrace();
+      checkAborted(remoteFilePath);
+      throw new FtpException("Unable to download file " + remoteFilePath, e);
+    } finally {
+      activeStream = null;
+      if (deflate && !aborted) {
+        leaveDeflateMode();
+      }
+    }
+
+  }
+
+  /**
+   * Download the byte range [offset, offset + length) of a remote file into its position in an
+   * already allocated local file. The transfer starts with REST at the offset and the data
+   * connection is closed as soon as the range is complete. When that cuts the RETR short, servers
+   * differ in the replies they send, so the connection reports itself unavailable afterwards and
+   * a pool drops it instead of handing it out with a stale reply .
+   *
+   * @param remoteFilePath path of the file on the server .
+   * @param target         local file channel opened for writing .
+   * @param offset         first byte of the range .
+   * @param length         number of bytes of the range .
+   * @param progress       receives the number of bytes of the range written so far .
+   * @return number of bytes written .
+   * @throws FtpException if the transfer fails or the file ends before the range does .
+   */
+  public long downloadRange(String remoteFilePath, FileChannel target, long offset, long length,
+                            LongConsumer progress) throws FtpException {
+
+    if (length <= 0) {
+      return 0;
+    }
+
+    long written = 0;
+
+    try {
+      tune();
+      long started = System.nanoTime();
+      client.setRestartOffset(offset);
+      InputStream in = client.retrieveFileStream(remoteFilePath);
+
+      if (in == null) {
+        throw new FtpException(String.format(FILE_DOWNLOAD_FAILURE_MESSAGE, remoteFilePath));
+      }
+      if (bandwidthLimits != null) {
+        in = bandwidthLimits.newTransfer(bandwidthHost).throttle(in);
+      }
+
+      boolean complete = false;
+      try {
+        ReadableByteChannel source = Channels.newChannel(in);
+        ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(DEFAULT_TCP_BUFFER_SIZE, length));
+
+        while (written < length) {
+          buffer.clear();
+          buffer.limit((int) Math.min(buffer.capacity(), length - written));
+          if (source.read(buffer) < 0) {
+            throw new FtpException(String.format(
+                "Unexpected end of file %s at byte %d", remoteFilePath, offset + written));
+          }
+          buffer.flip();
+          while (buffer.hasRemaining()) {
+            written += target.write(buffer, offset + written);
+          }
+          progress.accept(written);
+        }
+        // a range that ends with the file completes the RETR normally
+        complete = in.read() < 0;
+      } finally {
+        IOUtils.closeQuietly(in);
+        if (complete) {
+          if (!client.completePendingCommand()) {
+            throw new FtpException(String.format(FILE_DOWNLOAD_FAILURE_MESSAGE, remoteFilePath)
+                + " : " + client.getReplyString());
+          }
+        } else {
+          unsynchronized = true;
+        }
+      }
+      long elapsed = System.nanoTime() - started;
+      if (linkTuner != null) {
+        onTransfer(written, elapsed);
+      }
+      if (hostMetrics != null) {
+        hostMetrics.recordTransfer(HostMetrics.DOWNLOAD, written, elapsed);
+      }
+
+    } catch (IOException e) {
+      throw new FtpException(String.format(FILE_DOWNLOAD_FAILURE_MESSAGE, remoteFilePath), e);
     }
 
+    return written;
+  }
+
+  /**
+   * @param remoteFilePath path of the file on the server .
+   * @return size of the remote file in bytes .
+   * @throws FtpException if the file does not exist .
+   */
+  public long getFileSize(String remoteFilePath) throws FtpException {
+
+    return lookup(remoteFilePath, false, false)
+        .filter(file -> !file.isDirectory())
+        .map(AaFtpFile::getSize)
+        .orElseThrow(() -> new FtpException(
+            String.format(COULD_NOT_FIND_FILE_MESSAGE, remoteFilePath)));
   }
 
   @Override
@@ -430,6 +1022,10 @@ public class FtpConnection implements Connection {
   public void uploadFile(String localFilePath, String remoteDirectoryPath, boolean logProcess)
       throws FtpException {
 
+    checkAborted(localFilePath);
+    boolean deflate = false;
+    String remoteFilePath = null;
+
     try {
       //verilen pathe gore file olustur
       File localFile = Paths.get(localFilePath).toFile();
@@ -440,12 +1036,14 @@ public class FtpConnection implements Connection {
       }
 
       // upload icin verilen path uzakta var mi yok mu bak,yoksa olustur
-      String remoteFilePath = getRemoteUploadDirectoryPath(localFilePath, remoteDirectoryPath);
+      remoteFilePath = getRemoteUploadDirectoryPath(localFilePath, remoteDirectoryPath);
 
       //upload edilecek dosya uzakta var mi gorelim
       log.info("[Upload] Check if the file exists on the server...");
-      // verilen pathdeki dosya listesini al
-      FTPFile[] files = client.listFiles(remoteFilePath);
+      // tek komutla uzaktaki dosyanin boyutunu al, dosya yuklemeden sonra degisecegi icin cache
+      // kullanilmaz
+      Optional<AaFtpFile> remoteFile = statOrThrow(remoteFilePath, false, false)
+          .filter(file -> !file.isDirectory());
 
       //localdeki dosya size
       long localSize = localFile.length();
@@ -453,30 +1051,10 @@ public class FtpConnection implements Connection {
       //uzaktaki dosya size
       long remoteSize = 0;
 
-      /*OutputStream out = client.appendFileStream(
-          new String(remoteFilePath.getBytes(StandardCharsets.UTF_8),
-              StandardCharsets.ISO_8859_1));*/
-      OutputStream out = client.appendFileStream(remoteFilePath);//After parsing
-      //localdeki dosyayi oku
-      InputStream in = new FileInputStream(localFile);
-
-      // devam edebilir upload icin mod acildi Set passive mode
-      //client.enterLocalPassiveMode();
-      // Settings are transmitted in binary mode
-      //client.setFileType(FTP.BINARY_FILE_TYPE);
-      //client.setControlEncoding("UTF_8");
-
-      // yuklenen dosyanin ilerleme durumunu goster
-      long step = localFile.length() / 100;
-      long process = remoteSize / step;
-      // yuklenecek dosya size
-      long readbytes = 0L;
-
-      if (files.length == 1) { // yuklenecek dosya zaten var
+      if (remoteFile.isPresent()) { // yuklenecek dosya zaten var
         log.info("[Upload Resume] The file already exists on the server, ready to resume...");
 
-        remoteSize = files[0].getSize();
-        readbytes = remoteSize;
+        remoteSize = remoteFile.get().getSize();
 
         if (remoteSize == localSize) {
           log.info(
@@ -496,44 +1074,105 @@ public class FtpConnection implements Connection {
         log.info(
             "[Upload Resume] Preparation for resuming the transfer is complete, "
                 + "start preparing the cursor...");
-        in.skip(remoteSize);
-        client.setRestartOffset(remoteSize);
-
       } else {
-        in.skip(0);
-        client.setRestartOffset(0);
         log.info("File not exists. New upload");
       }
 
-      log.info("Start uploading file");
-      if (logProcess) {
-        byte[] bytes = new byte[DEFAULT_TCP_BUFFER_SIZE];
-        int c;
-        while ((c = in.read(bytes)) != -1) {
-          out.write(bytes, 0, c);
-          readbytes += c;
-          if (readbytes / step != process) {
-            process = readbytes / step;
-            log.info("Upload file completion progress:" + process + " %");
-            //TODO Report upload status
-          }
-        }
-      } else {
-        // dosya 2gb buyukse
-        if (localSize - remoteSize >= 2 * FileUtils.ONE_GB) {
-          IOUtils.copyLarge(in, out);
-        } else {
-          IOUtils.copy(in, out);
-        }
-      }
+      // APPE continues the remote file, the local channel is positioned past the bytes it holds
+      /*OutputStream out = client.appendFileStream(
+          new String(remoteFilePath.getBytes(StandardCharsets.UTF_8),
+              StandardCharsets.ISO_8859_1));*/
+      deflate = enterDeflateMode(remoteFilePath, localSize, remoteSize);
+      tune();
+      long started = System.nanoTime();
+      OutputStream out = client.appendFileStream(remoteFilePath);//After parsing
+      if (out == null) {
+        throw new FtpException("Unable to upload file : " + client.getReplyString());
+      }
+      activeStream = out;
+      if (bandwidthLimits != null) {
+        out = bandwidthLimits.newTransfer(bandwidthHost).throttle(out);
+      }
+      Deflater deflater = null;
+      if (deflate) {
+        deflater = new Deflater(compressionOptions.getLevel());
+        out = new DeflaterOutputStream(out, deflater, DEFAULT_TCP_BUFFER_SIZE);
+      }
+      //localdeki dosyayi oku
+      FileChannel in = fileStreamFactory.createReadChannel(localFilePath);
+      in.position(remoteSize);
+      StreamingChecksum checksum = newChecksum(localFile.toPath(), remoteSize);
+      if (checksum != null) {
+        out = checksum.track(out);
+      }
+
+      // devam edebilir upload icin mod acildi Set passive mode
+      //client.enterLocalPassiveMode();
+      // Settings are transmitted in binary mode
+      //client.setFileType(FTP.BINARY_FILE_TYPE);
+      //client.setControlEncoding("UTF_8");
+
+      log.info("Start uploading file");
+      if (logProcess) {
+        // yuklenen dosyanin ilerleme durumunu goster
+        long step = Math.max(1, localSize / 100);
+        long process = remoteSize / step;
+        // yuklenecek dosya size
+        long readbytes = remoteSize;
+        ByteBuffer buffer = ByteBuffer.allocate(transferBufferSize);
+        int c;
+        while ((c = in.read(buffer)) != -1) {
+          out.write(buffer.array(), 0, c);
+          buffer.clear();
+          readbytes += c;
+          if (readbytes / step != process) {
+            process = readbytes / step;
+            log.info("Upload file completion progress:" + process + " %");
+            //TODO Report upload status
+          }
+        }
+      } else {
+        // reads and writes of transferBufferSize bytes through one pooled buffer
+        ChannelCopier.copy(in, out, transferBufferSize);
+      }
       out.flush();
       IOUtils.closeQuietly(in);
+      // closing a deflating stream writes the end of the deflate stream first
       IOUtils.closeQuietly(out);
+      if (deflater != null) {
+        deflater.end();
+      }
+      activeStream = null;
+      checkAborted(remoteFilePath);
       if (client.completePendingCommand()) {
         log.info("The file is uploaded successfully.");
       }
+      long elapsed = System.nanoTime() - started;
+      if (linkTuner != null && !deflate) {
+        onTransfer(localSize - remoteSize, elapsed);
+      }
+      if (hostMetrics != null) {
+        hostMetrics.recordTransfer(HostMetrics.UPLOAD, localSize - remoteSize, elapsed);
+      }
+      if (deflate) {
+        leaveDeflateMode();
+        deflate = false;
+      }
+      if (checksum != null) {
+        verify(remoteFilePath, checksum, false);
+      }
     } catch (IOException e) {
+      checkAborted(localFilePath);
       throw new FtpException("Upload may not have completed.", e);
+    } finally {
+      // a failed or aborted upload may have left part of the file on the server as well
+      if (metadataCache != null && remoteFilePath != null) {
+        metadataCache.invalidate(remoteFilePath);
+      }
+      activeStream = null;
+      if (deflate && !aborted) {
+        leaveDeflateMode();
+      }
     }
   }
 
@@ -557,12 +1196,12 @@ public class FtpConnection implements Connection {
 
         if (localFile.isFile()) {
 
-          uploadDirectory(localFile.getAbsolutePath(), remoteDirectoryPath, logProcess);
+          uploadFile(localFile.getAbsolutePath(), remoteDirectoryPath, logProcess);
 
         } else {
 
           uploadDirectory(localFile.getAbsolutePath(),
-              remoteDirectoryPath + File.separator + localFile.getName(), logProcess);
+              remoteDirectoryPath + "/" + localFile.getName(), logProcess);
         }
       }
     }
@@ -583,13 +1222,53 @@ public class FtpConnection implements Connection {
   }
 
   /**
-   * Create a directory and all missing parent-directories . Set to private ,No need to just create
-   * folders on the server .
+   * Create a directory and all missing parent-directories .
    *
    * @param remoteDirectoryPath .
-   * @throws IOException .
+   * @throws FtpException .
+   */
+  @Override
+  public void createDirectory(String remoteDirectoryPath) throws FtpException {
+
+    try {
+      makeDirectory(remoteDirectoryPath);
+    } catch (IOException e) {
+      throw new FtpException("Unable to create directory " + remoteDirectoryPath, e);
+    } finally {
+      if (metadataCache != null) {
+        metadataCache.invalidateWithParents(remoteDirectoryPath);
+      }
+    }
+  }
+
+  /**
+   * @param remoteDirectoryPaths .
+   * @throws FtpException .
+   */
+  @Override
+  public void ensureDirectories(Collection<String> remoteDirectoryPaths) throws FtpException {
+
+    directoryEnsurer.ensure(remoteDirectoryPaths);
+  }
+
+  /**
+   * MKD of a single directory whose parent exists .
    */
-  private void createDirectory(String remoteDirectoryPath) throws IOException {
+  private boolean makeSingleDirectory(String remoteDirectoryPath) {
+
+    log.info("Create Directory: {}", remoteDirectoryPath);
+    try {
+      return client.makeDirectory(remoteDirectoryPath);
+    } catch (IOException e) {
+      throw new FtpException("Unable to create directory " + remoteDirectoryPath, e);
+    } finally {
+      if (metadataCache != null) {
+        metadataCache.invalidate(remoteDirectoryPath);
+      }
+    }
+  }
+
+  private void makeDirectory(String remoteDirectoryPath) throws IOException {
 
     log.info("Create Directory: {}", remoteDirectoryPath);
     int createDirectoryStatus = client.mkd(remoteDirectoryPath); // makeDirectory...
@@ -600,7 +1279,7 @@ public class FtpConnection implements Connection {
       int sepIdx = remoteDirectoryPath.lastIndexOf('/');
       if (sepIdx > -1) {
         String parentPath = remoteDirectoryPath.substring(0, sepIdx);
-        createDirectory(parentPath);
+        makeDirectory(parentPath);
         log.debug("2'nd Create Directory: {}", remoteDirectoryPath);
         createDirectoryStatus = client.mkd(remoteDirectoryPath); // makeDirectory...
         log.debug("2'nd Create Directory Status: {}", createDirectoryStatus);
@@ -651,10 +1330,30 @@ public class FtpConnection implements Connection {
 
     } catch (IOException e) {
       e.printStackTrace();
+    } finally {
+      if (metadataCache != null) {
+        metadataCache.invalidateTree(remoteFileOrDirectoryPath);
+      }
+      directoryEnsurer.forget(remoteFileOrDirectoryPath);
     }
 
   }
 
+  /**
+   * MLST answers type, size and a second precision timestamp in one round trip. Without it a file
+   * is recognised by SIZE and timed by MDTM, and a path SIZE refuses is tried as a directory with
+   * CWD .
+   *
+   * @param remotePath .
+   * @return .
+   * @throws FtpException .
+   */
+  @Override
+  public Optional<AaFtpFile> stat(String remotePath) throws FtpException {
+
+    return lookup(remotePath, true, true);
+  }
+
   /**
    * Determines whether a file exists or not false .
    *
@@ -665,13 +1364,7 @@ public class FtpConnection implements Connection {
   @Override
   public boolean existsFile(String remoteFilePath) throws FtpException {
 
-    FTPFile[] ftpFiles = new FTPFile[1];
-    try {
-      ftpFiles = client.listFiles(remoteFilePath);
-    } catch (IOException e) {
-      e.printStackTrace();
-    }
-    return ftpFiles.length == 1;
+    return lookup(remoteFilePath, false, false).filter(file -> !file.isDirectory()).isPresent();
   }
 
   /**
@@ -684,22 +1377,127 @@ public class FtpConnection implements Connection {
   @Override
   public boolean existsDirectory(String remoteDirectoryPath) throws FtpException {
 
+    if (metadataCache != null || isMlsdSupported()) {
+      return lookup(remoteDirectoryPath, false, false).map(AaFtpFile::isDirectory).orElse(false);
+    }
+
     try {
-      changeDirectory(remoteDirectoryPath);
-    } catch (FtpException e) {
-      e.printStackTrace();
+      // without MLST a SIZE first would only cost an extra round trip
+      return probeDirectory(remoteDirectoryPath);
+    } catch (IOException e) {
+      throw new FtpException(String.format(STAT_FAILURE_MESSAGE, remoteDirectoryPath), e);
     }
+  }
 
-    replyCode = client.getReplyCode();
-    if (replyCode == 550) {
-      return false;
+  /**
+   * Stat through the metadata cache when there is one. Only complete answers are shared, so a miss
+   * asks for the type and the time of the path at once .
+   */
+  private Optional<AaFtpFile> lookup(String remotePath, boolean probeDirectory,
+                                     boolean withTime) {
+
+    if (metadataCache != null) {
+      return metadataCache.stat(remotePath, () -> statOrThrow(remotePath, true, true));
+    }
+    return statOrThrow(remotePath, probeDirectory, withTime);
+  }
+
+  private Optional<AaFtpFile> statOrThrow(String remotePath, boolean probeDirectory,
+                                          boolean withTime) {
+
+    try {
+      return stat(remotePath, probeDirectory, withTime);
+    } catch (IOException e) {
+      throw new FtpException(String.format(STAT_FAILURE_MESSAGE, remotePath), e);
+    }
+  }
+
+  /**
+   * @param probeDirectory try CWD when the path is not a file .
+   * @param withTime       ask MDTM for the timestamp when MLST is not available .
+   */
+  private Optional<AaFtpFile> stat(String remotePath, boolean probeDirectory, boolean withTime)
+      throws IOException {
+
+    if (isMlsdSupported()) {
+      FTPFile ftpFile = client.mlistFile(remotePath);
+      if (ftpFile != null) {
+        return Optional.of(toStatFile(remotePath, ftpFile.getSize(),
+            ftpFile.getTimestamp() == null ? 0 : ftpFile.getTimestamp().getTimeInMillis(),
+            ftpFile.isDirectory()));
+      }
+      int code = client.getReplyCode();
+      if (isUnsupported(code)) {
+        log.info("MLST was rejected with {}, falling back to SIZE and MDTM", code);
+        mlsdSupported = false;
+      } else if (!FTPReply.isPositiveCompletion(code)) {
+        return Optional.empty();
+      }
     }
 
-    String originalWorkingDirectory = getWorkingDirectory();
-    changeDirectory(originalWorkingDirectory);
+    int code = client.sendCommand(FTPCmd.SIZE, remotePath);
+    if (FTPReply.isPositiveCompletion(code)) {
+      long size = Long.parseLong(client.getReplyString().substring(4).trim());
+      return Optional.of(toStatFile(remotePath, size, withTime ? mdtm(remotePath) : 0, false));
+    }
+
+    if (isUnsupported(code)) {
+      FTPFile[] ftpFiles = client.listFiles(remotePath);
+      if (ftpFiles.length == 1 && ftpFiles[0] != null && ftpFiles[0].isFile()) {
+        return Optional.of(toStatFile(remotePath, ftpFiles[0].getSize(),
+            withTime ? mdtm(remotePath) : 0, false));
+      }
+    }
+
+    if (probeDirectory && probeDirectory(remotePath)) {
+      return Optional.of(toStatFile(remotePath, 0, 0, true));
+    }
+    return Optional.empty();
+  }
+
+  /**
+   * CWD into the path and back to where the client was .
+   */
+  private boolean probeDirectory(String remoteDirectoryPath) throws IOException {
+
+    String originalWorkingDirectory = client.printWorkingDirectory();
+
+    if (!client.changeWorkingDirectory(remoteDirectoryPath)) {
+      return false;
+    }
+    if (originalWorkingDirectory != null) {
+      client.changeWorkingDirectory(originalWorkingDirectory);
+    }
     return true;
   }
 
+  /**
+   * @return MDTM time of the path in milliseconds, 0 if the server did not answer it .
+   */
+  private long mdtm(String remoteFilePath) throws IOException {
+
+    String ts = client.getModificationTime(remoteFilePath);
+    return ts == null ? 0 : MyDateUtils.asLong(parseModificationTime(ts));
+  }
+
+  private static AaFtpFile toStatFile(String remotePath, long size, long modTime,
+                                      boolean directory) {
+
+    String name = FilenameUtils.getName(remotePath.length() > 1 && remotePath.endsWith("/")
+        ? remotePath.substring(0, remotePath.length() - 1) : remotePath);
+    return new AaFtpFile(name, size, remotePath, modTime, directory);
+  }
+
+  /**
+   * 500, 501, 502 and 504 mean the server does not know or does not allow the command .
+   */
+  private static boolean isUnsupported(int code) {
+
+    return code == FTPReply.UNRECOGNIZED_COMMAND || code == FTPReply.SYNTAX_ERROR_IN_ARGUMENTS
+        || code == FTPReply.COMMAND_NOT_IMPLEMENTED
+        || code == FTPReply.COMMAND_NOT_IMPLEMENTED_FOR_PARAMETER;
+  }
+
   /**
    * According to the above analysis, the solution for monitoring
    * file changes on the ftp server using commons net ftp is:
@@ -743,28 +1541,259 @@ public class FtpConnection implements Connection {
       throw new FtpException("local file : " + localFilePath + " does not exist.");
     }
 
-    LocalDateTime localTimeStamp = MyDateUtils.asLocalDateTime(localTempFile.lastModified());
+    // MLST, or SIZE and MDTM, give size and a second precision timestamp
+    AaFtpFile remoteFile = lookup(remoteFtpFilePath, false, true)
+        .filter(file -> !file.isDirectory())
+        .orElseThrow(() -> new FtpException(
+            "remote file : " + remoteFtpFilePath + " does not exist."));
+
+    return isSync(remoteFile, localTempFile);
+  }
+
+  /**
+   * Measure the round trip time when it is due and size the buffers of the next data connection .
+   */
+  private void tune() throws IOException {
+
+    if (linkTuner == null) {
+      return;
+    }
+
+    if (linkTuner.needsRtt()) {
+      long start = System.nanoTime();
+      client.sendNoOp();
+      linkTuner.onRtt(System.nanoTime() - start);
+    }
+
+    // -1 leaves the buffers unset, an explicit size would switch off the autotuning of the kernel
+    int socketBufferSize = linkTuner.getSocketBufferSize() > 0
+        ? linkTuner.getSocketBufferSize() : -1;
+    client.setReceieveDataSocketBufferSize(socketBufferSize);
+    client.setSendDataSocketBufferSize(socketBufferSize);
+    transferBufferSize = linkTuner.getCopyBufferSize();
+    client.setBufferSize(transferBufferSize);
+  }
+
+  /**
+   * Report the receive buffer the last data connection actually got, together with what the
+   * transfer moved over it .
+   */
+  private void onTransfer(long bytes, long elapsed) {
+
+    if (client instanceof DataConnectionOpener) {
+      linkTuner.onSocketBuffer(((DataConnectionOpener) client).getDataReceiveBufferSize());
+    }
+    linkTuner.onTransfer(bytes, elapsed);
+  }
+
+  private void checkAborted(String path) {
+
+    if (aborted) {
+      throw new FtpException(String.format(TRANSFER_ABORTED_MESSAGE, path));
+    }
+  }
+
+  /**
+   * Switch the data connections to MODE Z for one transfer. Offsets of REST count uncompressed
+   * bytes on some servers and compressed ones on others, so resumed transfers are not compressed .
+   *
+   * @return true if the next transfer is deflated .
+   */
+  private boolean enterDeflateMode(String remoteFilePath, long size, long offset)
+      throws IOException {
+
+    if (compressionOptions == null || offset > 0
+        || !compressionOptions.shouldCompress(remoteFilePath, size)) {
+      return false;
+    }
+
+    if (deflateSupported == null) {
+      deflateSupported = client.hasFeature("MODE", "Z");
+      if (deflateSupported) {
+        // the level of what the server sends, uploads are deflated here with the same level
+        client.sendCommand("OPTS", "MODE Z LEVEL " + compressionOptions.getLevel());
+      }
+    }
+    if (!deflateSupported) {
+      return false;
+    }
+
+    if (!FTPReply.isPositiveCompletion(client.sendCommand("MODE", "Z"))) {
+      log.info("MODE Z was refused, transfers stay uncompressed: {}", client.getReplyString());
+      deflateSupported = false;
+      return false;
+    }
+    deflateActive = true;
+    return true;
+  }
+
+  /**
+   * Back to stream mode, which listings and segmented transfers expect .
+   */
+  private void leaveDeflateMode() {
 
-    FTPFile[] ftpFiles = new FTPFile[1];
     try {
-      ftpFiles = client.listFiles(remoteFtpFilePath);
+      if (FTPReply.isPositiveCompletion(client.sendCommand("MODE", "S"))) {
+        deflateActive = false;
+      }
     } catch (IOException e) {
-      e.printStackTrace();
+      log.warn("Unable to leave MODE Z", e);
+    }
+  }
+
+  /**
+   * Ask the server for the checksum of a file with HASH, or with the X command of the algorithm,
+   * whichever FEAT advertises .
+   *
+   * @param remoteFilePath path of the file on the server .
+   * @param algorithm      .
+   * @return hex value, empty if the server can not compute it .
+   * @throws FtpException .
+   */
+  public Optional<String> getRemoteChecksum(String remoteFilePath, ChecksumAlgorithm algorithm)
+      throws FtpException {
+
+    try {
+      return Optional.ofNullable(serverChecksum(remoteFilePath, algorithm));
+    } catch (IOException e) {
+      throw new FtpException("Unable to get the checksum of " + remoteFilePath, e);
+    }
+  }
+
+  /**
+   * @return a checksum that already holds the first bytes of the local file, null if verification
+   *     is off .
+   */
+  private StreamingChecksum newChecksum(Path localFile, long prefixLength) throws IOException {
+
+    if (checksumAlgorithm == null) {
+      return null;
+    }
+
+    StreamingChecksum checksum = checksumAlgorithm.newChecksum();
+    if (prefixLength > 0) {
+      // the resumed part is not transferred again, it is read once from the local file
+      try (FileChannel prefix = FileChannel.open(localFile, StandardOpenOption.READ)) {
+        checksum.updatePrefix(prefix, prefixLength);
+      }
+    }
+    return checksum;
+  }
+
+  private void verify(String remoteFilePath, StreamingChecksum checksum, boolean download)
+      throws IOException {
+
+    String expected = serverChecksum(remoteFilePath, checksumAlgorithm);
+    if (expected == null && download && expectedChecksums != null) {
+      expected = expectedChecksums.apply(remoteFilePath);
+    }
+    if (expected == null && download && sidecarChecksums) {
+      expected = sidecarChecksum(remoteFilePath);
+    }
+
+    if (expected == null) {
+      log.debug("No {} to verify {} against", checksumAlgorithm.getHashName(), remoteFilePath);
+      return;
+    }
+
+    String actual = checksum.getValue();
+    if (!checksumAlgorithm.matches(expected, actual)) {
+      throw new FtpException(String.format(CHECKSUM_MISMATCH_MESSAGE,
+          checksumAlgorithm.getHashName(), remoteFilePath, expected, actual));
+    }
+    log.info("{} of {} verified: {}", checksumAlgorithm.getHashName(), remoteFilePath, actual);
+  }
+
+  private String serverChecksum(String remoteFilePath, ChecksumAlgorithm algorithm)
+      throws IOException {
+
+    if (supportsHash(algorithm) && selectHash(algorithm)
+        && FTPReply.isPositiveCompletion(client.sendCommand(HASH_FEATURE, remoteFilePath))) {
+      // 213 SHA-256 0-49 169cd22282da7f147cb491e559e9dd filename
+      String[] fields = client.getReplyString().trim().split(" ", 5);
+      if (fields.length >= 4) {
+        return fields[3];
+      }
+    }
+
+    if (algorithm.getCommand() != null && client.hasFeature(algorithm.getCommand())
+        && FTPReply.isPositiveCompletion(client.sendCommand(algorithm.getCommand(),
+        remoteFilePath))) {
+      // 250 B9A6C3F2, some servers add the file name
+      String[] fields = client.getReplyString().trim().split(" ");
+      if (fields.length >= 2) {
+        return fields[1];
+      }
     }
 
-    //Check if remote file exists
-    if (ftpFiles.length == 0) {
-      throw new FtpException("remote file : " + remoteFtpFilePath + " does not exist.");
+    return null;
+  }
+
+  private boolean supportsHash(ChecksumAlgorithm algorithm) throws IOException {
+
+    // FEAT answers e.g. "HASH SHA-1;SHA-256*;MD5;CRC32", the star marks the selected one
+    String[] values = client.featureValues(HASH_FEATURE);
+    if (values == null) {
+      return false;
     }
+    for (String value : values) {
+      for (String name : value.split(";")) {
+        if (name.replace("*", "").trim().equalsIgnoreCase(algorithm.getHashName())) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
 
-    LocalDateTime serverTimeStamp = getModificationTime(remoteFtpFilePath);
+  private boolean selectHash(ChecksumAlgorithm algorithm) throws IOException {
 
-    boolean time = localTimeStamp.getSecond() == serverTimeStamp.getSecond();
+    if (algorithm != selectedHash) {
+      if (!FTPReply.isPositiveCompletion(
+          client.sendCommand("OPTS", HASH_FEATURE + " " + algorithm.getHashName()))) {
+        return false;
+      }
+      selectedHash = algorithm;
+    }
+    return true;
+  }
+
+  /**
+   * @return first word of the sidecar file next to the remote file, e.g. "a.zip.sha256" as written
+   *     by sha256sum, null if there is none .
+   */
+  private String sidecarChecksum(String remoteFilePath) throws IOException {
+
+    InputStream in = client.retrieveFileStream(
+        remoteFilePath + checksumAlgorithm.getSidecarExtension());
+    if (in == null) {
+      return null;
+    }
+
+    String content;
+    try {
+      content = IOUtils.toString(in, StandardCharsets.UTF_8).trim();
+    } finally {
+      IOUtils.closeQuietly(in);
+      client.completePendingCommand();
+    }
+    return content.isEmpty() ? null : content.split("\\s+")[0];
+  }
+
+  /**
+   * @return true files are different and need to be synchronized .
+   */
+  private boolean isSync(AaFtpFile remoteFile, File localFile) {
+
+    LocalDateTime localTimeStamp = MyDateUtils.asLocalDateTime(localFile.lastModified());
+
+    boolean time = localTimeStamp.truncatedTo(ChronoUnit.SECONDS)
+        .equals(remoteFile.getLastModified().truncatedTo(ChronoUnit.SECONDS));
     if (!time) {
       log.info("File creation time is inconsistent and needs to be synchronized...");
       return true;
     }
-    boolean size = localTempFile.length() == ftpFiles[0].getSize();
+    boolean size = localFile.length() == remoteFile.getSize();
     if (!size) {
       log.info("File sizes are inconsistent and need to be synchronized...");
       return true;
@@ -792,18 +1821,24 @@ public class FtpConnection implements Connection {
    * @param remoteFilePath destination file path
    * @return .
    */
-  private LocalDateTime getModificationTime(String remoteFilePath) {
+  public LocalDateTime getModificationTime(String remoteFilePath) {
 
     try {
       //  Long ftpServerTimeStamp = ftpFile.getLastModified().getMillis();
       // commons net ftp
-      String ts = client.getModificationTime(remoteFilePath).trim();
+      if (isMlsdSupported()) {
+        FTPFile remoteFile = client.mlistFile(remoteFilePath);
+        if (remoteFile != null && remoteFile.getTimestamp() != null) {
+          return MyDateUtils.asLocalDateTime(remoteFile.getTimestamp().getTimeInMillis());
+        }
+      }
+
+      String ts = client.getModificationTime(remoteFilePath);
+      if (ts == null) {
+        throw new FtpException(String.format(COULD_NOT_FIND_FILE_MESSAGE, remoteFilePath));
+      }
       // log.info("ftp file time ({})", ts);
-      /**
-       * ftp server
-       * ftp MDTM  GMT yyyyMMddHHmmss
-       */
-      return MyDateUtils.parseLocalDateTime(ts, ftpModificationTimePattern);
+      return parseModificationTime(ts);
 
     } catch (IOException e) {
       e.printStackTrace();
@@ -812,20 +1847,109 @@ public class FtpConnection implements Connection {
   }
 
   /**
-   * @param localFilePath       .
-   * @param remoteDirectoryPath .
-   * @return .
+   * ftp server
+   * ftp MDTM  GMT yyyyMMddHHmmss[.sss]
    */
-  private String getRemoteUploadDirectoryPath(String localFilePath, String remoteDirectoryPath) {
+  private LocalDateTime parseModificationTime(String ts) {
 
-    if (!existsDirectory(remoteDirectoryPath)) {
-      try {
-        createDirectory(remoteDirectoryPath);
+    ts = ts.trim();
+    if (ts.length() > ftpModificationTimePattern.length()) {
+      ts = ts.substring(0, ftpModificationTimePattern.length());
+    }
+    return MyDateUtils.fromUtc(MyDateUtils.parseLocalDateTime(ts, ftpModificationTimePattern));
+  }
 
+  /**
+   * MLSD/MLST give exact size, type and a second precision UTC timestamp in one machine readable
+   * line per entry. Servers announce them with the MLST feature .
+   *
+   * @return true if the server lists with MLSD .
+   */
+  private boolean isMlsdSupported() {
+
+    if (mlsdSupported == null) {
+      try {
+        mlsdSupported = client.hasFeature(FTPCmd.MLST.getCommand());
       } catch (IOException e) {
-        e.printStackTrace();
+        mlsdSupported = false;
       }
+      log.debug("MLSD supported: {}", mlsdSupported);
     }
+    return mlsdSupported;
+  }
+
+  /**
+   * List a directory with MLSD when the server has it, otherwise with LIST. A server that announces
+   * MLST but rejects MLSD is remembered and listed with LIST from then on .
+   */
+  private FTPFile[] list(String remoteDirectoryPath, FTPFileFilter ftpFileFilter)
+      throws IOException {
+
+    if (isMlsdSupported()) {
+      FTPFile[] ftpFiles = ftpFileFilter == null
+          ? client.mlistDir(remoteDirectoryPath)
+          : client.mlistDir(remoteDirectoryPath, ftpFileFilter);
+      int code = client.getReplyCode();
+
+      if (!isUnsupported(code)) {
+        return Arrays.stream(ftpFiles)
+            .filter(ftpFile -> ftpFile != null && !isMlsdSelfOrParent(ftpFile))
+            .toArray(FTPFile[]::new);
+      }
+
+      log.info("MLSD was rejected with {}, falling back to LIST", code);
+      mlsdSupported = false;
+    }
+
+    return ftpFileFilter == null
+        ? client.listFiles(remoteDirectoryPath)
+        : client.listFiles(remoteDirectoryPath, ftpFileFilter);
+  }
+
+  /**
+   * Start a paged listing with MLSD when the server has it, otherwise with LIST. A rejected MLSD
+   * leaves an empty engine behind, so it falls back to LIST the same way as {@link #list} .
+   */
+  private FTPListParseEngine initiateListing(String remoteDirectoryPath) throws IOException {
+
+    if (isMlsdSupported()) {
+      FTPListParseEngine engine = client.initiateMListParsing(remoteDirectoryPath);
+      int code = client.getReplyCode();
+
+      if (!isUnsupported(code)) {
+        return engine;
+      }
+
+      log.info("MLSD was rejected with {}, falling back to LIST", code);
+      mlsdSupported = false;
+    }
+
+    return client.initiateListParsing(remoteDirectoryPath);
+  }
+
+  /**
+   * MLSD also returns the listed directory (type=cdir) and its parent (type=pdir), named by their
+   * path rather than "." and "..", so they must be dropped before recursing .
+   */
+  private static boolean isMlsdSelfOrParent(FTPFile ftpFile) {
+
+    String raw = ftpFile.getRawListing();
+    if (raw == null) {
+      return false;
+    }
+    String facts = raw.toLowerCase();
+    return facts.startsWith("type=cdir;") || facts.startsWith("type=pdir;")
+        || facts.contains(";type=cdir;") || facts.contains(";type=pdir;");
+  }
+
+  /**
+   * @param localFilePath       .
+   * @param remoteDirectoryPath .
+   * @return .
+   */
+  private String getRemoteUploadDirectoryPath(String localFilePath, String remoteDirectoryPath) {
+
+    directoryEnsurer.ensure(Collections.singleton(remoteDirectoryPath));
 
     Path targetPath = Paths.get(remoteDirectoryPath);
     String safePath = targetPath.toString();
@@ -835,20 +1959,19 @@ public class FtpConnection implements Connection {
   }
 
   /**
-   * FTPFile JFtpFile
+   * FTPFile JFtpFile, package private for the listing benchmark .
    *
    * @param ftpFile             .
    * @param remoteDirectoryPath .
    * @return .
-   * @throws IOException .
    */
-  private AaFtpFile toFtpFile(FTPFile ftpFile, String remoteDirectoryPath) throws IOException {
+  static AaFtpFile toFtpFile(FTPFile ftpFile, String remoteDirectoryPath) {
 
     String name = ftpFile.getName();
     long fileSize = ftpFile.getSize();
     String fullPath = String.format("%s%s%s", remoteDirectoryPath, "/",
         ftpFile.getName()); // ftp "/"  File.pathSeparator
-    long modTime = ftpFile.getTimestamp().getTime().getTime();
+    long modTime = ftpFile.getTimestamp() == null ? 0 : ftpFile.getTimestamp().getTimeInMillis();
     /*log.info(" 1.  getTimestamp : " + new DateTime(modTime).withZone(DateTimeZone.forTimeZone(
         TimeZone.getDefault())));
     log.info(" 2.  getTimestamp : " + ftpFile.getTimestamp().getTimeInMillis());*/
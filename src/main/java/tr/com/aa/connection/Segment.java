@@ -0,0 +1,78 @@
+package tr.com.aa.connection;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A contiguous byte range of a file moved by one stream of a segmented transfer .
+ */
+public class Segment {
+
+  private final int index;
+  private final long offset;
+  private final long length;
+
+  /**
+   * @param index  position of the segment in the file, starting with 0 .
+   * @param offset first byte of the segment .
+   * @param length number of bytes of the segment .
+   */
+  public Segment(int index, long offset, long length) {
+
+    this.index = index;
+    this.offset = offset;
+    this.length = length;
+  }
+
+  /**
+   * Split a file into at most {@code count} segments of nearly equal length, none of them shorter
+   * than {@code minSegmentSize} unless the file itself is .
+   *
+   * @param size           file size .
+   * @param count          wanted number of segments .
+   * @param minSegmentSize .
+   * @return segments in file order, one empty segment for an empty file .
+   */
+  public static List<Segment> split(long size, int count, long minSegmentSize) {
+
+    long bySize = minSegmentSize <= 0 ? count : Math.max(1, size / minSegmentSize);
+    int segmentCount = (int) Math.max(1, Math.min(count, bySize));
+    long baseLength = size / segmentCount;
+    long remainder = size % segmentCount;
+
+    List<Segment> segments = new ArrayList<>(segmentCount);
+    long offset = 0;
+    for (int i = 0; i < segmentCount; i++) {
+      long length = baseLength + (i < remainder ? 1 : 0);
+      segments.add(new Segment(i, offset, length));
+      offset += length;
+    }
+    return segments;
+  }
+
+  public int getIndex() {
+
+    return index;
+  }
+
+  public long getOffset() {
+
+    return offset;
+  }
+
+  public long getLength() {
+
+    return length;
+  }
+
+  public long getEnd() {
+
+    return offset + length;
+  }
+
+  @Override
+  public String toString() {
+
+    return "segment " + index + " [" + offset + ", " + getEnd() + ")";
+  }
+}
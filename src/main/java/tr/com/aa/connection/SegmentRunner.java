@@ -0,0 +1,74 @@
+package tr.com.aa.connection;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import tr.com.aa.exception.FtpException;
+
+/**
+ * Runs the segments of a segmented transfer at the same time, one thread per segment, and waits
+ * for all of them. The first failure is thrown, the failures of the other segments are attached to
+ * it as suppressed exceptions .
+ */
+public class SegmentRunner {
+
+  private SegmentRunner() {
+    // static helpers only
+  }
+
+  /**
+   * @param path   the transferred file, for the error message .
+   * @param plan   segments of the file .
+   * @param action work on one segment, called on its own thread .
+   * @throws FtpException if any segment failed or the wait was interrupted .
+   */
+  public static void run(String path, List<Segment> plan, SegmentAction action)
+      throws FtpException {
+
+    ExecutorService workers = Executors.newFixedThreadPool(plan.size());
+    List<Future<?>> futures = new ArrayList<>(plan.size());
+    FtpException failure = null;
+
+    try {
+      for (Segment segment : plan) {
+        futures.add(workers.submit(() -> {
+          action.run(segment);
+          return null;
+        }));
+      }
+
+      for (Future<?> future : futures) {
+        try {
+          future.get();
+        } catch (ExecutionException e) {
+          if (failure == null) {
+            failure = new FtpException("Segmented transfer of " + path + " failed",
+                e.getCause() instanceof Exception ? (Exception) e.getCause() : e);
+          } else {
+            failure.addSuppressed(e.getCause());
+          }
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      failure = new FtpException("Segmented transfer of " + path + " was interrupted.", e);
+    } finally {
+      workers.shutdownNow();
+    }
+
+    if (failure != null) {
+      throw failure;
+    }
+  }
+
+  /**
+   * Transfer of one segment .
+   */
+  public interface SegmentAction {
+
+    void run(Segment segment) throws Exception;
+  }
+}
@@ -2,22 +2,62 @@ package tr.com.aa.connection;
 
 import com.jcraft.jsch.ChannelSftp;
 import com.jcraft.jsch.ChannelSftp.LsEntry;
+import com.jcraft.jsch.ChannelSftp.LsEntrySelector;
+import com.jcraft.jsch.JSchException;
 import com.jcraft.jsch.SftpATTRS;
 import com.jcraft.jsch.SftpException;
+import com.jcraft.jsch.SftpProgressMonitor;
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.Spliterator;
+import java.util.Spliterators;
 import java.util.Vector;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.net.ftp.FTPFileFilter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import tr.com.aa.cache.MetadataCache;
+import tr.com.aa.delta.BlockManifest;
+import tr.com.aa.delta.BlockManifestStore;
 import tr.com.aa.exception.FtpException;
-
+import tr.com.aa.metrics.HostMetrics;
+import tr.com.aa.throttle.BandwidthLimits;
+import tr.com.aa.throttle.TokenBucket;
+import tr.com.aa.tuning.LinkTuner;
+import tr.com.aa.util.MyDateUtils;
+
+/**
+ * Connection over one JSch sftp channel. Transfers are not verified with checksums: SFTP has no
+ * standard hash command and the FTP manifest and sidecar lookups are not applied here, so the
+ * checksum algorithm of the client or pool only affects FTP connections .
+ */
 @Slf4j
 public class SftpConnection implements Connection {
 
@@ -25,14 +65,161 @@ public class SftpConnection implements Connection {
   private static final String DIRECTORY_DOES_NOT_EXIST_MESSAGE = "Directory %s does not exist.";
   private static final String FILE_LISTING_ERROR_MESSAGE = "Unable to list files in directory %s";
   private static final String FILE_SEPARATOR = "/";
+  private static final String SFTP = "sftp";
   private static final int MILLIS = 1000;
+  private static final int COPY_BUFFER_SIZE = 128 * 1024;
+  /**
+   * Ranges smaller than this are not worth an extra channel .
+   */
+  public static final long DEFAULT_MIN_SEGMENT_SIZE = 16L * 1024 * 1024;
+  /**
+   * Number of listed entries buffered ahead of the consumer by {@link #streamFiles(String)} .
+   */
+  public static final int LIST_PAGE_SIZE = 1000;
+  /**
+   * How long the listing thread of {@link #streamFiles(String)} waits for the consumer to take an
+   * entry before it gives up on a stream that was dropped without being closed .
+   */
+  public static final long LIST_HANDOVER_TIMEOUT_MILLIS = 60_000;
+  private static final AaFtpFile END_OF_LISTING = new AaFtpFile("", 0, "", 0, false);
 
   private ChannelSftp channel;
+  private MetadataCache metadataCache;
+  private BlockManifestStore deltaManifestStore;
+  private BandwidthLimits bandwidthLimits;
+  private String bandwidthHost;
+  private LinkTuner linkTuner;
+  private HostMetrics hostMetrics;
+  // set by abort(), the monitor makes JSch stop the running get or put
+  private volatile boolean aborted;
+  // the thread of the last streamFiles, the channel is busy until it ends
+  private volatile Thread listingProducer;
+  // working directory of the login, known once a cd moved away from it
+  private String homeDirectory;
+  // JSch reports every chunk of a get or put to the monitor before it goes on, so the monitor
+  // stops aborted transfers, paces them and measures their throughput
+  private final SftpProgressMonitor transferMonitor = new SftpProgressMonitor() {
+    private TokenBucket bucket;
+    private long started;
+    private long transferred;
+    private boolean upload;
+
+    @Override
+    public void init(int op, String src, String dest, long max) {
+
+      upload = op == SftpProgressMonitor.PUT;
+      bucket = bandwidthLimits == null ? null : bandwidthLimits.newTransfer(bandwidthHost);
+      started = System.nanoTime();
+      transferred = 0;
+    }
+
+    @Override
+    public boolean count(long count) {
+
+      transferred += count;
+      if (bucket != null && !aborted) {
+        try {
+          bucket.acquire(count);
+        } catch (InterruptedIOException e) {
+          aborted = true;
+        }
+      }
+      return !aborted;
+    }
+
+    @Override
+    public void end() {
+
+      bucket = null;
+      long elapsed = System.nanoTime() - started;
+      if (linkTuner != null && !aborted) {
+        linkTuner.onTransfer(transferred, elapsed);
+      }
+      if (hostMetrics != null) {
+        hostMetrics.recordCommand(upload ? "put" : "get", elapsed);
+        hostMetrics.recordTransfer(upload ? HostMetrics.UPLOAD : HostMetrics.DOWNLOAD,
+            transferred, elapsed);
+      }
+    }
+  };
+  private final DirectoryEnsurer directoryEnsurer =
+      new DirectoryEnsurer(new DirectoryEnsurer.DirectoryOperations() {
+
+        @Override
+        public boolean exists(String remoteDirectoryPath) {
+
+          return existsDirectory(remoteDirectoryPath);
+        }
+
+        @Override
+        public boolean makeDirectory(String remoteDirectoryPath) {
+
+          return mkdir(remoteDirectoryPath);
+        }
+      });
 
   public SftpConnection(ChannelSftp channel) {
     this.channel = channel;
   }
 
+  /**
+   * Answer stat and listing requests from a cache of the server metadata, null to always ask the
+   * server .
+   *
+   * @param metadataCache .
+   */
+  public void setMetadataCache(MetadataCache metadataCache) {
+
+    this.metadataCache = metadataCache;
+  }
+
+  /**
+   * Pace gets and puts by the caps of the transfer, the server and the JVM, null (the default) for
+   * no limit. Segmented transfers are not paced .
+   *
+   * @param bandwidthLimits .
+   * @param host            name of the server in the limits .
+   */
+  public void setBandwidthLimits(BandwidthLimits bandwidthLimits, String host) {
+
+    this.bandwidthLimits = bandwidthLimits;
+    this.bandwidthHost = host;
+  }
+
+  /**
+   * Keep as many sftp requests in flight as the measured bandwidth-delay product of the server
+   * needs, null (the default) for the JSch default .
+   *
+   * @param linkTuner .
+   */
+  public void setLinkTuner(LinkTuner linkTuner) {
+
+    this.linkTuner = linkTuner;
+  }
+
+  /**
+   * Time stat, ls, get and put and record transfer sizes in the meters of the server, null (the
+   * default) for none .
+   *
+   * @param hostMetrics .
+   */
+  public void setHostMetrics(HostMetrics hostMetrics) {
+
+    this.hostMetrics = hostMetrics;
+  }
+
+  /**
+   * Upload files in delta mode: a block manifest of every uploaded file is kept in the store, and
+   * the next upload of the file writes only the blocks that changed since. Null (the default)
+   * uploads every file in full .
+   *
+   * @param deltaManifestStore .
+   */
+  public void setDeltaManifestStore(BlockManifestStore deltaManifestStore) {
+
+    this.deltaManifestStore = deltaManifestStore;
+  }
+
   @Override
   public String getWorkingDirectory() throws FtpException {
 
@@ -47,6 +234,9 @@ public class SftpConnection implements Connection {
   public void changeDirectory(String directory) throws FtpException {
 
     try {
+      if (homeDirectory == null) {
+        homeDirectory = channel.pwd();
+      }
       channel.cd(directory);
     } catch (SftpException e) {
       throw new FtpException(String.format(DIRECTORY_DOES_NOT_EXIST_MESSAGE, directory), e);
@@ -64,26 +254,128 @@ public class SftpConnection implements Connection {
   }
 
   @Override
-  @SuppressWarnings("unchecked")
   public List<AaFtpFile> listFiles(String remotePath) throws FtpException {
 
+    if (metadataCache != null) {
+      return metadataCache.list(remotePath, () -> fetchFiles(remotePath));
+    }
+    return fetchFiles(remotePath);
+  }
+
+  @SuppressWarnings("unchecked")
+  private List<AaFtpFile> fetchFiles(String remotePath) {
+
     try {
 
       List<AaFtpFile> files = new ArrayList<AaFtpFile>();
       String originalWorkingDirectory = getWorkingDirectory();
       changeDirectory(remotePath);
       String newWorkingDirectory = getWorkingDirectory();
+      long start = System.nanoTime();
       Vector<LsEntry> lsEntries = channel.ls(newWorkingDirectory);
+      recordCommand("ls", start);
       for (LsEntry entry : lsEntries) {
         files.add(toFtpFile(entry, newWorkingDirectory));
       }
       changeDirectory(originalWorkingDirectory);
       return files;
     } catch (SftpException e) {
+      recordError(e);
       throw new FtpException(String.format(FILE_LISTING_ERROR_MESSAGE, remotePath), e);
     }
   }
 
+  /**
+   * List the entries of a directory lazily. JSch delivers the entries of ls to a selector while it
+   * reads them; a background thread hands them over through a bounded queue, so at most one page of
+   * entries is held in memory. The thread holds the channel until the listing ends, so close the
+   * stream, e.g. in a try-with-resources block, to stop it early. A stream dropped without being
+   * closed is given up after {@link #LIST_HANDOVER_TIMEOUT_MILLIS}, or at once by
+   * {@link #abort()}, and the connection is not available while its thread runs .
+   *
+   * @param remotePath .
+   * @return .
+   * @throws FtpException .
+   */
+  @Override
+  public Stream<AaFtpFile> streamFiles(String remotePath) throws FtpException {
+
+    String directory = remotePath.length() > 1 && remotePath.endsWith(FILE_SEPARATOR)
+        ? remotePath.substring(0, remotePath.length() - 1) : remotePath;
+    BlockingQueue<AaFtpFile> queue = new ArrayBlockingQueue<>(LIST_PAGE_SIZE);
+    AtomicReference<Exception> failure = new AtomicReference<>();
+    AtomicBoolean cancelled = new AtomicBoolean();
+
+    Thread producer = new Thread(() -> {
+      try {
+        channel.ls(directory, entry -> handOver(queue, toFtpFile(entry, directory), cancelled)
+            ? LsEntrySelector.CONTINUE : LsEntrySelector.BREAK);
+      } catch (SftpException | RuntimeException e) {
+        failure.set(e);
+      } finally {
+        handOver(queue, END_OF_LISTING, cancelled);
+      }
+    }, "sftp-list-" + directory);
+    producer.setDaemon(true);
+    listingProducer = producer;
+    producer.start();
+
+    Iterator<AaFtpFile> iterator = new Iterator<AaFtpFile>() {
+
+      private AaFtpFile next;
+
+      @Override
+      public boolean hasNext() {
+
+        try {
+          while (next == null) {
+            boolean ended = !producer.isAlive();
+            next = queue.poll(100, TimeUnit.MILLISECONDS);
+            if (next == null && ended) {
+              // the listing thread gave up before it could hand over the end of the listing
+              throw new FtpException(String.format(FILE_LISTING_ERROR_MESSAGE, remotePath));
+            }
+          }
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new FtpException(String.format(FILE_LISTING_ERROR_MESSAGE, remotePath), e);
+        }
+        if (next == END_OF_LISTING) {
+          if (failure.get() != null) {
+            throw new FtpException(String.format(FILE_LISTING_ERROR_MESSAGE, remotePath),
+                failure.get());
+          }
+          return false;
+        }
+        return true;
+      }
+
+      @Override
+      public AaFtpFile next() {
+
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        AaFtpFile file = next;
+        next = null;
+        return file;
+      }
+    };
+
+    return StreamSupport.stream(Spliterators.spliteratorUnknownSize(
+        iterator, Spliterator.ORDERED | Spliterator.NONNULL), false)
+        .onClose(() -> {
+          cancelled.set(true);
+          queue.clear();
+          try {
+            // the channel is free again only when ls has returned
+            producer.join();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        });
+  }
+
   @Override
   public List<AaFtpFile> listFiles(String remotePath, FTPFileFilter ftpFileFilter)
       throws FtpException {
@@ -106,7 +398,8 @@ public class SftpConnection implements Connection {
   public void downloadFile(String remoteFilePath, String localDirectoryPath, String localFileName,
                            boolean compareTime, boolean logProcess) throws FtpException {
 
-    if (!existsFile(remoteFilePath)) {
+    Optional<AaFtpFile> remoteFile = stat(remoteFilePath).filter(file -> !file.isDirectory());
+    if (!remoteFile.isPresent()) {
       return;
     }
 
@@ -116,23 +409,144 @@ public class SftpConnection implements Connection {
       Paths.get(localDirectoryPath).toFile().mkdirs();
     }
 
+    File localFile = Paths.get(localDirectoryPath, localFileName == null
+        ? FilenameUtils.getName(remoteFilePath) : localFileName).toFile();
+    long localSize = localFile.length();
+    // a partial local file is resumed from its size, like REST does over FTP
+    int mode = localSize > 0 && localSize < remoteFile.get().getSize()
+        ? ChannelSftp.RESUME : ChannelSftp.OVERWRITE;
+    if (mode == ChannelSftp.RESUME) {
+      log.info("Resuming download of {} from {} B", remoteFilePath, localSize);
+    }
+
     try {
-      if (localFileName == null) {
-        channel.get(remoteFilePath, localDirectoryPath);
-      } else {
-        channel.get(remoteFilePath, localDirectoryPath + File.separator + localFileName);
-      }
+      tune();
+      channel.get(remoteFilePath, localFile.getPath(), transferMonitor, mode);
+      checkAborted(remoteFilePath);
 
     } catch (SftpException e) {
       throw new FtpException("Unable to download file " + remoteFilePath, e);
     }
 
+    // keep the server time, so that isSync can compare the copies later
+    localFile.setLastModified(MyDateUtils.asLong(remoteFile.get().getLastModified()));
+
     log.info(
         "download file '" + remoteFilePath + "'  to  localDirectory '" + localDirectoryPath
             + FILE_SEPARATOR + StringUtils.substringAfterLast(remoteFilePath, "/") + "' succeed.");
 
   }
 
+  /**
+   * Download one large file over several sftp channels opened on the session of this connection.
+   * Every channel reads its own byte range, starting at the range offset, and writes it into its
+   * position in a preallocated local file .
+   *
+   * @param remoteFilePath     path of the file on the server .
+   * @param localDirectoryPath path of directory where the file will be stored .
+   * @param segments           maximum number of channels used at the same time .
+   * @throws FtpException if any range could not be downloaded .
+   */
+  public void downloadFileSegmented(String remoteFilePath, String localDirectoryPath,
+                                    int segments) throws FtpException {
+
+    SftpATTRS attrs;
+    try {
+      attrs = channel.stat(remoteFilePath);
+    } catch (SftpException e) {
+      throw new FtpException(String.format(COULD_NOT_FIND_FILE_MESSAGE, remoteFilePath), e);
+    }
+
+    Path localFile = Paths.get(localDirectoryPath, FilenameUtils.getName(remoteFilePath));
+    localFile.getParent().toFile().mkdirs();
+    List<Segment> plan = Segment.split(attrs.getSize(), segments, DEFAULT_MIN_SEGMENT_SIZE);
+
+    try (RandomAccessFile file = new RandomAccessFile(localFile.toFile(), "rw")) {
+      file.setLength(attrs.getSize());
+    } catch (IOException e) {
+      throw new FtpException("Unable to allocate local file " + localFile, e);
+    }
+
+    log.info("Downloading {} ({} B) to {} over {} channels", remoteFilePath, attrs.getSize(),
+        localFile, plan.size());
+
+    try (FileChannel target = FileChannel.open(localFile, StandardOpenOption.WRITE)) {
+      SegmentRunner.run(remoteFilePath, plan, segment -> {
+        ChannelSftp sftp = openSiblingChannel();
+        try (InputStream in = sftp.get(remoteFilePath, null, segment.getOffset())) {
+          copyRange(in, target, segment);
+        } finally {
+          sftp.disconnect();
+        }
+      });
+    } catch (IOException e) {
+      throw new FtpException("Unable to write to local file " + localFile, e);
+    }
+
+    localFile.toFile().setLastModified((long) attrs.getMTime() * MILLIS);
+    log.info("download file '" + remoteFilePath + "' to '" + localFile + "' succeed.");
+  }
+
+  /**
+   * Upload one large file over several sftp channels opened on the session of this connection.
+   * Every channel writes its own byte range of the local file at the matching remote offset .
+   *
+   * @param localFilePath       Path of the file on local computer .
+   * @param remoteDirectoryPath path of directory where the file will be stored .
+   * @param segments            maximum number of channels used at the same time .
+   * @throws FtpException if any range could not be uploaded .
+   */
+  public void uploadFileSegmented(String localFilePath, String remoteDirectoryPath,
+                                  int segments) throws FtpException {
+
+    File localFile = Paths.get(localFilePath).toFile();
+    if (!localFile.exists()) {
+      throw new FtpException("Unable to upload file, file does not exist :  " + localFilePath);
+    }
+
+    directoryEnsurer.ensure(Collections.singleton(remoteDirectoryPath));
+
+    String remoteFilePath = remoteDirectoryPath + FILE_SEPARATOR + localFile.getName();
+    List<Segment> plan = Segment.split(localFile.length(), segments, DEFAULT_MIN_SEGMENT_SIZE);
+    List<ChannelSftp> channels = new ArrayList<>(plan.size());
+    List<OutputStream> outputs = new ArrayList<>(plan.size());
+
+    log.info("Uploading {} ({} B) to {} over {} channels", localFilePath, localFile.length(),
+        remoteFilePath, plan.size());
+
+    try {
+      // All streams are opened before any byte is written: the first one truncates the remote
+      // file, the others open it without truncation while it is still empty, so APPEND adds
+      // nothing to their offsets and each of them writes exactly at its range.
+      for (Segment segment : plan) {
+        ChannelSftp sftp = openSiblingChannel();
+        channels.add(sftp);
+        outputs.add(segment.getIndex() == 0
+            ? sftp.put(remoteFilePath, null, ChannelSftp.OVERWRITE, 0)
+            : sftp.put(remoteFilePath, null, ChannelSftp.APPEND, segment.getOffset()));
+      }
+
+      try (FileChannel source = FileChannel.open(localFile.toPath(), StandardOpenOption.READ)) {
+        SegmentRunner.run(localFilePath, plan, segment -> {
+          try (OutputStream out = outputs.get(segment.getIndex())) {
+            copyRange(source, out, segment);
+          }
+        });
+      }
+
+    } catch (SftpException | IOException e) {
+      throw new FtpException("Unable to upload file :  " + localFilePath, e);
+    } finally {
+      outputs.forEach(IOUtils::closeQuietly);
+      channels.forEach(ChannelSftp::disconnect);
+      if (metadataCache != null) {
+        metadataCache.invalidate(remoteFilePath);
+      }
+    }
+
+    log.info("upload file succeed : " + localFilePath);
+  }
+
   @Override
   public void downloadDirectory(String remoteDirectoryPath, String localDirectoryPath,
                                 boolean compareTime, boolean logProcess) throws FtpException {
@@ -170,20 +584,103 @@ public class SftpConnection implements Connection {
       throw new FtpException("Unable to upload file, file does not exist :  " + localFilePath);
     }
 
-    if (!existsDirectory(remoteDirectoryPath)) {
-      createDirectory(remoteDirectoryPath);
-    }
+    directoryEnsurer.ensure(Collections.singleton(remoteDirectoryPath));
 
     try {
-      channel.put(localFilePath, remoteDirectoryPath);
-    } catch (SftpException e) {
-      e.printStackTrace();
-      throw new FtpException("Unable to upload file :  " + localFilePath);
+      tune();
+      if (deltaManifestStore == null) {
+        String remoteFilePath = remoteDirectoryPath + FILE_SEPARATOR
+            + Paths.get(localFilePath).getFileName();
+        long remoteSize = fetchStat(remoteFilePath).filter(file -> !file.isDirectory())
+            .map(AaFtpFile::getSize).orElse(0L);
+        // a partial remote file is resumed from its size, like REST does over FTP
+        int mode = remoteSize > 0 && remoteSize < Paths.get(localFilePath).toFile().length()
+            ? ChannelSftp.RESUME : ChannelSftp.OVERWRITE;
+        if (mode == ChannelSftp.RESUME) {
+          log.info("Resuming upload of {} from {} B", localFilePath, remoteSize);
+        }
+        channel.put(localFilePath, remoteFilePath, transferMonitor, mode);
+      } else {
+        uploadDelta(Paths.get(localFilePath), remoteDirectoryPath + FILE_SEPARATOR
+            + Paths.get(localFilePath).getFileName());
+      }
+      checkAborted(localFilePath);
+    } catch (SftpException | IOException e) {
+      checkAborted(localFilePath);
+      throw new FtpException("Unable to upload file :  " + localFilePath, e);
+    } finally {
+      if (metadataCache != null) {
+        metadataCache.invalidate(remoteDirectoryPath + FILE_SEPARATOR
+            + Paths.get(localFilePath).getFileName());
+      }
     }
 
     log.info("upload file succeed : " + localFilePath);
   }
 
+  /**
+   * Write only the blocks of the local file that differ from its manifest, each run of changed
+   * blocks at its offset. The file is uploaded in full when there is no manifest yet or the remote
+   * file no longer has the size and time recorded after the last upload .
+   */
+  private void uploadDelta(Path localFile, String remoteFilePath)
+      throws SftpException, IOException {
+
+    BlockManifest previous = deltaManifestStore.load(remoteFilePath);
+    Optional<AaFtpFile> remote = fetchStat(remoteFilePath);
+    BlockManifest current;
+
+    if (previous == null || !remote.isPresent()
+        || remote.get().getSize() != previous.getRemoteSize()
+        || MyDateUtils.asLong(remote.get().getLastModified()) / MILLIS
+        != previous.getRemoteModified()) {
+      // the blocks are hashed while the file is sent, it is read once
+      BlockManifest.Hasher hasher = new BlockManifest.Hasher(BlockManifest.DEFAULT_BLOCK_SIZE);
+      try (InputStream in = hasher.track(Files.newInputStream(localFile))) {
+        channel.put(in, remoteFilePath, transferMonitor, ChannelSftp.OVERWRITE);
+      }
+      checkAborted(remoteFilePath);
+      current = hasher.finish();
+      log.info("Uploaded {} in full, {} B", localFile, current.getFileSize());
+    } else {
+      try (FileChannel source = FileChannel.open(localFile, StandardOpenOption.READ)) {
+        current = BlockManifest.of(source, previous.getBlockSize());
+        List<Segment> ranges = current.changedRanges(previous);
+        long remoteSize = previous.getRemoteSize();
+        long sent = 0;
+
+        for (Segment range : ranges) {
+          // APPEND adds the current remote size to the offset, the range lands at its own offset
+          try (OutputStream out = channel.put(remoteFilePath, transferMonitor, ChannelSftp.APPEND,
+              range.getOffset() - remoteSize)) {
+            copyRange(source, out, range);
+          }
+          remoteSize = Math.max(remoteSize, range.getEnd());
+          sent += range.getLength();
+        }
+
+        if (remoteSize > current.getFileSize()) {
+          SftpATTRS attrs = channel.stat(remoteFilePath);
+          // send the size alone, not the owner and times of the stat
+          attrs.setFLAGS(0);
+          attrs.setSIZE(current.getFileSize());
+          channel.setStat(remoteFilePath, attrs);
+        }
+        log.info("Delta upload of {}: {} of {} B in {} ranges", localFile, sent,
+            current.getFileSize(), ranges.size());
+      }
+    }
+
+    SftpATTRS uploaded = channel.stat(remoteFilePath);
+    if (uploaded.getSize() != current.getFileSize()) {
+      deltaManifestStore.remove(remoteFilePath);
+      throw new FtpException(String.format("Remote size of %s is %d B after the upload, not %d B",
+          remoteFilePath, uploaded.getSize(), current.getFileSize()));
+    }
+    current.setRemote(uploaded.getSize(), uploaded.getMTime());
+    deltaManifestStore.save(remoteFilePath, current);
+  }
+
   @Override
   public void uploadDirectory(String localDirectoryPath, String remoteDirectoryPath,
                               boolean logProcess) throws FtpException {
@@ -213,45 +710,166 @@ public class SftpConnection implements Connection {
 
   }
 
+  /**
+   * A single SSH_FXP_STAT answers existence, type, size and modification time .
+   *
+   * @param remotePath .
+   * @return .
+   * @throws FtpException .
+   */
   @Override
-  public boolean existsFile(String remoteFilePath) {
+  public Optional<AaFtpFile> stat(String remotePath) throws FtpException {
+
+    if (metadataCache != null) {
+      return metadataCache.stat(remotePath, () -> fetchStat(remotePath));
+    }
+    return fetchStat(remotePath);
+  }
+
+  private Optional<AaFtpFile> fetchStat(String remotePath) {
 
     try {
-      // System.out.println(channel.realpath(remoteFilePath));
-      SftpATTRS attrs = channel.stat(remoteFilePath);
-      return attrs.isReg();
+      long start = System.nanoTime();
+      SftpATTRS attrs = channel.stat(remotePath);
+      recordCommand("stat", start);
+      return Optional.of(new AaFtpFile(FilenameUtils.getName(remotePath), attrs.getSize(),
+          remotePath, (long) attrs.getMTime() * MILLIS, attrs.isDir()));
     } catch (SftpException e) {
-      e.printStackTrace();
-      return false;
+      if (e.id == ChannelSftp.SSH_FX_NO_SUCH_FILE) {
+        return Optional.empty();
+      }
+      recordError(e);
+      throw new FtpException("Unable to stat " + remotePath, e);
     }
   }
 
+  @Override
+  public boolean existsFile(String remoteFilePath) {
+
+    return stat(remoteFilePath).filter(file -> !file.isDirectory()).isPresent();
+  }
+
   @Override
   public boolean existsDirectory(String remoteDirectoryPath) {
 
-    try {
-      // System.out.println(channel.realpath(remoteFilePath));
-      SftpATTRS attrs = channel.stat(remoteDirectoryPath);
-      return attrs.isDir();
-    } catch (SftpException e) {
-      // e.printStackTrace();
-      return false;
-    }
+    return stat(remoteDirectoryPath).map(AaFtpFile::isDirectory).orElse(false);
   }
 
+  /**
+   * @param remoteFilePath server-side file .
+   * @param localFilePath  local file .
+   * @return true files are different and need to be synchronized .
+   */
   @Override
   public boolean isSync(String remoteFilePath, String localFilePath) {
-    return false;
+
+    File localFile = Paths.get(localFilePath).toFile();
+    if (!localFile.exists()) {
+      throw new FtpException("local file : " + localFilePath + " does not exist.");
+    }
+
+    AaFtpFile remoteFile = stat(remoteFilePath).filter(file -> !file.isDirectory())
+        .orElseThrow(() -> new FtpException(
+            "remote file : " + remoteFilePath + " does not exist."));
+
+    // sftp times have a one second resolution
+    return localFile.length() != remoteFile.getSize()
+        || localFile.lastModified() / MILLIS
+        != MyDateUtils.asLong(remoteFile.getLastModified()) / MILLIS;
   }
 
+  /**
+   * A pending abort that no transfer consumed, e.g. one that arrived during ls or stat, makes the
+   * connection unavailable, so the pool drops it instead of failing the next borrower's transfer .
+   */
   @Override
   public boolean isAvailable() {
-    return channel.isConnected();
+    Thread producer = listingProducer;
+    return !aborted && (producer == null || !producer.isAlive()) && channel.isConnected();
+  }
+
+  /**
+   * cd back to the directory of the login if the connection moved away from it. Transfer settings
+   * are set again before every transfer .
+   */
+  @Override
+  public void reset() throws FtpException {
+
+    try {
+      if (homeDirectory != null && !homeDirectory.equals(channel.pwd())) {
+        channel.cd(homeDirectory);
+      }
+    } catch (SftpException e) {
+      throw new FtpException(String.format(DIRECTORY_DOES_NOT_EXIST_MESSAGE, homeDirectory), e);
+    }
+  }
+
+  /**
+   * The progress monitor of the running get or put tells JSch to stop, which closes the remote
+   * handle cleanly, and the flag is cleared when the transfer fails. A running streamFiles listing
+   * stops as well. An abort outside a transfer stays pending until the connection is dropped, see
+   * {@link #isAvailable()} .
+   */
+  @Override
+  public void abort() {
+
+    aborted = true;
+  }
+
+  /**
+   * Measure the round trip time when it is due and size the request pipeline of the channel .
+   */
+  private void tune() throws SftpException {
+
+    if (linkTuner == null) {
+      return;
+    }
+
+    if (linkTuner.needsRtt()) {
+      long start = System.nanoTime();
+      channel.realpath(".");
+      linkTuner.onRtt(System.nanoTime() - start);
+    }
+
+    try {
+      channel.setBulkRequests(linkTuner.getSftpBulkRequests());
+    } catch (JSchException e) {
+      log.warn("Unable to set sftp bulk requests", e);
+    }
+  }
+
+  private void recordCommand(String command, long start) {
+
+    if (hostMetrics != null) {
+      hostMetrics.recordCommand(command, System.nanoTime() - start);
+    }
+  }
+
+  private void recordError(SftpException e) {
+
+    if (hostMetrics != null) {
+      hostMetrics.recordError(e.id);
+    }
+  }
+
+  /**
+   * Fails the transfer that was aborted and clears the flag for the next one .
+   */
+  private void checkAborted(String path) {
+
+    if (aborted) {
+      aborted = false;
+      throw new FtpException("Transfer of " + path + " was aborted");
+    }
   }
 
-  private void createDirectory(String remoteDirectoryPath) {
+  @Override
+  public void createDirectory(String remoteDirectoryPath) {
 
     String originalWorkingDirectory = getWorkingDirectory();
+    if (remoteDirectoryPath.startsWith(FILE_SEPARATOR)) {
+      changeDirectory(FILE_SEPARATOR);
+    }
     String[] folders = remoteDirectoryPath.split("/");
     for (String folder : folders) {
       if (folder.length() > 0) {
@@ -269,9 +887,116 @@ public class SftpConnection implements Connection {
     }
     log.info("create remote Directory '" + remoteDirectoryPath + "' succeed.");
     changeDirectory(originalWorkingDirectory);
+    if (metadataCache != null) {
+      metadataCache.invalidateWithParents(remoteDirectoryPath);
+    }
+  }
+
+  @Override
+  public void ensureDirectories(Collection<String> remoteDirectoryPaths) throws FtpException {
+
+    directoryEnsurer.ensure(remoteDirectoryPaths);
+  }
+
+  /**
+   * mkdir of a single directory whose parent exists .
+   */
+  private boolean mkdir(String remoteDirectoryPath) {
+
+    try {
+      channel.mkdir(remoteDirectoryPath);
+      log.info("create remote Directory '" + remoteDirectoryPath + "' succeed.");
+      return true;
+    } catch (SftpException e) {
+      log.debug("mkdir {} failed: {}", remoteDirectoryPath, e.getMessage());
+      return false;
+    } finally {
+      if (metadataCache != null) {
+        metadataCache.invalidate(remoteDirectoryPath);
+      }
+    }
+  }
+
+  /**
+   * Open another sftp channel on the ssh session of this connection, so that transfers can run in
+   * parallel without a new handshake. The caller disconnects it .
+   */
+  private ChannelSftp openSiblingChannel() throws SftpException {
+
+    try {
+      ChannelSftp sibling = (ChannelSftp) channel.getSession().openChannel(SFTP);
+      sibling.connect();
+      return sibling;
+    } catch (JSchException e) {
+      throw new FtpException("Unable to open an sftp channel", e);
+    }
+  }
+
+  private static void copyRange(InputStream in, FileChannel target, Segment segment)
+      throws IOException {
+
+    byte[] bytes = new byte[COPY_BUFFER_SIZE];
+    long written = 0;
+
+    while (written < segment.getLength()) {
+      int read = in.read(bytes, 0, (int) Math.min(bytes.length, segment.getLength() - written));
+      if (read < 0) {
+        throw new IOException("Unexpected end of file at byte " + (segment.getOffset() + written));
+      }
+      ByteBuffer buffer = ByteBuffer.wrap(bytes, 0, read);
+      while (buffer.hasRemaining()) {
+        written += target.write(buffer, segment.getOffset() + written);
+      }
+    }
+  }
+
+  private static void copyRange(FileChannel source, OutputStream out, Segment segment)
+      throws IOException {
+
+    ByteBuffer buffer = ByteBuffer.allocate(COPY_BUFFER_SIZE);
+    long read = 0;
+
+    while (read < segment.getLength()) {
+      buffer.clear();
+      buffer.limit((int) Math.min(buffer.capacity(), segment.getLength() - read));
+      int count = source.read(buffer, segment.getOffset() + read);
+      if (count < 0) {
+        throw new IOException("Unexpected end of file at byte " + (segment.getOffset() + read));
+      }
+      out.write(buffer.array(), 0, count);
+      read += count;
+    }
+  }
+
+  /**
+   * Wait for the consumer of a listing to take the entry .
+   *
+   * @return false if the stream was closed, the connection aborted or the consumer did not take
+   *     the entry within {@link #LIST_HANDOVER_TIMEOUT_MILLIS} .
+   */
+  private boolean handOver(BlockingQueue<AaFtpFile> queue, AaFtpFile file,
+                           AtomicBoolean cancelled) {
+
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(LIST_HANDOVER_TIMEOUT_MILLIS);
+
+    try {
+      while (!cancelled.get() && !aborted) {
+        if (queue.offer(file, 100, TimeUnit.MILLISECONDS)) {
+          return true;
+        }
+        if (System.nanoTime() - deadline > 0) {
+          log.warn("Listing stream not consumed for {} ms, giving up",
+              LIST_HANDOVER_TIMEOUT_MILLIS);
+          return false;
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    return false;
   }
 
-  private AaFtpFile toFtpFile(LsEntry lsEntry, String filePath) throws SftpException {
+  private AaFtpFile toFtpFile(LsEntry lsEntry, String filePath) {
     String name = lsEntry.getFilename();
     long fileSize = lsEntry.getAttrs().getSize();
     String fullPath = String.format("%s%s%s", filePath, "/", lsEntry.getFilename());
@@ -0,0 +1,37 @@
+package tr.com.aa.connection;
+
+import java.io.IOException;
+import java.net.Socket;
+import org.apache.commons.net.ftp.FTPClient;
+import org.apache.commons.net.ftp.FTPCmd;
+
+/**
+ * FTPClient that opens data connections for {@link FtpConnection#streamFiles(String)} and reports
+ * the receive buffer the data connections got .
+ */
+public class StreamingFTPClient extends FTPClient implements DataConnectionOpener {
+
+  private volatile int dataReceiveBufferSize = -1;
+
+  @Override
+  public Socket openDataConnection(FTPCmd command, String argument) throws IOException {
+
+    return _openDataConnection_(command, argument);
+  }
+
+  @Override
+  public int getDataReceiveBufferSize() {
+
+    return dataReceiveBufferSize;
+  }
+
+  @Override
+  protected Socket _openDataConnection_(String command, String arg) throws IOException {
+
+    Socket socket = super._openDataConnection_(command, arg);
+    if (socket != null) {
+      dataReceiveBufferSize = socket.getReceiveBufferSize();
+    }
+    return socket;
+  }
+}
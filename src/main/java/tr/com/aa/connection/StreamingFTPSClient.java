@@ -0,0 +1,42 @@
+package tr.com.aa.connection;
+
+import java.io.IOException;
+import java.net.Socket;
+import org.apache.commons.net.ftp.FTPCmd;
+import org.apache.commons.net.ftp.FTPSClient;
+
+/**
+ * FTPSClient that opens data connections for {@link FtpConnection#streamFiles(String)}, with the
+ * TLS handshake of FTPSClient, and reports the receive buffer the data connections got .
+ */
+public class StreamingFTPSClient extends FTPSClient implements DataConnectionOpener {
+
+  private volatile int dataReceiveBufferSize = -1;
+
+  public StreamingFTPSClient(String protocol, boolean isImplicit) {
+
+    super(protocol, isImplicit);
+  }
+
+  @Override
+  public Socket openDataConnection(FTPCmd command, String argument) throws IOException {
+
+    return _openDataConnection_(command, argument);
+  }
+
+  @Override
+  public int getDataReceiveBufferSize() {
+
+    return dataReceiveBufferSize;
+  }
+
+  @Override
+  protected Socket _openDataConnection_(String command, String arg) throws IOException {
+
+    Socket socket = super._openDataConnection_(command, arg);
+    if (socket != null) {
+      dataReceiveBufferSize = socket.getReceiveBufferSize();
+    }
+    return socket;
+  }
+}
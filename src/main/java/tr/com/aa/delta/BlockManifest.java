@@ -0,0 +1,225 @@
+package tr.com.aa.delta;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import tr.com.aa.connection.Segment;
+import tr.com.aa.exception.FtpException;
+
+/**
+ * SHA-256 of every fixed size block of a file as it was last uploaded, together with the size and
+ * time the server reported right after the upload. Comparing the blocks of the local file with it
+ * gives the byte ranges that changed since; the server values tell whether the remote copy is still
+ * the one the manifest describes .
+ */
+public class BlockManifest {
+
+  /**
+   * 1 MB blocks keep the manifest of a 100 GB file near 3 MB .
+   */
+  public static final int DEFAULT_BLOCK_SIZE = 1024 * 1024;
+  static final String DIGEST_ALGORITHM = "SHA-256";
+  static final int DIGEST_LENGTH = 32;
+  private static final int READ_BUFFER_SIZE = 128 * 1024;
+
+  private final int blockSize;
+  private final long fileSize;
+  private final List<byte[]> blocks;
+  private long remoteSize = -1;
+  private long remoteModified = -1;
+
+  BlockManifest(int blockSize, long fileSize, List<byte[]> blocks) {
+
+    this.blockSize = blockSize;
+    this.fileSize = fileSize;
+    this.blocks = Collections.unmodifiableList(blocks);
+  }
+
+  /**
+   * Hash a local file block by block, reading it once from the start .
+   *
+   * @param file      .
+   * @param blockSize .
+   * @return .
+   * @throws IOException .
+   */
+  public static BlockManifest of(FileChannel file, int blockSize) throws IOException {
+
+    Hasher hasher = new Hasher(blockSize);
+    ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+    long position = 0;
+    int read;
+
+    while ((read = file.read(buffer, position)) >= 0) {
+      hasher.update(buffer.array(), 0, read);
+      position += read;
+      buffer.clear();
+    }
+    return hasher.finish();
+  }
+
+  public int getBlockSize() {
+
+    return blockSize;
+  }
+
+  public long getFileSize() {
+
+    return fileSize;
+  }
+
+  public int getBlockCount() {
+
+    return blocks.size();
+  }
+
+  List<byte[]> getBlocks() {
+
+    return blocks;
+  }
+
+  public long getRemoteSize() {
+
+    return remoteSize;
+  }
+
+  /**
+   * @return modification time of the remote file in seconds after the upload, -1 if unknown .
+   */
+  public long getRemoteModified() {
+
+    return remoteModified;
+  }
+
+  /**
+   * @param remoteSize     size the server reported after the upload .
+   * @param remoteModified modification time in seconds the server reported after the upload .
+   */
+  public void setRemote(long remoteSize, long remoteModified) {
+
+    this.remoteSize = remoteSize;
+    this.remoteModified = remoteModified;
+  }
+
+  /**
+   * @param previous manifest of the version on the server, with the same block size .
+   * @return ranges of this file that differ from the previous version, adjacent changed blocks
+   *     merged into one range .
+   */
+  public List<Segment> changedRanges(BlockManifest previous) {
+
+    if (previous.blockSize != blockSize) {
+      throw new IllegalArgumentException("Block sizes differ: " + previous.blockSize + " <> "
+          + blockSize);
+    }
+
+    List<Segment> ranges = new ArrayList<>();
+    long start = -1;
+
+    for (int i = 0; i < blocks.size(); i++) {
+      boolean changed = i >= previous.blocks.size()
+          || !Arrays.equals(blocks.get(i), previous.blocks.get(i));
+      long offset = (long) i * blockSize;
+      if (changed && start < 0) {
+        start = offset;
+      } else if (!changed && start >= 0) {
+        ranges.add(new Segment(ranges.size(), start, offset - start));
+        start = -1;
+      }
+    }
+    if (start >= 0) {
+      ranges.add(new Segment(ranges.size(), start, fileSize - start));
+    }
+    return ranges;
+  }
+
+  /**
+   * Hashes blocks from bytes as they are copied, e.g. while a file is uploaded in full .
+   */
+  public static class Hasher {
+
+    private final int blockSize;
+    private final MessageDigest digest;
+    private final List<byte[]> blocks = new ArrayList<>();
+    private long fileSize;
+    private int inBlock;
+
+    public Hasher(int blockSize) {
+
+      if (blockSize < 1) {
+        throw new IllegalArgumentException("blockSize must be at least 1");
+      }
+      this.blockSize = blockSize;
+      try {
+        this.digest = MessageDigest.getInstance(DIGEST_ALGORITHM);
+      } catch (NoSuchAlgorithmException e) {
+        throw new FtpException(DIGEST_ALGORITHM + " is not available", e);
+      }
+    }
+
+    public void update(byte[] bytes, int offset, int length) {
+
+      while (length > 0) {
+        int count = Math.min(length, blockSize - inBlock);
+        digest.update(bytes, offset, count);
+        inBlock += count;
+        fileSize += count;
+        offset += count;
+        length -= count;
+        if (inBlock == blockSize) {
+          blocks.add(digest.digest());
+          inBlock = 0;
+        }
+      }
+    }
+
+    /**
+     * @param in stream whose bytes are hashed as they are read .
+     * @return .
+     */
+    public InputStream track(InputStream in) {
+
+      return new FilterInputStream(in) {
+        @Override
+        public int read() throws IOException {
+
+          byte[] one = new byte[1];
+          return read(one, 0, 1) < 0 ? -1 : one[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+
+          int read = super.read(bytes, offset, length);
+          if (read > 0) {
+            update(bytes, offset, read);
+          }
+          return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+
+          throw new IOException("A hashed stream can not skip");
+        }
+      };
+    }
+
+    public BlockManifest finish() {
+
+      if (inBlock > 0) {
+        blocks.add(digest.digest());
+        inBlock = 0;
+      }
+      return new BlockManifest(blockSize, fileSize, new ArrayList<>(blocks));
+    }
+  }
+}
@@ -0,0 +1,125 @@
+package tr.com.aa.delta;
+
+import com.google.common.io.BaseEncoding;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import lombok.extern.slf4j.Slf4j;
+import tr.com.aa.exception.FtpException;
+
+/**
+ * Keeps one {@link BlockManifest} per remote file in a local directory. The file name is the SHA-1
+ * of the remote path; a manifest is replaced atomically, so a crash leaves the previous one .
+ */
+@Slf4j
+public class BlockManifestStore {
+
+  private static final int MAGIC = 0x41414246;
+  private static final int VERSION = 1;
+  private static final String SUFFIX = ".blocks";
+
+  private final Path directory;
+
+  /**
+   * @param directory where the manifests are kept, created when the first one is saved .
+   */
+  public BlockManifestStore(Path directory) {
+
+    this.directory = directory;
+  }
+
+  /**
+   * @param remoteFilePath .
+   * @return manifest of the last upload, null if there is none or it can not be read .
+   */
+  public BlockManifest load(String remoteFilePath) {
+
+    Path file = fileOf(remoteFilePath);
+    if (!Files.exists(file)) {
+      return null;
+    }
+
+    try (DataInputStream in = new DataInputStream(
+        new BufferedInputStream(Files.newInputStream(file)))) {
+      if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+        log.warn("Ignoring block manifest {} of an unknown format", file);
+        return null;
+      }
+      int blockSize = in.readInt();
+      long fileSize = in.readLong();
+      long remoteSize = in.readLong();
+      long remoteModified = in.readLong();
+      int count = in.readInt();
+      List<byte[]> blocks = new ArrayList<>(count);
+      for (int i = 0; i < count; i++) {
+        byte[] block = new byte[BlockManifest.DIGEST_LENGTH];
+        in.readFully(block);
+        blocks.add(block);
+      }
+
+      BlockManifest manifest = new BlockManifest(blockSize, fileSize, blocks);
+      manifest.setRemote(remoteSize, remoteModified);
+      return manifest;
+    } catch (IOException e) {
+      log.warn("Ignoring unreadable block manifest {}", file, e);
+      return null;
+    }
+  }
+
+  public void save(String remoteFilePath, BlockManifest manifest) {
+
+    Path file = fileOf(remoteFilePath);
+    Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+
+    try {
+      Files.createDirectories(directory);
+      try (DataOutputStream out = new DataOutputStream(
+          new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(manifest.getBlockSize());
+        out.writeLong(manifest.getFileSize());
+        out.writeLong(manifest.getRemoteSize());
+        out.writeLong(manifest.getRemoteModified());
+        out.writeInt(manifest.getBlockCount());
+        for (byte[] block : manifest.getBlocks()) {
+          out.write(block);
+        }
+      }
+      Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      throw new FtpException("Unable to save block manifest " + file, e);
+    }
+  }
+
+  public void remove(String remoteFilePath) {
+
+    try {
+      Files.deleteIfExists(fileOf(remoteFilePath));
+    } catch (IOException e) {
+      log.warn("Unable to remove block manifest of {}", remoteFilePath, e);
+    }
+  }
+
+  private Path fileOf(String remoteFilePath) {
+
+    try {
+      byte[] key = MessageDigest.getInstance("SHA-1")
+          .digest(remoteFilePath.getBytes(StandardCharsets.UTF_8));
+      return directory.resolve(BaseEncoding.base16().lowerCase().encode(key) + SUFFIX);
+    } catch (NoSuchAlgorithmException e) {
+      throw new FtpException("SHA-1 is not available", e);
+    }
+  }
+}
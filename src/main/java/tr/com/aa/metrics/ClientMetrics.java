@@ -0,0 +1,109 @@
+package tr.com.aa.metrics;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.ToDoubleFunction;
+import tr.com.aa.pool.ConnectionKey;
+import tr.com.aa.pool.PoolMetrics;
+
+/**
+ * Micrometer instrumentation of the clients, bound to one registry. Meters are tagged with the
+ * host and protocol of the server and created once per server; the clients record through the
+ * {@link HostMetrics} of their server .
+ *
+ * <p>Nothing is instrumented unless a ClientMetrics is set on the client or the pool, so without a
+ * registry the only cost is a null check per command .
+ */
+public class ClientMetrics {
+
+  static final String PREFIX = "ftp.client.";
+  static final String HOST = "host";
+  static final String PROTOCOL = "protocol";
+
+  private final MeterRegistry registry;
+  private final Map<String, HostMetrics> hosts = new ConcurrentHashMap<>();
+  private final Map<String, Set<PoolMetrics>> pools = new ConcurrentHashMap<>();
+
+  /**
+   * @param registry registry the meters are created in .
+   */
+  public ClientMetrics(MeterRegistry registry) {
+
+    this.registry = registry;
+  }
+
+  public MeterRegistry getRegistry() {
+
+    return registry;
+  }
+
+  /**
+   * @param protocol protocol name, e.g. "ftp" or "sftp" .
+   * @param host     server name as given to the client .
+   * @return the meters of the server .
+   */
+  public HostMetrics forHost(String protocol, String host) {
+
+    String name = protocol.toLowerCase(Locale.ROOT);
+    return hosts.computeIfAbsent(name + "://" + host,
+        key -> new HostMetrics(registry, Tags.of(HOST, host, PROTOCOL, name)));
+  }
+
+  /**
+   * @param key .
+   * @return the meters of the server of the pool key .
+   */
+  public HostMetrics forKey(ConnectionKey key) {
+
+    return forHost(key.getProtocol().name(), key.getHost());
+  }
+
+  /**
+   * Publish the counters of a pool key as gauges. Keys of the same server, e.g. of different
+   * users, are added up under the tags of the server .
+   *
+   * @param poolMetrics .
+   */
+  public void bindPool(PoolMetrics poolMetrics) {
+
+    ConnectionKey key = poolMetrics.getKey();
+    String protocol = key.getProtocol().name().toLowerCase(Locale.ROOT);
+    Set<PoolMetrics> members = pools.computeIfAbsent(protocol + "://" + key.getHost(), server -> {
+      Set<PoolMetrics> set = ConcurrentHashMap.newKeySet();
+      Tags tags = Tags.of(HOST, key.getHost(), PROTOCOL, protocol);
+      Gauge.builder(PREFIX + "pool.active", set, sum(PoolMetrics::getNumActive))
+          .tags(tags).description("Connections borrowed from the pool").register(registry);
+      Gauge.builder(PREFIX + "pool.idle", set, sum(PoolMetrics::getNumIdle))
+          .tags(tags).description("Connections idle in the pool").register(registry);
+      FunctionCounter.builder(PREFIX + "pool.created", set, sum(PoolMetrics::getCreatedCount))
+          .tags(tags).register(registry);
+      FunctionCounter.builder(PREFIX + "pool.destroyed", set, sum(PoolMetrics::getDestroyedCount))
+          .tags(tags).register(registry);
+      FunctionCounter.builder(PREFIX + "pool.borrowed", set, sum(PoolMetrics::getBorrowedCount))
+          .tags(tags).register(registry);
+      FunctionCounter.builder(PREFIX + "pool.validation.failures", set,
+          sum(PoolMetrics::getValidationFailureCount)).tags(tags).register(registry);
+      Gauge.builder(PREFIX + "pool.borrow.wait", set, mean(PoolMetrics::getMeanBorrowWaitMillis))
+          .tags(tags).baseUnit("milliseconds").description("Mean time spent waiting in borrow")
+          .register(registry);
+      return set;
+    });
+    members.add(poolMetrics);
+  }
+
+  private static ToDoubleFunction<Set<PoolMetrics>> sum(ToDoubleFunction<PoolMetrics> value) {
+
+    return set -> set.stream().mapToDouble(value).sum();
+  }
+
+  private static ToDoubleFunction<Set<PoolMetrics>> mean(ToDoubleFunction<PoolMetrics> value) {
+
+    return set -> set.stream().mapToDouble(value).average().orElse(0);
+  }
+}
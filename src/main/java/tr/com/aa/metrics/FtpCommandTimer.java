@@ -0,0 +1,45 @@
+package tr.com.aa.metrics;
+
+import org.apache.commons.net.ProtocolCommandEvent;
+import org.apache.commons.net.ProtocolCommandListener;
+import org.apache.commons.net.ftp.FTPReply;
+
+/**
+ * Times every command of one FTP control connection from the moment it is sent until the first
+ * reply, and counts the error replies by code. For RETR, STOR and LIST the first reply is the
+ * preliminary 150, the transfer itself is measured separately .
+ *
+ * <p>Commons net calls the listeners on the thread that sends the command, and a connection is used
+ * by one thread at a time, so the pending command needs no synchronization .
+ */
+public class FtpCommandTimer implements ProtocolCommandListener {
+
+  private final HostMetrics hostMetrics;
+  private String pendingCommand;
+  private long sentNanos;
+
+  public FtpCommandTimer(HostMetrics hostMetrics) {
+
+    this.hostMetrics = hostMetrics;
+  }
+
+  @Override
+  public void protocolCommandSent(ProtocolCommandEvent event) {
+
+    pendingCommand = event.getCommand();
+    sentNanos = System.nanoTime();
+  }
+
+  @Override
+  public void protocolReplyReceived(ProtocolCommandEvent event) {
+
+    int code = event.getReplyCode();
+    if (pendingCommand != null) {
+      hostMetrics.recordCommand(pendingCommand, System.nanoTime() - sentNanos);
+      pendingCommand = null;
+    }
+    if (FTPReply.isNegativeTransient(code) || FTPReply.isNegativePermanent(code)) {
+      hostMetrics.recordError(code);
+    }
+  }
+}
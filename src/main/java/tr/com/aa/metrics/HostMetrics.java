@@ -0,0 +1,129 @@
+package tr.com.aa.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Meters of one server. Every meter is looked up in the registry once and kept, recording is a
+ * map lookup and an update of the meter .
+ */
+public class HostMetrics {
+
+  public static final String DOWNLOAD = "download";
+  public static final String UPLOAD = "upload";
+  private static final String COMMAND = "command";
+  private static final String DIRECTION = "direction";
+  private static final String OPERATION = "operation";
+  private static final double NANOS_PER_SECOND = 1_000_000_000d;
+
+  private final MeterRegistry registry;
+  private final Tags tags;
+  private final Map<String, Timer> commands = new ConcurrentHashMap<>();
+  private final Map<Integer, Counter> errors = new ConcurrentHashMap<>();
+  private final Map<String, TransferMeters> transfers = new ConcurrentHashMap<>();
+  private final Map<String, DirectoryMeters> directories = new ConcurrentHashMap<>();
+
+  HostMetrics(MeterRegistry registry, Tags tags) {
+
+    this.registry = registry;
+    this.tags = tags;
+  }
+
+  /**
+   * @param command  name of the command, e.g. "RETR" or "stat" .
+   * @param nanos    time until the server answered .
+   */
+  public void recordCommand(String command, long nanos) {
+
+    commands.computeIfAbsent(command.toUpperCase(Locale.ROOT),
+        name -> Timer.builder(ClientMetrics.PREFIX + "commands")
+            .tags(tags).tag(COMMAND, name)
+            .description("Time from sending a command to its first reply")
+            .register(registry))
+        .record(nanos, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * @param code FTP reply code of 400 and above, or the SFTP status code, of a failed command .
+   */
+  public void recordError(int code) {
+
+    errors.computeIfAbsent(code,
+        key -> Counter.builder(ClientMetrics.PREFIX + "errors")
+            .tags(tags).tag("code", String.valueOf(key))
+            .description("Commands the server answered with an error")
+            .register(registry))
+        .increment();
+  }
+
+  /**
+   * @param direction {@link #DOWNLOAD} or {@link #UPLOAD} .
+   * @param bytes     bytes of the file that were transferred .
+   * @param nanos     time the transfer took .
+   */
+  public void recordTransfer(String direction, long bytes, long nanos) {
+
+    TransferMeters meters = transfers.computeIfAbsent(direction, TransferMeters::new);
+    meters.bytes.record(bytes);
+    meters.duration.record(nanos, TimeUnit.NANOSECONDS);
+    if (nanos > 0) {
+      meters.throughput.record(bytes * NANOS_PER_SECOND / nanos);
+    }
+  }
+
+  /**
+   * @param operation name of the directory operation, e.g. "download" .
+   * @param files     files transferred by the operation .
+   * @param nanos     time the whole operation took .
+   */
+  public void recordFiles(String operation, long files, long nanos) {
+
+    DirectoryMeters meters = directories.computeIfAbsent(operation, DirectoryMeters::new);
+    meters.files.increment(files);
+    meters.duration.record(nanos, TimeUnit.NANOSECONDS);
+    if (nanos > 0) {
+      meters.rate.record(files * NANOS_PER_SECOND / nanos);
+    }
+  }
+
+  private class TransferMeters {
+
+    private final DistributionSummary bytes;
+    private final Timer duration;
+    private final DistributionSummary throughput;
+
+    TransferMeters(String direction) {
+
+      bytes = DistributionSummary.builder(ClientMetrics.PREFIX + "transfer.bytes")
+          .tags(tags).tag(DIRECTION, direction).baseUnit("bytes").register(registry);
+      duration = Timer.builder(ClientMetrics.PREFIX + "transfer.duration")
+          .tags(tags).tag(DIRECTION, direction).register(registry);
+      throughput = DistributionSummary.builder(ClientMetrics.PREFIX + "transfer.throughput")
+          .tags(tags).tag(DIRECTION, direction).baseUnit("bytes/s").register(registry);
+    }
+  }
+
+  private class DirectoryMeters {
+
+    private final Counter files;
+    private final Timer duration;
+    private final DistributionSummary rate;
+
+    DirectoryMeters(String operation) {
+
+      files = Counter.builder(ClientMetrics.PREFIX + "directory.files")
+          .tags(tags).tag(OPERATION, operation).register(registry);
+      duration = Timer.builder(ClientMetrics.PREFIX + "directory.duration")
+          .tags(tags).tag(OPERATION, operation).register(registry);
+      rate = DistributionSummary.builder(ClientMetrics.PREFIX + "directory.rate")
+          .tags(tags).tag(OPERATION, operation).baseUnit("files/s").register(registry);
+    }
+  }
+}
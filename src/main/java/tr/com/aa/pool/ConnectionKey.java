@@ -0,0 +1,84 @@
+package tr.com.aa.pool;
+
+import java.util.Objects;
+import tr.com.aa.client.ClientFactory.Protocol;
+import tr.com.aa.client.auth.UserCredentials;
+
+/**
+ * Identifies a group of interchangeable sessions in the pool : protocol, host, port and user .
+ * The password is carried along to open new sessions but does not take part in equality.
+ */
+public class ConnectionKey {
+
+  private final Protocol protocol;
+  private final String host;
+  private final int port;
+  private final UserCredentials userCredentials;
+
+  /**
+   * @param protocol        .
+   * @param host            .
+   * @param port            .
+   * @param userCredentials .
+   */
+  public ConnectionKey(Protocol protocol, String host, int port, UserCredentials userCredentials) {
+
+    this.protocol = protocol;
+    this.host = host;
+    this.port = port;
+    this.userCredentials = userCredentials;
+  }
+
+  public Protocol getProtocol() {
+
+    return protocol;
+  }
+
+  public String getHost() {
+
+    return host;
+  }
+
+  public int getPort() {
+
+    return port;
+  }
+
+  public UserCredentials getUserCredentials() {
+
+    return userCredentials;
+  }
+
+  public String getUsername() {
+
+    return userCredentials.getUsername();
+  }
+
+  @Override
+  public boolean equals(Object o) {
+
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof ConnectionKey)) {
+      return false;
+    }
+    ConnectionKey that = (ConnectionKey) o;
+    return port == that.port
+        && protocol == that.protocol
+        && Objects.equals(host, that.host)
+        && Objects.equals(getUsername(), that.getUsername());
+  }
+
+  @Override
+  public int hashCode() {
+
+    return Objects.hash(protocol, host, port, getUsername());
+  }
+
+  @Override
+  public String toString() {
+
+    return protocol.name().toLowerCase() + "://" + getUsername() + "@" + host + ":" + port;
+  }
+}
@@ -0,0 +1,223 @@
+package tr.com.aa.pool;
+
+import java.io.Closeable;
+import java.util.Collections;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.pool2.impl.GenericKeyedObjectPool;
+import tr.com.aa.cache.MetadataCache;
+import tr.com.aa.client.ClientFactory;
+import tr.com.aa.connection.Connection;
+import tr.com.aa.exception.FtpException;
+import tr.com.aa.metrics.ClientMetrics;
+
+/**
+ * Keyed pool of logged-in connections. Sessions are grouped by {@link ConnectionKey}, reset with
+ * {@link Connection#reset()} when returned, checked with {@link Connection#isAvailable()} when
+ * borrowed and closed by a background evictor when they stay idle for too long .
+ *
+ * <p>A borrowed connection belongs to the borrowing thread only. It must be handed back with
+ * {@link #release(Connection)}, or {@link #invalidate(Connection)} when its state is unknown.
+ */
+@Slf4j
+public class ConnectionPool implements Closeable {
+
+  private static final String BORROW_ERROR_MESSAGE = "Unable to borrow a connection for %s";
+  private static final String NOT_BORROWED_MESSAGE =
+      "The connection was not borrowed from this pool";
+
+  private final GenericKeyedObjectPool<ConnectionKey, Connection> pool;
+  private final Map<ConnectionKey, PoolMetrics> metrics = new ConcurrentHashMap<>();
+  private final Map<Connection, ConnectionKey> borrowed = new ConcurrentHashMap<>();
+  private final Map<ConnectionKey, MetadataCache> metadataCaches = new ConcurrentHashMap<>();
+  private final int minIdlePerKey;
+  private final long metadataCacheTtlMillis;
+  private final long metadataCacheMaximumSize;
+  private final ClientMetrics clientMetrics;
+
+  /**
+   * @param clientFactory creates the clients used to open new sessions .
+   * @param poolConfig    .
+   */
+  public ConnectionPool(ClientFactory clientFactory, PoolConfig poolConfig) {
+
+    this.pool = new GenericKeyedObjectPool<>(
+        new PooledConnectionFactory(clientFactory, this::getMetrics, this::getMetadataCache,
+            poolConfig),
+        poolConfig.toPoolConfig());
+    this.minIdlePerKey = poolConfig.getMinIdlePerKey();
+    this.metadataCacheTtlMillis = poolConfig.getMetadataCacheTtlMillis();
+    this.metadataCacheMaximumSize = poolConfig.getMetadataCacheMaximumSize();
+    this.clientMetrics = poolConfig.getClientMetrics();
+  }
+
+  /**
+   * Borrow a connection for the given key, opening a new session if no idle one is available .
+   *
+   * @param key .
+   * @return a connected and logged-in connection .
+   * @throws FtpException if no connection could be opened or the wait timed out .
+   */
+  public Connection borrow(ConnectionKey key) throws FtpException {
+
+    PoolMetrics keyMetrics = getMetrics(key);
+    long start = System.nanoTime();
+
+    try {
+      Connection connection = pool.borrowObject(key);
+      keyMetrics.onBorrowed(System.nanoTime() - start);
+      borrowed.put(connection, key);
+      return connection;
+    } catch (NoSuchElementException e) {
+      throw new FtpException(String.format(BORROW_ERROR_MESSAGE, key), e);
+    } catch (FtpException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new FtpException(String.format(BORROW_ERROR_MESSAGE, key), e);
+    }
+  }
+
+  /**
+   * Hand a healthy connection back to the pool. It is reset to the state of its login, see
+   * {@link Connection#reset()}, and closed if that fails .
+   *
+   * @param connection .
+   */
+  public void release(Connection connection) {
+
+    ConnectionKey key = borrowed.remove(connection);
+
+    if (key == null) {
+      throw new FtpException(NOT_BORROWED_MESSAGE);
+    }
+
+    getMetrics(key).onReturned();
+    pool.returnObject(key, connection);
+  }
+
+  /**
+   * Close a connection whose state is unknown (failed or aborted transfer) instead of returning
+   * it .
+   *
+   * @param connection .
+   */
+  public void invalidate(Connection connection) {
+
+    ConnectionKey key = borrowed.remove(connection);
+
+    if (key == null) {
+      throw new FtpException(NOT_BORROWED_MESSAGE);
+    }
+
+    try {
+      pool.invalidateObject(key, connection);
+    } catch (Exception e) {
+      log.warn("Unable to invalidate pooled connection {}", key, e);
+    }
+  }
+
+  /**
+   * Run an action with a borrowed connection and hand it back afterwards. A connection that is no
+   * longer available afterwards, e.g. after a failure or a cut transfer, is invalidated instead of
+   * returned. One that still looks available is reset on the way back, which also finds a control
+   * connection that no longer answers .
+   *
+   * @param key    .
+   * @param action work to do with the connection .
+   * @param <T>    result type of the action .
+   * @return result of the action .
+   */
+  public <T> T execute(ConnectionKey key, Function<Connection, T> action) {
+
+    Connection connection = borrow(key);
+    boolean healthy = true;
+
+    try {
+      T result = action.apply(connection);
+      healthy = connection.isAvailable();
+      return result;
+    } catch (RuntimeException e) {
+      healthy = connection.isAvailable();
+      throw e;
+    } finally {
+      if (healthy) {
+        release(connection);
+      } else {
+        invalidate(connection);
+      }
+    }
+  }
+
+  /**
+   * @param key .
+   * @return live counters of the given key .
+   */
+  public PoolMetrics getMetrics(ConnectionKey key) {
+
+    PoolMetrics keyMetrics = metrics.get(key);
+
+    if (keyMetrics == null) {
+      keyMetrics = metrics.computeIfAbsent(key, k -> new PoolMetrics(k, pool));
+      if (clientMetrics != null) {
+        clientMetrics.bindPool(keyMetrics);
+      }
+      prepare(key);
+    }
+
+    return keyMetrics;
+  }
+
+  /**
+   * @param key .
+   * @return the metadata cache shared by the connections of the key, null if caching is disabled .
+   */
+  public MetadataCache getMetadataCache(ConnectionKey key) {
+
+    if (metadataCacheTtlMillis <= 0) {
+      return null;
+    }
+    return metadataCaches.computeIfAbsent(
+        key, k -> new MetadataCache(metadataCacheTtlMillis, metadataCacheMaximumSize));
+  }
+
+  /**
+   * @return the Micrometer meters of the pool, null if none were configured .
+   */
+  public ClientMetrics getClientMetrics() {
+
+    return clientMetrics;
+  }
+
+  /**
+   * @return counters of every key seen so far .
+   */
+  public Map<ConnectionKey, PoolMetrics> getAllMetrics() {
+
+    return Collections.unmodifiableMap(metrics);
+  }
+
+  @Override
+  public void close() {
+
+    pool.close();
+    borrowed.clear();
+    metadataCaches.values().forEach(MetadataCache::invalidateAll);
+    metadataCaches.clear();
+  }
+
+  private void prepare(ConnectionKey key) {
+
+    if (minIdlePerKey <= 0) {
+      return;
+    }
+
+    try {
+      pool.preparePool(key);
+    } catch (Exception e) {
+      log.warn("Unable to open {} idle connections for {}", minIdlePerKey, key, e);
+    }
+  }
+}
@@ -0,0 +1,283 @@
+package tr.com.aa.pool;
+
+import org.apache.commons.pool2.impl.GenericKeyedObjectPoolConfig;
+import tr.com.aa.cache.MetadataCache;
+import tr.com.aa.checksum.ChecksumAlgorithm;
+import tr.com.aa.compression.CompressionOptions;
+import tr.com.aa.connection.Connection;
+import tr.com.aa.metrics.ClientMetrics;
+import tr.com.aa.throttle.BandwidthLimits;
+import tr.com.aa.trace.ProtocolEventStream;
+import tr.com.aa.tuning.TransferTuning;
+
+/**
+ * Sizing and eviction settings of the connection pool .
+ */
+public class PoolConfig {
+
+  private int minIdlePerKey = 0;
+  private int maxIdlePerKey = 8;
+  private int maxTotalPerKey = 8;
+  private int maxTotal = 64;
+  private long maxWaitMillis = 30_000L;
+  private long idleEvictionMillis = 120_000L;
+  private long evictionRunIntervalMillis = 30_000L;
+  private boolean testOnBorrow = true;
+  private boolean testWhileIdle = true;
+  private long metadataCacheTtlMillis = 0L;
+  private long metadataCacheMaximumSize = MetadataCache.DEFAULT_MAXIMUM_SIZE;
+  private ChecksumAlgorithm checksumAlgorithm;
+  private boolean sidecarChecksums;
+  private CompressionOptions compressionOptions;
+  private BandwidthLimits bandwidthLimits;
+  private TransferTuning transferTuning;
+  private ClientMetrics clientMetrics;
+  private ProtocolEventStream protocolEventStream;
+
+  public int getMinIdlePerKey() {
+
+    return minIdlePerKey;
+  }
+
+  public void setMinIdlePerKey(int minIdlePerKey) {
+
+    this.minIdlePerKey = minIdlePerKey;
+  }
+
+  public int getMaxIdlePerKey() {
+
+    return maxIdlePerKey;
+  }
+
+  public void setMaxIdlePerKey(int maxIdlePerKey) {
+
+    this.maxIdlePerKey = maxIdlePerKey;
+  }
+
+  public int getMaxTotalPerKey() {
+
+    return maxTotalPerKey;
+  }
+
+  public void setMaxTotalPerKey(int maxTotalPerKey) {
+
+    this.maxTotalPerKey = maxTotalPerKey;
+  }
+
+  public int getMaxTotal() {
+
+    return maxTotal;
+  }
+
+  public void setMaxTotal(int maxTotal) {
+
+    this.maxTotal = maxTotal;
+  }
+
+  public long getMaxWaitMillis() {
+
+    return maxWaitMillis;
+  }
+
+  public void setMaxWaitMillis(long maxWaitMillis) {
+
+    this.maxWaitMillis = maxWaitMillis;
+  }
+
+  public long getIdleEvictionMillis() {
+
+    return idleEvictionMillis;
+  }
+
+  /**
+   * Idle sessions older than this are closed by the evictor. Keep it below the server side idle
+   * timeout so that a borrowed session is rarely dead .
+   *
+   * @param idleEvictionMillis .
+   */
+  public void setIdleEvictionMillis(long idleEvictionMillis) {
+
+    this.idleEvictionMillis = idleEvictionMillis;
+  }
+
+  public long getEvictionRunIntervalMillis() {
+
+    return evictionRunIntervalMillis;
+  }
+
+  public void setEvictionRunIntervalMillis(long evictionRunIntervalMillis) {
+
+    this.evictionRunIntervalMillis = evictionRunIntervalMillis;
+  }
+
+  public boolean isTestOnBorrow() {
+
+    return testOnBorrow;
+  }
+
+  public void setTestOnBorrow(boolean testOnBorrow) {
+
+    this.testOnBorrow = testOnBorrow;
+  }
+
+  public boolean isTestWhileIdle() {
+
+    return testWhileIdle;
+  }
+
+  public void setTestWhileIdle(boolean testWhileIdle) {
+
+    this.testWhileIdle = testWhileIdle;
+  }
+
+  public long getMetadataCacheTtlMillis() {
+
+    return metadataCacheTtlMillis;
+  }
+
+  /**
+   * Time the connections of a server share its answers to stat and list requests, 0 (the default)
+   * disables the metadata cache .
+   *
+   * @param metadataCacheTtlMillis .
+   */
+  public void setMetadataCacheTtlMillis(long metadataCacheTtlMillis) {
+
+    this.metadataCacheTtlMillis = metadataCacheTtlMillis;
+  }
+
+  public long getMetadataCacheMaximumSize() {
+
+    return metadataCacheMaximumSize;
+  }
+
+  public void setMetadataCacheMaximumSize(long metadataCacheMaximumSize) {
+
+    this.metadataCacheMaximumSize = metadataCacheMaximumSize;
+  }
+
+  public ChecksumAlgorithm getChecksumAlgorithm() {
+
+    return checksumAlgorithm;
+  }
+
+  /**
+   * Checksum the pooled FTP connections verify every transfer with, null (the default) for none.
+   * SFTP connections do not verify transfers .
+   *
+   * @param checksumAlgorithm .
+   */
+  public void setChecksumAlgorithm(ChecksumAlgorithm checksumAlgorithm) {
+
+    this.checksumAlgorithm = checksumAlgorithm;
+  }
+
+  public boolean isSidecarChecksums() {
+
+    return sidecarChecksums;
+  }
+
+  /**
+   * @param sidecarChecksums read expected checksums from sidecar files, see
+   *                         {@link tr.com.aa.client.Client#setSidecarChecksums(boolean)} .
+   */
+  public void setSidecarChecksums(boolean sidecarChecksums) {
+
+    this.sidecarChecksums = sidecarChecksums;
+  }
+
+  public CompressionOptions getCompressionOptions() {
+
+    return compressionOptions;
+  }
+
+  /**
+   * Compression of the pooled connections, null (the default) for none .
+   *
+   * @param compressionOptions .
+   */
+  public void setCompressionOptions(CompressionOptions compressionOptions) {
+
+    this.compressionOptions = compressionOptions;
+  }
+
+  public BandwidthLimits getBandwidthLimits() {
+
+    return bandwidthLimits;
+  }
+
+  /**
+   * Bandwidth caps shared by the pooled connections, null (the default) for no limit .
+   *
+   * @param bandwidthLimits .
+   */
+  public void setBandwidthLimits(BandwidthLimits bandwidthLimits) {
+
+    this.bandwidthLimits = bandwidthLimits;
+  }
+
+  public TransferTuning getTransferTuning() {
+
+    return transferTuning;
+  }
+
+  /**
+   * Per server socket and buffer tuning shared by the pooled connections, null (the default) for
+   * fixed sizes .
+   *
+   * @param transferTuning .
+   */
+  public void setTransferTuning(TransferTuning transferTuning) {
+
+    this.transferTuning = transferTuning;
+  }
+
+  public ClientMetrics getClientMetrics() {
+
+    return clientMetrics;
+  }
+
+  /**
+   * Micrometer meters of the pooled connections, including gauges of the pool itself, null (the
+   * default) for none .
+   *
+   * @param clientMetrics .
+   */
+  public void setClientMetrics(ClientMetrics clientMetrics) {
+
+    this.clientMetrics = clientMetrics;
+  }
+
+  public ProtocolEventStream getProtocolEventStream() {
+
+    return protocolEventStream;
+  }
+
+  /**
+   * Stream the protocol commands and replies of the pooled connections are recorded in, null
+   * (the default) for none .
+   *
+   * @param protocolEventStream .
+   */
+  public void setProtocolEventStream(ProtocolEventStream protocolEventStream) {
+
+    this.protocolEventStream = protocolEventStream;
+  }
+
+  GenericKeyedObjectPoolConfig<Connection> toPoolConfig() {
+
+    GenericKeyedObjectPoolConfig<Connection> config = new GenericKeyedObjectPoolConfig<>();
+    config.setMinIdlePerKey(minIdlePerKey);
+    config.setMaxIdlePerKey(maxIdlePerKey);
+    config.setMaxTotalPerKey(maxTotalPerKey);
+    config.setMaxTotal(maxTotal);
+    config.setMaxWaitMillis(maxWaitMillis);
+    config.setBlockWhenExhausted(true);
+    config.setMinEvictableIdleTimeMillis(idleEvictionMillis);
+    config.setTimeBetweenEvictionRunsMillis(evictionRunIntervalMillis);
+    config.setTestOnBorrow(testOnBorrow);
+    config.setTestWhileIdle(testWhileIdle);
+    config.setJmxEnabled(false);
+    return config;
+  }
+}
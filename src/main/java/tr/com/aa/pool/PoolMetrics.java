@@ -0,0 +1,110 @@
+package tr.com.aa.pool;
+
+import java.util.concurrent.atomic.LongAdder;
+import org.apache.commons.pool2.impl.GenericKeyedObjectPool;
+import tr.com.aa.connection.Connection;
+
+/**
+ * Counters of a single pool key. Active and idle counts are read live from the pool .
+ */
+public class PoolMetrics {
+
+  private final ConnectionKey key;
+  private final GenericKeyedObjectPool<ConnectionKey, Connection> pool;
+  private final LongAdder created = new LongAdder();
+  private final LongAdder destroyed = new LongAdder();
+  private final LongAdder borrowed = new LongAdder();
+  private final LongAdder returned = new LongAdder();
+  private final LongAdder validationFailures = new LongAdder();
+  private final LongAdder borrowWaitNanos = new LongAdder();
+
+  PoolMetrics(ConnectionKey key, GenericKeyedObjectPool<ConnectionKey, Connection> pool) {
+
+    this.key = key;
+    this.pool = pool;
+  }
+
+  void onCreated() {
+
+    created.increment();
+  }
+
+  void onDestroyed() {
+
+    destroyed.increment();
+  }
+
+  void onBorrowed(long waitNanos) {
+
+    borrowed.increment();
+    borrowWaitNanos.add(waitNanos);
+  }
+
+  void onReturned() {
+
+    returned.increment();
+  }
+
+  void onValidationFailure() {
+
+    validationFailures.increment();
+  }
+
+  public ConnectionKey getKey() {
+
+    return key;
+  }
+
+  public int getNumActive() {
+
+    return pool.getNumActive(key);
+  }
+
+  public int getNumIdle() {
+
+    return pool.getNumIdle(key);
+  }
+
+  public long getCreatedCount() {
+
+    return created.sum();
+  }
+
+  public long getDestroyedCount() {
+
+    return destroyed.sum();
+  }
+
+  public long getBorrowedCount() {
+
+    return borrowed.sum();
+  }
+
+  public long getReturnedCount() {
+
+    return returned.sum();
+  }
+
+  public long getValidationFailureCount() {
+
+    return validationFailures.sum();
+  }
+
+  /**
+   * @return mean time a caller waited in borrow, in milliseconds .
+   */
+  public double getMeanBorrowWaitMillis() {
+
+    long count = borrowed.sum();
+    return count == 0 ? 0 : borrowWaitNanos.sum() / 1_000_000d / count;
+  }
+
+  @Override
+  public String toString() {
+
+    return key + " active=" + getNumActive() + " idle=" + getNumIdle()
+        + " created=" + getCreatedCount() + " destroyed=" + getDestroyedCount()
+        + " borrowed=" + getBorrowedCount() + " returned=" + getReturnedCount()
+        + " validationFailures=" + getValidationFailureCount();
+  }
+}
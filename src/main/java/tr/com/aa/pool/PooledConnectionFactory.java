@@ -0,0 +1,120 @@
+package tr.com.aa.pool;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.pool2.BaseKeyedPooledObjectFactory;
+import org.apache.commons.pool2.PooledObject;
+import org.apache.commons.pool2.impl.DefaultPooledObject;
+import tr.com.aa.cache.MetadataCache;
+import tr.com.aa.client.Client;
+import tr.com.aa.client.ClientFactory;
+import tr.com.aa.connection.Connection;
+import tr.com.aa.exception.FtpException;
+
+/**
+ * Opens, resets, validates and closes the sessions kept by {@link ConnectionPool}. Every pooled
+ * connection owns its own client so that no two connections share a control channel or an ssh
+ * session .
+ */
+@Slf4j
+class PooledConnectionFactory extends BaseKeyedPooledObjectFactory<ConnectionKey, Connection> {
+
+  private final ClientFactory clientFactory;
+  private final Function<ConnectionKey, PoolMetrics> metrics;
+  private final Function<ConnectionKey, MetadataCache> metadataCaches;
+  private final PoolConfig poolConfig;
+  private final Map<Connection, Client> clients = new ConcurrentHashMap<>();
+
+  PooledConnectionFactory(ClientFactory clientFactory,
+                          Function<ConnectionKey, PoolMetrics> metrics,
+                          Function<ConnectionKey, MetadataCache> metadataCaches,
+                          PoolConfig poolConfig) {
+
+    this.clientFactory = clientFactory;
+    this.metrics = metrics;
+    this.metadataCaches = metadataCaches;
+    this.poolConfig = poolConfig;
+  }
+
+  @Override
+  public Connection create(ConnectionKey key) throws FtpException {
+
+    Client client = clientFactory.createClient(key.getProtocol());
+    client.setHost(key.getHost());
+    client.setPort(key.getPort());
+    client.setCredentials(key.getUserCredentials());
+    client.setMetadataCache(metadataCaches.apply(key));
+    client.setChecksumAlgorithm(poolConfig.getChecksumAlgorithm());
+    client.setSidecarChecksums(poolConfig.isSidecarChecksums());
+    client.setCompressionOptions(poolConfig.getCompressionOptions());
+    client.setBandwidthLimits(poolConfig.getBandwidthLimits());
+    client.setTransferTuning(poolConfig.getTransferTuning());
+    client.setClientMetrics(poolConfig.getClientMetrics());
+    client.setProtocolEventStream(poolConfig.getProtocolEventStream());
+
+    Connection connection = client.connect();
+    clients.put(connection, client);
+    metrics.apply(key).onCreated();
+    log.debug("Opened pooled connection {}", key);
+    return connection;
+  }
+
+  @Override
+  public PooledObject<Connection> wrap(Connection connection) {
+
+    return new DefaultPooledObject<>(connection);
+  }
+
+  @Override
+  public boolean validateObject(ConnectionKey key, PooledObject<Connection> pooledObject) {
+
+    boolean available;
+    try {
+      available = pooledObject.getObject().isAvailable();
+    } catch (RuntimeException e) {
+      available = false;
+    }
+
+    if (!available) {
+      metrics.apply(key).onValidationFailure();
+      log.debug("Pooled connection {} is no longer available", key);
+    }
+    return available;
+  }
+
+  /**
+   * Runs on every return: the next borrower gets the session as the login left it. A connection
+   * that cannot be reset is destroyed by the pool .
+   */
+  @Override
+  public void passivateObject(ConnectionKey key, PooledObject<Connection> pooledObject) {
+
+    try {
+      pooledObject.getObject().reset();
+    } catch (RuntimeException e) {
+      metrics.apply(key).onValidationFailure();
+      log.debug("Pooled connection {} could not be reset", key, e);
+      throw e;
+    }
+  }
+
+  @Override
+  public void destroyObject(ConnectionKey key, PooledObject<Connection> pooledObject) {
+
+    Client client = clients.remove(pooledObject.getObject());
+    metrics.apply(key).onDestroyed();
+
+    if (client == null) {
+      return;
+    }
+
+    try {
+      client.disconnect();
+      log.debug("Closed pooled connection {}", key);
+    } catch (FtpException e) {
+      log.warn("Unable to close pooled connection {}", key, e);
+    }
+  }
+}
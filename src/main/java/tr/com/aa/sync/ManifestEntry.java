@@ -0,0 +1,52 @@
+package tr.com.aa.sync;
+
+/**
+ * What a mirrored file looked like on the server when it was last transferred .
+ */
+public class ManifestEntry {
+
+  private final long size;
+  private final long lastModified;
+  private final String hash;
+
+  /**
+   * @param size         size reported by the listing .
+   * @param lastModified modification time reported by the listing, in milliseconds .
+   * @param hash         digest of the local copy, null if hashing is off .
+   */
+  public ManifestEntry(long size, long lastModified, String hash) {
+
+    this.size = size;
+    this.lastModified = lastModified;
+    this.hash = hash;
+  }
+
+  public long getSize() {
+
+    return size;
+  }
+
+  public long getLastModified() {
+
+    return lastModified;
+  }
+
+  public String getHash() {
+
+    return hash;
+  }
+
+  /**
+   * @param other .
+   * @return true if size and time are the same, the hash is not compared .
+   */
+  public boolean sameAs(ManifestEntry other) {
+
+    return other != null && size == other.size && lastModified == other.lastModified;
+  }
+
+  ManifestEntry withHash(String hash) {
+
+    return new ManifestEntry(size, lastModified, hash);
+  }
+}
@@ -0,0 +1,353 @@
+package tr.com.aa.sync;
+
+import com.google.common.io.BaseEncoding;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+import lombok.extern.slf4j.Slf4j;
+import tr.com.aa.connection.AaFtpFile;
+import tr.com.aa.connection.Connection;
+import tr.com.aa.exception.FtpException;
+import tr.com.aa.pool.ConnectionKey;
+import tr.com.aa.pool.ConnectionPool;
+import tr.com.aa.util.MyDateUtils;
+import tr.com.aa.util.RemotePaths;
+
+/**
+ * Keeps a local directory a mirror of a remote one. Every run lists the remote tree once and
+ * compares it with the manifest of the previous run: only files whose size or time changed in the
+ * listing are downloaded, nothing is asked per file. Files that are new to the manifest but already
+ * on disk, e.g. the first run over an old download, are checked once with
+ * {@link Connection#isSync(String, String)} and adopted when they are the same .
+ *
+ * <p>The manifest is saved at the end of every run, also a failed one, with the files that were
+ * transferred successfully, so the next run retries only what failed .
+ */
+@Slf4j
+public class MirrorSync {
+
+  /**
+   * Name of the manifest in the local directory, unless another file is set .
+   */
+  public static final String DEFAULT_MANIFEST_NAME = ".mirror-manifest";
+  private static final String SYNC_FAILURE_MESSAGE = "%d of the files under %s could not be synced";
+  private static final int HASH_BUFFER_SIZE = 64 * 1024;
+  // downloads go to a hidden sibling first, the local copy is replaced only once they are complete
+  private static final String PART_PREFIX = ".";
+  private static final String PART_SUFFIX = ".part";
+
+  private final ConnectionPool connectionPool;
+  private final ConnectionKey connectionKey;
+  private final int parallelism;
+  private boolean deleteRemoved;
+  private String hashAlgorithm;
+  private Path manifestFile;
+
+  /**
+   * @param connectionPool pool the connections are borrowed from .
+   * @param connectionKey  host, port, user and protocol of the server .
+   * @param parallelism    number of files downloaded at the same time .
+   */
+  public MirrorSync(ConnectionPool connectionPool, ConnectionKey connectionKey, int parallelism) {
+
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("parallelism must be at least 1");
+    }
+    this.connectionPool = connectionPool;
+    this.connectionKey = connectionKey;
+    this.parallelism = parallelism;
+  }
+
+  /**
+   * @param deleteRemoved delete the local copy of files that are gone from the server .
+   */
+  public void setDeleteRemoved(boolean deleteRemoved) {
+
+    this.deleteRemoved = deleteRemoved;
+  }
+
+  /**
+   * @param hashAlgorithm MessageDigest algorithm, e.g. "SHA-256", whose digest of every downloaded
+   *                      file is kept in the manifest, null (the default) for none .
+   */
+  public void setHashAlgorithm(String hashAlgorithm) {
+
+    this.hashAlgorithm = hashAlgorithm;
+  }
+
+  /**
+   * @param manifestFile where the manifest is kept, by default {@value #DEFAULT_MANIFEST_NAME} in
+   *                     the local directory .
+   */
+  public void setManifestFile(Path manifestFile) {
+
+    this.manifestFile = manifestFile;
+  }
+
+  /**
+   * @param remoteDirectoryPath directory on the server .
+   * @param localDirectoryPath  local mirror of it .
+   * @return counts of the run .
+   * @throws FtpException if any file could not be synced, after all others are done .
+   */
+  public SyncResult mirror(String remoteDirectoryPath, String localDirectoryPath)
+      throws FtpException {
+
+    Path localRoot = Paths.get(localDirectoryPath);
+    SyncManifest previous = SyncManifest.load(manifestFile == null
+        ? localRoot.resolve(DEFAULT_MANIFEST_NAME) : manifestFile);
+    SyncManifest next = new SyncManifest(previous.getFile());
+    SyncResult result = new SyncResult();
+
+    String remoteRoot = RemotePaths.normalize(remoteDirectoryPath);
+    Map<String, AaFtpFile> remoteFiles = connectionPool.execute(connectionKey,
+        connection -> listTree(connection, remoteRoot));
+
+    List<SyncItem> items = new ArrayList<>();
+    for (Map.Entry<String, AaFtpFile> remoteFile : remoteFiles.entrySet()) {
+      String path = remoteFile.getKey();
+      ManifestEntry listed = new ManifestEntry(remoteFile.getValue().getSize(),
+          MyDateUtils.asLong(remoteFile.getValue().getLastModified()), null);
+      ManifestEntry known = previous.get(path);
+      Path localFile = localRoot.resolve(path);
+
+      if (listed.sameAs(known) && isIntact(localFile, known)) {
+        next.put(path, known);
+        result.onUnchanged();
+      } else {
+        items.add(new SyncItem(path, remoteFile.getValue().getAbsolutePath(), localFile, listed,
+            known));
+      }
+    }
+
+    if (deleteRemoved) {
+      deleteRemoved(previous, remoteFiles, localRoot, result);
+    }
+
+    log.info("Mirroring {} to {}: {} of {} files to transfer", remoteRoot, localRoot,
+        items.size(), remoteFiles.size());
+
+    List<RuntimeException> failures = transfer(items, next, result);
+    next.save();
+    log.info("Mirror of {} finished: {}", remoteRoot, result);
+
+    if (!failures.isEmpty()) {
+      FtpException exception = new FtpException(
+          String.format(SYNC_FAILURE_MESSAGE, failures.size(), remoteRoot), failures.get(0));
+      failures.forEach(exception::addSuppressed);
+      throw exception;
+    }
+    return result;
+  }
+
+  /**
+   * @return every file below the root, keyed by its "/" separated path relative to the root .
+   */
+  private Map<String, AaFtpFile> listTree(Connection connection, String remoteRoot) {
+
+    Map<String, AaFtpFile> files = new HashMap<>();
+    Deque<String[]> directories = new ArrayDeque<>();
+    directories.add(new String[] {remoteRoot, ""});
+
+    while (!directories.isEmpty()) {
+      String[] directory = directories.poll();
+      try (Stream<AaFtpFile> entries = connection.streamFiles(directory[0])) {
+        entries.forEach(entry -> {
+          String name = entry.getName();
+          if (name.equals(".") || name.equals("..")) {
+            return;
+          }
+          String path = directory[1].isEmpty() ? name : directory[1] + "/" + name;
+          if (entry.isDirectory()) {
+            directories.add(new String[] {RemotePaths.child(directory[0], name), path});
+          } else {
+            files.put(path, new AaFtpFile(name, entry.getSize(),
+                RemotePaths.child(directory[0], name),
+                MyDateUtils.asLong(entry.getLastModified()), false));
+          }
+        });
+      }
+    }
+    return files;
+  }
+
+  private List<RuntimeException> transfer(List<SyncItem> items, SyncManifest next,
+                                          SyncResult result) {
+
+    ExecutorService workers = Executors.newFixedThreadPool(parallelism);
+    List<Future<?>> futures = new ArrayList<>(items.size());
+    List<RuntimeException> failures = new ArrayList<>();
+
+    try {
+      for (SyncItem item : items) {
+        futures.add(workers.submit(() -> connectionPool.execute(connectionKey, connection -> {
+          sync(connection, item, next, result);
+          return null;
+        })));
+      }
+
+      for (int i = 0; i < futures.size(); i++) {
+        try {
+          futures.get(i).get();
+        } catch (ExecutionException e) {
+          SyncItem item = items.get(i);
+          log.warn("Unable to sync {}", item.remotePath, e.getCause());
+          result.onFailed();
+          if (item.known != null) {
+            // keep the old entry, it no longer matches the listing so the file is retried
+            next.put(item.path, item.known);
+          }
+          failures.add(e.getCause() instanceof RuntimeException
+              ? (RuntimeException) e.getCause() : new FtpException(e.getMessage(), e));
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new FtpException("Mirror was interrupted.", e);
+    } finally {
+      workers.shutdownNow();
+    }
+
+    return failures;
+  }
+
+  private void sync(Connection connection, SyncItem item, SyncManifest next, SyncResult result) {
+
+    try {
+      if (item.known == null && Files.exists(item.localFile)
+          && Files.size(item.localFile) == item.listed.getSize()
+          && !connection.isSync(item.remotePath, item.localFile.toString())) {
+        log.debug("Adopting existing local copy {}", item.localFile);
+        next.put(item.path, item.listed.withHash(hash(item.localFile)));
+        result.onUnchanged();
+        return;
+      }
+
+      replace(connection, item);
+    } catch (IOException e) {
+      throw new FtpException("Unable to write local file " + item.localFile, e);
+    }
+
+    next.put(item.path, item.listed.withHash(hash(item.localFile)));
+    if (item.known == null) {
+      result.onAdded();
+    } else {
+      result.onChanged();
+    }
+  }
+
+  /**
+   * Download into a sibling of the local file and move it over the local file once it has the
+   * listed size, so that the old copy stays readable until then and a failed download leaves it
+   * untouched .
+   */
+  private void replace(Connection connection, SyncItem item) throws IOException {
+
+    Path directory = item.localFile.getParent();
+    Path part = directory.resolve(PART_PREFIX + item.localFile.getFileName() + PART_SUFFIX);
+    // a leftover of an earlier run may belong to another version, downloading over it would
+    // resume from its end
+    Files.deleteIfExists(part);
+
+    try {
+      if (item.listed.getSize() == 0) {
+        // downloadFile skips empty remote files, there is nothing to transfer anyway
+        Files.createDirectories(directory);
+        Files.createFile(part);
+      } else {
+        connection.downloadFile(item.remotePath, directory.toString(),
+            part.getFileName().toString(), false, false);
+      }
+
+      if (!Files.exists(part) || Files.size(part) != item.listed.getSize()) {
+        throw new FtpException("Incomplete download of " + item.remotePath);
+      }
+      Files.move(part, item.localFile, StandardCopyOption.ATOMIC_MOVE,
+          StandardCopyOption.REPLACE_EXISTING);
+    } finally {
+      Files.deleteIfExists(part);
+    }
+  }
+
+  private void deleteRemoved(SyncManifest previous, Map<String, AaFtpFile> remoteFiles,
+                             Path localRoot, SyncResult result) {
+
+    for (String path : previous.getPaths()) {
+      if (remoteFiles.containsKey(path)) {
+        continue;
+      }
+      try {
+        if (Files.deleteIfExists(localRoot.resolve(path))) {
+          result.onDeleted();
+        }
+      } catch (IOException e) {
+        log.warn("Unable to delete removed file {}", localRoot.resolve(path), e);
+      }
+    }
+  }
+
+  /**
+   * The local copy is trusted as long as it still has the size it was downloaded with .
+   */
+  private static boolean isIntact(Path localFile, ManifestEntry known) {
+
+    try {
+      return Files.exists(localFile) && Files.size(localFile) == known.getSize();
+    } catch (IOException e) {
+      return false;
+    }
+  }
+
+  private String hash(Path localFile) {
+
+    if (hashAlgorithm == null) {
+      return null;
+    }
+
+    try (DigestInputStream in = new DigestInputStream(Files.newInputStream(localFile),
+        MessageDigest.getInstance(hashAlgorithm))) {
+      byte[] buffer = new byte[HASH_BUFFER_SIZE];
+      while (in.read(buffer) != -1) {
+        // the digest is updated while reading
+      }
+      return BaseEncoding.base16().lowerCase().encode(in.getMessageDigest().digest());
+    } catch (IOException | NoSuchAlgorithmException e) {
+      throw new FtpException("Unable to hash " + localFile, e);
+    }
+  }
+
+  private static class SyncItem {
+
+    private final String path;
+    private final String remotePath;
+    private final Path localFile;
+    private final ManifestEntry listed;
+    private final ManifestEntry known;
+
+    SyncItem(String path, String remotePath, Path localFile, ManifestEntry listed,
+             ManifestEntry known) {
+
+      this.path = path;
+      this.remotePath = remotePath;
+      this.localFile = localFile;
+      this.listed = listed;
+      this.known = known;
+    }
+  }
+}
@@ -0,0 +1,139 @@
+package tr.com.aa.sync;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.extern.slf4j.Slf4j;
+import tr.com.aa.exception.FtpException;
+
+/**
+ * Size, time and optional hash of every file of a mirror as of its last successful transfer, keyed
+ * by the path relative to the mirrored directory. Kept in a properties file that is replaced
+ * atomically on save, so a crash leaves the previous manifest intact .
+ */
+@Slf4j
+public class SyncManifest {
+
+  private static final String SEPARATOR = ",";
+
+  private final Path file;
+  private final Map<String, ManifestEntry> entries = new ConcurrentHashMap<>();
+
+  /**
+   * @param file where the manifest is saved .
+   */
+  public SyncManifest(Path file) {
+
+    this.file = file;
+  }
+
+  /**
+   * @param file .
+   * @return the saved manifest, or an empty one if there is none yet .
+   */
+  public static SyncManifest load(Path file) {
+
+    SyncManifest manifest = new SyncManifest(file);
+
+    if (!Files.exists(file)) {
+      return manifest;
+    }
+
+    Properties properties = new Properties();
+    try (InputStream in = Files.newInputStream(file)) {
+      properties.load(in);
+    } catch (IOException e) {
+      throw new FtpException("Unable to read sync manifest " + file, e);
+    }
+
+    for (String path : properties.stringPropertyNames()) {
+      ManifestEntry entry = parse(properties.getProperty(path));
+      if (entry == null) {
+        log.warn("Ignoring unreadable manifest entry {}", path);
+      } else {
+        manifest.entries.put(path, entry);
+      }
+    }
+
+    log.info("Loaded {} entries from sync manifest {}", manifest.entries.size(), file);
+    return manifest;
+  }
+
+  public ManifestEntry get(String path) {
+
+    return entries.get(path);
+  }
+
+  public void put(String path, ManifestEntry entry) {
+
+    entries.put(path, entry);
+  }
+
+  public void remove(String path) {
+
+    entries.remove(path);
+  }
+
+  public Set<String> getPaths() {
+
+    return Collections.unmodifiableSet(entries.keySet());
+  }
+
+  public int size() {
+
+    return entries.size();
+  }
+
+  public Path getFile() {
+
+    return file;
+  }
+
+  public synchronized void save() {
+
+    Properties properties = new Properties();
+    entries.forEach((path, entry) -> properties.setProperty(path, format(entry)));
+
+    Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+    try {
+      if (file.getParent() != null) {
+        Files.createDirectories(file.getParent());
+      }
+      try (OutputStream out = Files.newOutputStream(tempFile)) {
+        properties.store(out, null);
+      }
+      Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      throw new FtpException("Unable to save sync manifest " + file, e);
+    }
+  }
+
+  private static String format(ManifestEntry entry) {
+
+    String value = entry.getSize() + SEPARATOR + entry.getLastModified();
+    return entry.getHash() == null ? value : value + SEPARATOR + entry.getHash();
+  }
+
+  private static ManifestEntry parse(String value) {
+
+    String[] fields = value.split(SEPARATOR);
+    if (fields.length < 2) {
+      return null;
+    }
+    try {
+      return new ManifestEntry(Long.parseLong(fields[0]), Long.parseLong(fields[1]),
+          fields.length > 2 ? fields[2] : null);
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+}
@@ -0,0 +1,81 @@
+package tr.com.aa.sync;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Counts of one mirror run .
+ */
+public class SyncResult {
+
+  private final AtomicInteger added = new AtomicInteger();
+  private final AtomicInteger changed = new AtomicInteger();
+  private final AtomicInteger unchanged = new AtomicInteger();
+  private final AtomicInteger deleted = new AtomicInteger();
+  private final AtomicInteger failed = new AtomicInteger();
+
+  /**
+   * @return files that were not in the manifest and were downloaded .
+   */
+  public int getAdded() {
+
+    return added.get();
+  }
+
+  /**
+   * @return files whose size or time changed on the server and were downloaded again .
+   */
+  public int getChanged() {
+
+    return changed.get();
+  }
+
+  public int getUnchanged() {
+
+    return unchanged.get();
+  }
+
+  /**
+   * @return local copies removed because the file is gone from the server .
+   */
+  public int getDeleted() {
+
+    return deleted.get();
+  }
+
+  public int getFailed() {
+
+    return failed.get();
+  }
+
+  void onAdded() {
+
+    added.incrementAndGet();
+  }
+
+  void onChanged() {
+
+    changed.incrementAndGet();
+  }
+
+  void onUnchanged() {
+
+    unchanged.incrementAndGet();
+  }
+
+  void onDeleted() {
+
+    deleted.incrementAndGet();
+  }
+
+  void onFailed() {
+
+    failed.incrementAndGet();
+  }
+
+  @Override
+  public String toString() {
+
+    return String.format("SyncResult[added=%d, changed=%d, unchanged=%d, deleted=%d, failed=%d]",
+        getAdded(), getChanged(), getUnchanged(), getDeleted(), getFailed());
+  }
+}
@@ -0,0 +1,80 @@
+package tr.com.aa.throttle;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Bandwidth caps of one JVM: a global one, one per server and one per transfer, all in bytes per
+ * second and all {@link TokenBucket#UNLIMITED} unless set. Every change applies at once, also to
+ * the transfers that are running .
+ */
+public class BandwidthLimits {
+
+  private final TokenBucket global = new TokenBucket(TokenBucket.UNLIMITED, null);
+  private final Map<String, TokenBucket> hosts = new ConcurrentHashMap<>();
+  // buckets of the running transfers, dropped when their transfer is garbage
+  private final Set<TokenBucket> transfers =
+      Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
+  private volatile long transferRate = TokenBucket.UNLIMITED;
+
+  public void setGlobalRate(long bytesPerSecond) {
+
+    global.setRate(bytesPerSecond);
+  }
+
+  public long getGlobalRate() {
+
+    return global.getRate();
+  }
+
+  /**
+   * @param host           server name as given to the client .
+   * @param bytesPerSecond .
+   */
+  public void setHostRate(String host, long bytesPerSecond) {
+
+    host(host).setRate(bytesPerSecond);
+  }
+
+  public long getHostRate(String host) {
+
+    return host(host).getRate();
+  }
+
+  /**
+   * @param bytesPerSecond cap of every single transfer .
+   */
+  public void setTransferRate(long bytesPerSecond) {
+
+    transferRate = bytesPerSecond;
+    synchronized (transfers) {
+      transfers.forEach(bucket -> bucket.setRate(bytesPerSecond));
+    }
+  }
+
+  public long getTransferRate() {
+
+    return transferRate;
+  }
+
+  /**
+   * @param host server of the transfer .
+   * @return bucket of a new transfer, nested in the buckets of its server and of the JVM .
+   */
+  public TokenBucket newTransfer(String host) {
+
+    synchronized (transfers) {
+      TokenBucket bucket = new TokenBucket(transferRate, host(host));
+      transfers.add(bucket);
+      return bucket;
+    }
+  }
+
+  private TokenBucket host(String host) {
+
+    return hosts.computeIfAbsent(host, h -> new TokenBucket(TokenBucket.UNLIMITED, global));
+  }
+}
@@ -0,0 +1,174 @@
+package tr.com.aa.throttle;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Byte rate limit that can be nested: a transfer bucket has its server's bucket as parent, which
+ * has the global one as parent. Taking bytes reserves them in every level at once, running into
+ * debt where there are not enough tokens, and then waits once for the slowest level. A bucket
+ * without a rate costs a volatile read .
+ */
+public class TokenBucket {
+
+  /**
+   * Rate of a bucket that does not limit .
+   */
+  public static final long UNLIMITED = 0;
+  /**
+   * A bucket holds a quarter of a second of its rate, but at least one copy buffer .
+   */
+  private static final long MIN_BURST = 128 * 1024;
+  private static final int BURST_DIVISOR = 4;
+  private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+  private final TokenBucket parent;
+  private volatile long rate;
+  private double tokens;
+  private long burst;
+  private long refilledAt = System.nanoTime();
+
+  /**
+   * @param bytesPerSecond rate, {@link #UNLIMITED} for none .
+   * @param parent         enclosing bucket, null for the top level .
+   */
+  public TokenBucket(long bytesPerSecond, TokenBucket parent) {
+
+    this.parent = parent;
+    setRate(bytesPerSecond);
+    this.tokens = burst;
+  }
+
+  public long getRate() {
+
+    return rate;
+  }
+
+  /**
+   * Change the rate, also while transfers are running .
+   *
+   * @param bytesPerSecond rate, {@link #UNLIMITED} for none .
+   */
+  public synchronized void setRate(long bytesPerSecond) {
+
+    refill(System.nanoTime());
+    rate = Math.max(UNLIMITED, bytesPerSecond);
+    burst = Math.max(MIN_BURST, rate / BURST_DIVISOR);
+    tokens = Math.min(tokens, burst);
+  }
+
+  public TokenBucket getParent() {
+
+    return parent;
+  }
+
+  /**
+   * Take bytes from this bucket and all its parents, waiting until every level allows them .
+   *
+   * @param bytes .
+   * @throws InterruptedIOException if the thread is interrupted while it waits .
+   */
+  public void acquire(long bytes) throws InterruptedIOException {
+
+    long waitNanos = 0;
+    for (TokenBucket bucket = this; bucket != null; bucket = bucket.parent) {
+      waitNanos = Math.max(waitNanos, bucket.reserve(bytes));
+    }
+
+    if (waitNanos > 0) {
+      try {
+        TimeUnit.NANOSECONDS.sleep(waitNanos);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while waiting for bandwidth");
+      }
+    }
+  }
+
+  /**
+   * @return nanoseconds until the reserved bytes are covered by tokens .
+   */
+  private long reserve(long bytes) {
+
+    if (rate == UNLIMITED) {
+      return 0;
+    }
+
+    synchronized (this) {
+      // the rate may have been removed meanwhile
+      long currentRate = rate;
+      if (currentRate == UNLIMITED) {
+        return 0;
+      }
+      refill(System.nanoTime());
+      tokens -= bytes;
+      return tokens >= 0 ? 0 : (long) (-tokens * NANOS_PER_SECOND / currentRate);
+    }
+  }
+
+  private void refill(long now) {
+
+    if (rate != UNLIMITED) {
+      tokens = Math.min(burst, tokens + (double) (now - refilledAt) * rate / NANOS_PER_SECOND);
+    }
+    refilledAt = now;
+  }
+
+  /**
+   * @param in stream whose reads are paced by this bucket .
+   * @return .
+   */
+  public InputStream throttle(InputStream in) {
+
+    return new FilterInputStream(in) {
+      @Override
+      public int read() throws IOException {
+
+        int b = super.read();
+        if (b >= 0) {
+          acquire(1);
+        }
+        return b;
+      }
+
+      @Override
+      public int read(byte[] bytes, int offset, int length) throws IOException {
+
+        int read = super.read(bytes, offset, length);
+        if (read > 0) {
+          acquire(read);
+        }
+        return read;
+      }
+    };
+  }
+
+  /**
+   * @param out stream whose writes are paced by this bucket .
+   * @return .
+   */
+  public OutputStream throttle(OutputStream out) {
+
+    return new FilterOutputStream(out) {
+      @Override
+      public void write(int b) throws IOException {
+
+        acquire(1);
+        out.write(b);
+      }
+
+      @Override
+      public void write(byte[] bytes, int offset, int length) throws IOException {
+
+        // FilterOutputStream would write byte by byte
+        acquire(length);
+        out.write(bytes, offset, length);
+      }
+    };
+  }
+}
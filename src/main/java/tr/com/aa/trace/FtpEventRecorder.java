@@ -0,0 +1,48 @@
+package tr.com.aa.trace;
+
+import org.apache.commons.net.ProtocolCommandEvent;
+import org.apache.commons.net.ProtocolCommandListener;
+
+/**
+ * Publishes the commands and replies of one FTP control connection to a
+ * {@link ProtocolEventStream}. Passwords are masked the same way the commons net
+ * PrintCommandListener masks them .
+ */
+public class FtpEventRecorder implements ProtocolCommandListener {
+
+  private static final String MASKED = " *******";
+
+  private final ProtocolEventStream stream;
+  private final String host;
+  private String pendingCommand;
+  private long sentNanos;
+  private boolean answered = true;
+
+  public FtpEventRecorder(ProtocolEventStream stream, String host) {
+
+    this.stream = stream;
+    this.host = host;
+  }
+
+  @Override
+  public void protocolCommandSent(ProtocolCommandEvent event) {
+
+    String command = event.getCommand();
+    String message = event.getMessage();
+    if ("PASS".equalsIgnoreCase(command) || "ACCT".equalsIgnoreCase(command)) {
+      message = command + MASKED;
+    }
+    pendingCommand = command;
+    sentNanos = System.nanoTime();
+    answered = false;
+    stream.publish(host, false, command, 0, message, -1);
+  }
+
+  @Override
+  public void protocolReplyReceived(ProtocolCommandEvent event) {
+
+    long duration = answered ? -1 : System.nanoTime() - sentNanos;
+    answered = true;
+    stream.publish(host, true, pendingCommand, event.getReplyCode(), event.getMessage(), duration);
+  }
+}
@@ -0,0 +1,98 @@
+package tr.com.aa.trace;
+
+import java.time.Instant;
+
+/**
+ * A command sent to a server or a reply received from it, as kept by a
+ * {@link ProtocolEventStream} .
+ */
+public class ProtocolEvent {
+
+  private final long sequence;
+  private final long timestamp;
+  private final String host;
+  private final boolean reply;
+  private final String command;
+  private final int replyCode;
+  private final String message;
+  private final long durationNanos;
+
+  ProtocolEvent(long sequence, long timestamp, String host, boolean reply, String command,
+                int replyCode, String message, long durationNanos) {
+
+    this.sequence = sequence;
+    this.timestamp = timestamp;
+    this.host = host;
+    this.reply = reply;
+    this.command = command;
+    this.replyCode = replyCode;
+    this.message = message;
+    this.durationNanos = durationNanos;
+  }
+
+  /**
+   * @return position of the event in the stream, counting from 0 .
+   */
+  public long getSequence() {
+
+    return sequence;
+  }
+
+  /**
+   * @return wall clock time of the event in milliseconds .
+   */
+  public long getTimestamp() {
+
+    return timestamp;
+  }
+
+  public String getHost() {
+
+    return host;
+  }
+
+  public boolean isReply() {
+
+    return reply;
+  }
+
+  /**
+   * @return the command sent, or for a reply the command it answers, null if there was none .
+   */
+  public String getCommand() {
+
+    return command;
+  }
+
+  /**
+   * @return reply code of a reply, 0 for a command .
+   */
+  public int getReplyCode() {
+
+    return replyCode;
+  }
+
+  /**
+   * @return the line as sent or received, with passwords masked .
+   */
+  public String getMessage() {
+
+    return message;
+  }
+
+  /**
+   * @return for the first reply to a command the time since the command was sent, otherwise -1 .
+   */
+  public long getDurationNanos() {
+
+    return durationNanos;
+  }
+
+  @Override
+  public String toString() {
+
+    String line = Instant.ofEpochMilli(timestamp) + " " + host + (reply ? " < " : " > ")
+        + message.trim();
+    return durationNanos < 0 ? line : line + " (" + durationNanos / 1_000 + " us)";
+  }
+}
@@ -0,0 +1,212 @@
+package tr.com.aa.trace;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Bounded ring of the latest protocol commands and replies of the clients it is set on. Writing an
+ * event is one atomic increment and one array store: the thread that talks to the server never
+ * blocks and never does I/O. When the ring is full the oldest events are overwritten .
+ *
+ * <p>The retained events can be read at any time with {@link #snapshot()}, or logged with
+ * {@link #dump()} after an error. Subscribers get every event on a background thread that is
+ * started by the first subscription and stopped when the last one unsubscribes; a subscriber that
+ * falls more than the capacity behind skips the overwritten events, which are counted in
+ * {@link #getDroppedCount()} .
+ */
+@Slf4j
+public class ProtocolEventStream implements Closeable {
+
+  public static final int DEFAULT_CAPACITY = 4096;
+  private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+
+  private final int capacity;
+  private final AtomicReferenceArray<ProtocolEvent> ring;
+  private final AtomicLong published = new AtomicLong();
+  private final LongAdder dropped = new LongAdder();
+  private final List<Consumer<ProtocolEvent>> subscribers = new CopyOnWriteArrayList<>();
+  private volatile Thread dispatcher;
+  private volatile boolean closed;
+
+  public ProtocolEventStream() {
+
+    this(DEFAULT_CAPACITY);
+  }
+
+  /**
+   * @param capacity number of events kept .
+   */
+  public ProtocolEventStream(int capacity) {
+
+    if (capacity < 1) {
+      throw new IllegalArgumentException("capacity must be at least 1");
+    }
+    this.capacity = capacity;
+    this.ring = new AtomicReferenceArray<>(capacity);
+  }
+
+  /**
+   * @param host          server of the event .
+   * @param reply         true for a reply, false for a command .
+   * @param command       the command, or the command a reply answers .
+   * @param replyCode     reply code, 0 for a command .
+   * @param message       the line sent or received .
+   * @param durationNanos time since the command for its first reply, -1 otherwise .
+   */
+  public void publish(String host, boolean reply, String command, int replyCode, String message,
+                      long durationNanos) {
+
+    if (closed) {
+      return;
+    }
+    long sequence = published.getAndIncrement();
+    ring.set(index(sequence), new ProtocolEvent(sequence, System.currentTimeMillis(), host, reply,
+        command, replyCode, message, durationNanos));
+    Thread thread = dispatcher;
+    if (thread != null) {
+      LockSupport.unpark(thread);
+    }
+  }
+
+  /**
+   * @return the retained events, oldest first .
+   */
+  public List<ProtocolEvent> snapshot() {
+
+    long end = published.get();
+    List<ProtocolEvent> events = new ArrayList<>((int) Math.min(end, capacity));
+    for (long sequence = Math.max(0, end - capacity); sequence < end; sequence++) {
+      ProtocolEvent event = ring.get(index(sequence));
+      // a slot may already hold a newer event, or not yet the one of its sequence
+      if (event != null && event.getSequence() == sequence) {
+        events.add(event);
+      }
+    }
+    return events;
+  }
+
+  /**
+   * Log the retained events, e.g. after a transfer failed .
+   */
+  public void dump() {
+
+    List<ProtocolEvent> events = snapshot();
+    log.warn("Last {} protocol events:", events.size());
+    for (ProtocolEvent event : events) {
+      log.warn("  {}", event);
+    }
+  }
+
+  /**
+   * @param subscriber receives every event published from now on, on the dispatcher thread .
+   */
+  public synchronized void subscribe(Consumer<ProtocolEvent> subscriber) {
+
+    subscribers.add(subscriber);
+    startDispatcher();
+  }
+
+  /**
+   * @param subscriber stops receiving events, the dispatcher thread ends with the last one .
+   */
+  public synchronized void unsubscribe(Consumer<ProtocolEvent> subscriber) {
+
+    subscribers.remove(subscriber);
+    if (subscribers.isEmpty()) {
+      stopDispatcher();
+    }
+  }
+
+  /**
+   * @return events subscribers missed because they were overwritten first .
+   */
+  public long getDroppedCount() {
+
+    return dropped.sum();
+  }
+
+  public long getPublishedCount() {
+
+    return published.get();
+  }
+
+  @Override
+  public synchronized void close() {
+
+    closed = true;
+    stopDispatcher();
+  }
+
+  private void stopDispatcher() {
+
+    Thread thread = dispatcher;
+    dispatcher = null;
+    if (thread != null) {
+      LockSupport.unpark(thread);
+    }
+  }
+
+  private void startDispatcher() {
+
+    if (dispatcher != null || closed) {
+      return;
+    }
+    Thread thread = new Thread(this::dispatch, "protocol-event-stream");
+    thread.setDaemon(true);
+    dispatcher = thread;
+    thread.start();
+  }
+
+  private void dispatch() {
+
+    long cursor = published.get();
+
+    // a replaced or stopped dispatcher ends, a later subscription starts a new one
+    while (!closed && dispatcher == Thread.currentThread()) {
+      long end = published.get();
+      if (cursor == end) {
+        LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+        continue;
+      }
+      if (end - cursor > capacity) {
+        dropped.add(end - capacity - cursor);
+        cursor = end - capacity;
+      }
+
+      ProtocolEvent event = ring.get(index(cursor));
+      if (event == null || event.getSequence() < cursor) {
+        // the publisher took the sequence but has not stored the event yet
+        Thread.onSpinWait();
+        continue;
+      }
+      if (event.getSequence() > cursor) {
+        dropped.increment();
+        cursor++;
+        continue;
+      }
+
+      for (Consumer<ProtocolEvent> subscriber : subscribers) {
+        try {
+          subscriber.accept(event);
+        } catch (RuntimeException e) {
+          log.warn("Protocol event subscriber failed", e);
+        }
+      }
+      cursor++;
+    }
+  }
+
+  private int index(long sequence) {
+
+    return (int) (sequence % capacity);
+  }
+}
@@ -0,0 +1,246 @@
+package tr.com.aa.transfer;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
+import lombok.extern.slf4j.Slf4j;
+import tr.com.aa.connection.AaFtpFile;
+import tr.com.aa.connection.Connection;
+import tr.com.aa.exception.FtpException;
+import tr.com.aa.metrics.HostMetrics;
+import tr.com.aa.pool.ConnectionKey;
+import tr.com.aa.pool.ConnectionPool;
+
+/**
+ * Downloads a remote directory tree over several pooled connections at once. Every directory
+ * listing and every file download is a separate task of a work-stealing {@link ForkJoinPool}, so an
+ * idle worker picks up files or sub-directories queued by a busy one. A task holds a connection
+ * only while it talks to the server .
+ *
+ * <p>Files are downloaded with {@link Connection#downloadFile(String, String, String, boolean,
+ * boolean)}, so size/timestamp comparison and resume behave exactly as in the sequential
+ * {@link Connection#downloadDirectory(String, String, boolean, boolean)}.
+ *
+ * <p>With a journal file set, listings and finished downloads are recorded in a
+ * {@link TransferJournal}. A run that dies halfway is restarted with the same journal file: the
+ * recorded directories are not listed again, finished files are skipped without asking the server,
+ * and partial ones resume from the local offset. The journal is removed once a run succeeds .
+ */
+@Slf4j
+public class ParallelDirectoryDownloader {
+
+  private static final String DOWNLOAD_FAILURE_MESSAGE =
+      "%d of the entries under %s could not be downloaded";
+
+  private final ConnectionPool connectionPool;
+  private final ConnectionKey connectionKey;
+  private final int parallelism;
+  private Path journalFile;
+
+  /**
+   * @param connectionPool pool the connections are borrowed from .
+   * @param connectionKey  host, port, user and protocol of the server .
+   * @param parallelism    number of connections used at the same time .
+   */
+  public ParallelDirectoryDownloader(ConnectionPool connectionPool, ConnectionKey connectionKey,
+                                     int parallelism) {
+
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("parallelism must be at least 1");
+    }
+    this.connectionPool = connectionPool;
+    this.connectionKey = connectionKey;
+    this.parallelism = parallelism;
+  }
+
+  /**
+   * @param journalFile journal that makes the next download restartable, null (the default) for
+   *                    none .
+   */
+  public void setJournalFile(Path journalFile) {
+
+    this.journalFile = journalFile;
+  }
+
+  public void downloadDirectory(String remoteDirectoryPath, String localDirectoryPath) {
+
+    downloadDirectory(remoteDirectoryPath, localDirectoryPath, false, false);
+  }
+
+  /**
+   * @param remoteDirectoryPath path of remote directory will be downloaded .
+   * @param localDirectoryPath  path of local directory will be saved .
+   * @param compareTime         compare timestamps of same sized files .
+   * @param logProcess          log Whether to show download progress in .
+   * @throws FtpException if any entry could not be downloaded, after all others are done .
+   */
+  public void downloadDirectory(String remoteDirectoryPath, String localDirectoryPath,
+                                boolean compareTime, boolean logProcess) throws FtpException {
+
+    Queue<RuntimeException> failures = new ConcurrentLinkedQueue<>();
+    ForkJoinPool workers = new ForkJoinPool(parallelism);
+    TransferJournal journal = journalFile == null ? null : TransferJournal.open(journalFile);
+    LongAdder downloaded = new LongAdder();
+    long started = System.nanoTime();
+
+    try {
+      workers.invoke(new DirectoryTask(remoteDirectoryPath, localDirectoryPath, compareTime,
+          logProcess, journal, failures, downloaded));
+    } finally {
+      workers.shutdown();
+      if (connectionPool.getClientMetrics() != null) {
+        connectionPool.getClientMetrics().forKey(connectionKey)
+            .recordFiles(HostMetrics.DOWNLOAD, downloaded.sum(), System.nanoTime() - started);
+      }
+      if (journal != null && failures.isEmpty()) {
+        journal.delete();
+      } else if (journal != null) {
+        journal.close();
+      }
+    }
+
+    if (!failures.isEmpty()) {
+      FtpException exception = new FtpException(
+          String.format(DOWNLOAD_FAILURE_MESSAGE, failures.size(), remoteDirectoryPath),
+          failures.peek());
+      failures.forEach(exception::addSuppressed);
+      throw exception;
+    }
+  }
+
+  private class DirectoryTask extends RecursiveAction {
+
+    private final String remoteDirectoryPath;
+    private final String localDirectoryPath;
+    private final boolean compareTime;
+    private final boolean logProcess;
+    private final TransferJournal journal;
+    private final Queue<RuntimeException> failures;
+    private final LongAdder downloaded;
+
+    DirectoryTask(String remoteDirectoryPath, String localDirectoryPath, boolean compareTime,
+                  boolean logProcess, TransferJournal journal,
+                  Queue<RuntimeException> failures, LongAdder downloaded) {
+
+      this.remoteDirectoryPath = remoteDirectoryPath;
+      this.localDirectoryPath = localDirectoryPath;
+      this.compareTime = compareTime;
+      this.logProcess = logProcess;
+      this.journal = journal;
+      this.failures = failures;
+      this.downloaded = downloaded;
+    }
+
+    @Override
+    protected void compute() {
+
+      List<AaFtpFile> subFiles = journal == null ? null : journal.getListing(remoteDirectoryPath);
+
+      try {
+        if (subFiles == null) {
+          subFiles = connectionPool.execute(
+              connectionKey, connection -> connection.listFiles(remoteDirectoryPath));
+          if (journal != null) {
+            journal.listed(remoteDirectoryPath, subFiles);
+          }
+        }
+      } catch (RuntimeException e) {
+        log.warn("Unable to list {}", remoteDirectoryPath, e);
+        failures.add(e);
+        return;
+      }
+
+      List<RecursiveAction> tasks = new ArrayList<>();
+
+      for (AaFtpFile subFile : subFiles) {
+        if (subFile.getName().equals(".") || subFile.getName().equals("..")) {
+          // skip parent directory and the directory itself
+          continue;
+        }
+
+        if (subFile.isDirectory()) {
+          tasks.add(new DirectoryTask(subFile.getAbsolutePath(),
+              localDirectoryPath + File.separator + subFile.getName(), compareTime, logProcess,
+              journal, failures, downloaded));
+        } else if (journal != null && journal.isCompleted(subFile.getAbsolutePath())) {
+          log.debug("Skipping {}, completed in an earlier run", subFile.getAbsolutePath());
+        } else {
+          tasks.add(new FileTask(subFile, new File(localDirectoryPath, subFile.getName()),
+              compareTime, logProcess, journal, failures, downloaded));
+        }
+      }
+
+      invokeAll(tasks);
+    }
+  }
+
+  private class FileTask extends RecursiveAction {
+
+    private final String remoteFilePath;
+    private final long remoteSize;
+    private final File localFile;
+    private final boolean compareTime;
+    private final boolean logProcess;
+    private final TransferJournal journal;
+    private final Queue<RuntimeException> failures;
+    private final LongAdder downloaded;
+
+    FileTask(AaFtpFile remoteFile, File localFile, boolean compareTime, boolean logProcess,
+             TransferJournal journal, Queue<RuntimeException> failures, LongAdder downloaded) {
+
+      this.remoteFilePath = remoteFile.getAbsolutePath();
+      this.remoteSize = remoteFile.getSize();
+      this.localFile = localFile;
+      this.compareTime = compareTime;
+      this.logProcess = logProcess;
+      this.journal = journal;
+      this.failures = failures;
+      this.downloaded = downloaded;
+    }
+
+    @Override
+    protected void compute() {
+
+      if (journal != null) {
+        long offset = localFile.length();
+        if (journal.getOffset(remoteFilePath) >= 0 && offset > 0) {
+          log.info("Resuming {} from offset {}", remoteFilePath, offset);
+        }
+        journal.started(remoteFilePath, offset);
+      }
+
+      try {
+        connectionPool.execute(connectionKey, connection -> {
+          // downloadFile resumes a partial local file from its size itself, with REST over FTP
+          // and RESUME over SFTP
+          connection.downloadFile(
+              remoteFilePath, localFile.getParent(), null, compareTime, logProcess);
+          return null;
+        });
+        // only a complete copy may be journaled as done, a restart would skip it otherwise
+        if (localFile.length() != remoteSize) {
+          throw new FtpException(String.format("%s has %d B after the download, not %d B",
+              localFile, localFile.length(), remoteSize));
+        }
+      } catch (RuntimeException e) {
+        log.warn("Unable to download {}", remoteFilePath, e);
+        failures.add(e);
+        if (journal != null) {
+          journal.failed(remoteFilePath, localFile.length());
+        }
+        return;
+      }
+
+      downloaded.increment();
+      if (journal != null) {
+        journal.completed(remoteFilePath);
+      }
+    }
+  }
+}
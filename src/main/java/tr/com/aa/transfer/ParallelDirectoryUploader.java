@@ -0,0 +1,227 @@
+package tr.com.aa.transfer;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+import lombok.extern.slf4j.Slf4j;
+import tr.com.aa.exception.FtpException;
+import tr.com.aa.metrics.HostMetrics;
+import tr.com.aa.pool.ConnectionKey;
+import tr.com.aa.pool.ConnectionPool;
+import tr.com.aa.util.RemotePaths;
+
+/**
+ * Uploads a local directory tree over several pooled connections at once. The local tree is
+ * scanned a single time, the missing remote directories are created top-down on one connection, and
+ * then the files are pushed largest first so that a single huge file does not end the job alone .
+ *
+ * <p>With a journal file set, every finished file is recorded in a {@link TransferJournal}; a run
+ * restarted with the same journal skips those files without asking the server, the others resume
+ * from the size already on the server. The journal is removed once a run succeeds .
+ */
+@Slf4j
+public class ParallelDirectoryUploader {
+
+  private static final String UPLOAD_FAILURE_MESSAGE =
+      "%d of the files under %s could not be uploaded";
+  private static final String FILE_SEPARATOR = "/";
+
+  private final ConnectionPool connectionPool;
+  private final ConnectionKey connectionKey;
+  private final int parallelism;
+  private Path journalFile;
+
+  /**
+   * @param connectionPool pool the connections are borrowed from .
+   * @param connectionKey  host, port, user and protocol of the server .
+   * @param parallelism    number of connections used at the same time .
+   */
+  public ParallelDirectoryUploader(ConnectionPool connectionPool, ConnectionKey connectionKey,
+                                   int parallelism) {
+
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("parallelism must be at least 1");
+    }
+    this.connectionPool = connectionPool;
+    this.connectionKey = connectionKey;
+    this.parallelism = parallelism;
+  }
+
+  /**
+   * @param journalFile journal that makes the next upload restartable, null (the default) for
+   *                    none .
+   */
+  public void setJournalFile(Path journalFile) {
+
+    this.journalFile = journalFile;
+  }
+
+  /**
+   * @param localDirectoryPath  Path of the local directory being uploaded .
+   * @param remoteDirectoryPath Path of the directory on the server .
+   * @param logProcess          log .
+   * @throws FtpException if any file could not be uploaded, after all others are done .
+   */
+  public void uploadDirectory(String localDirectoryPath, String remoteDirectoryPath,
+                              boolean logProcess) throws FtpException {
+
+    Path localRoot = Paths.get(localDirectoryPath);
+    String remoteRoot = trimTrailingSeparator(remoteDirectoryPath);
+
+    Set<String> remoteDirectories = new LinkedHashSet<>();
+    List<UploadItem> items = new ArrayList<>();
+
+    log.info("Listing directory: " + localDirectoryPath);
+    try (Stream<Path> paths = Files.walk(localRoot)) {
+      paths.forEach(path -> {
+        if (Files.isDirectory(path)) {
+          remoteDirectories.add(toRemotePath(localRoot, path, remoteRoot));
+        } else if (Files.isRegularFile(path)) {
+          items.add(new UploadItem(path, toRemotePath(localRoot, path.getParent(), remoteRoot)));
+        }
+      });
+    } catch (IOException e) {
+      throw new FtpException("Unable to list local directory " + localDirectoryPath, e);
+    }
+
+    // one batch for the whole tree, only the missing directories are created
+    connectionPool.execute(connectionKey, connection -> {
+      connection.ensureDirectories(remoteDirectories);
+      return null;
+    });
+
+    TransferJournal journal = journalFile == null ? null : TransferJournal.open(journalFile);
+    if (journal != null) {
+      items.removeIf(item -> journal.isCompleted(item.getLocalPath().toString()));
+    }
+
+    items.sort(Comparator.comparingLong(UploadItem::getSize).reversed());
+    log.info("Uploading {} files in {} directories with {} connections", items.size(),
+        remoteDirectories.size(), parallelism);
+
+    List<RuntimeException> failures;
+    long started = System.nanoTime();
+    try {
+      failures = upload(items, journal, logProcess);
+      if (connectionPool.getClientMetrics() != null) {
+        connectionPool.getClientMetrics().forKey(connectionKey).recordFiles(HostMetrics.UPLOAD,
+            items.size() - failures.size(), System.nanoTime() - started);
+      }
+    } finally {
+      if (journal != null) {
+        journal.close();
+      }
+    }
+
+    if (!failures.isEmpty()) {
+      FtpException exception = new FtpException(
+          String.format(UPLOAD_FAILURE_MESSAGE, failures.size(), localDirectoryPath),
+          failures.get(0));
+      failures.forEach(exception::addSuppressed);
+      throw exception;
+    }
+
+    if (journal != null) {
+      journal.delete();
+    }
+    log.info("upload local Directory " + localDirectoryPath + " succeed.");
+  }
+
+  private List<RuntimeException> upload(List<UploadItem> items, TransferJournal journal,
+                                        boolean logProcess) {
+
+    ExecutorService workers = Executors.newFixedThreadPool(parallelism);
+    List<Future<?>> futures = new ArrayList<>(items.size());
+    List<RuntimeException> failures = new ArrayList<>();
+
+    try {
+      // a fixed pool takes queued tasks in submission order, which keeps largest-first ordering
+      for (UploadItem item : items) {
+        futures.add(workers.submit(() -> connectionPool.execute(connectionKey, connection -> {
+          connection.uploadFile(item.getLocalPath().toString(), item.getRemoteDirectoryPath(),
+              logProcess);
+          if (journal != null) {
+            journal.completed(item.getLocalPath().toString());
+          }
+          return null;
+        })));
+      }
+
+      for (int i = 0; i < futures.size(); i++) {
+        try {
+          futures.get(i).get();
+        } catch (ExecutionException e) {
+          log.warn("Unable to upload {}", items.get(i).getLocalPath(), e.getCause());
+          failures.add(e.getCause() instanceof RuntimeException
+              ? (RuntimeException) e.getCause() : new FtpException(e.getMessage(), e));
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new FtpException("Upload was interrupted.", e);
+    } finally {
+      workers.shutdownNow();
+    }
+
+    return failures;
+  }
+
+  private static String toRemotePath(Path localRoot, Path localDirectory, String remoteRoot) {
+
+    String remotePath = remoteRoot;
+    for (Path segment : localRoot.relativize(localDirectory)) {
+      if (!segment.toString().isEmpty()) {
+        remotePath = RemotePaths.child(remotePath, segment.toString());
+      }
+    }
+    return remotePath;
+  }
+
+  private static String trimTrailingSeparator(String remotePath) {
+
+    if (remotePath.length() > 1 && remotePath.endsWith(FILE_SEPARATOR)) {
+      return remotePath.substring(0, remotePath.length() - 1);
+    }
+    return remotePath;
+  }
+
+  private static class UploadItem {
+
+    private final Path localPath;
+    private final String remoteDirectoryPath;
+    private final long size;
+
+    UploadItem(Path localPath, String remoteDirectoryPath) {
+
+      this.localPath = localPath;
+      this.remoteDirectoryPath = remoteDirectoryPath;
+      this.size = localPath.toFile().length();
+    }
+
+    Path getLocalPath() {
+
+      return localPath;
+    }
+
+    String getRemoteDirectoryPath() {
+
+      return remoteDirectoryPath;
+    }
+
+    long getSize() {
+
+      return size;
+    }
+  }
+}
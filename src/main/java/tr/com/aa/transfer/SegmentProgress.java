@@ -0,0 +1,133 @@
+package tr.com.aa.transfer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLongArray;
+import lombok.extern.slf4j.Slf4j;
+import tr.com.aa.connection.Segment;
+import tr.com.aa.exception.FtpException;
+
+/**
+ * Remembers how many bytes of every segment of a segmented download reached the local file. The
+ * counters are kept in a small properties file next to the target so that an interrupted download
+ * continues each segment where it stopped .
+ */
+@Slf4j
+class SegmentProgress {
+
+  private static final String SIZE = "size";
+  private static final String SEGMENTS = "segments";
+  private static final String DONE = ".done";
+  private static final long SAVE_INTERVAL = 8L * 1024 * 1024;
+
+  private final Path stateFile;
+  private final long size;
+  private final List<Segment> segments;
+  private final AtomicLongArray done;
+  private final AtomicLongArray saved;
+
+  private SegmentProgress(Path stateFile, long size, List<Segment> segments) {
+
+    this.stateFile = stateFile;
+    this.size = size;
+    this.segments = segments;
+    this.done = new AtomicLongArray(segments.size());
+    this.saved = new AtomicLongArray(segments.size());
+  }
+
+  /**
+   * Load the progress of a previous attempt, or start a new plan when there is none or when the
+   * remote size has changed since .
+   */
+  static SegmentProgress open(Path targetFile, long size, int count, long minSegmentSize) {
+
+    Path stateFile = targetFile.resolveSibling(targetFile.getFileName() + ".segments");
+
+    if (Files.exists(stateFile) && Files.exists(targetFile)) {
+      Properties properties = new Properties();
+      try (InputStream in = Files.newInputStream(stateFile)) {
+        properties.load(in);
+        if (Long.parseLong(properties.getProperty(SIZE, "-1")) == size) {
+          int segmentCount = Integer.parseInt(properties.getProperty(SEGMENTS));
+          SegmentProgress progress = new SegmentProgress(stateFile, size,
+              Segment.split(size, segmentCount, 0));
+          for (int i = 0; i < segmentCount; i++) {
+            long bytes = Long.parseLong(properties.getProperty(i + DONE, "0"));
+            progress.done.set(i, bytes);
+            progress.saved.set(i, bytes);
+          }
+          log.info("Resuming segmented download of {} from {}", targetFile, stateFile);
+          return progress;
+        }
+      } catch (IOException | RuntimeException e) {
+        log.warn("Ignoring unreadable segment state {}", stateFile, e);
+      }
+    }
+
+    return new SegmentProgress(stateFile, size, Segment.split(size, count, minSegmentSize));
+  }
+
+  List<Segment> getSegments() {
+
+    return segments;
+  }
+
+  long getDone(Segment segment) {
+
+    return done.get(segment.getIndex());
+  }
+
+  /**
+   * Record the bytes written for a segment, saving the state every few megabytes .
+   */
+  void update(Segment segment, long bytes) {
+
+    int index = segment.getIndex();
+    done.set(index, bytes);
+
+    if (bytes - saved.get(index) >= SAVE_INTERVAL) {
+      save();
+    }
+  }
+
+  synchronized void save() {
+
+    Properties properties = new Properties();
+    properties.setProperty(SIZE, Long.toString(size));
+    properties.setProperty(SEGMENTS, Integer.toString(segments.size()));
+    for (int i = 0; i < segments.size(); i++) {
+      long bytes = done.get(i);
+      properties.setProperty(i + DONE, Long.toString(bytes));
+      saved.set(i, bytes);
+    }
+
+    Path tempFile = stateFile.resolveSibling(stateFile.getFileName() + ".tmp");
+    try (OutputStream out = Files.newOutputStream(tempFile)) {
+      properties.store(out, null);
+    } catch (IOException e) {
+      throw new FtpException("Unable to save segment state " + stateFile, e);
+    }
+
+    try {
+      Files.move(tempFile, stateFile, StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      throw new FtpException("Unable to save segment state " + stateFile, e);
+    }
+  }
+
+  void delete() {
+
+    try {
+      Files.deleteIfExists(stateFile);
+    } catch (IOException e) {
+      log.warn("Unable to delete segment state {}", stateFile, e);
+    }
+  }
+}
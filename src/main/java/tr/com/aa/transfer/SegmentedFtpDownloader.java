@@ -0,0 +1,144 @@
+package tr.com.aa.transfer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.FilenameUtils;
+import tr.com.aa.client.ClientFactory.Protocol;
+import tr.com.aa.connection.FtpConnection;
+import tr.com.aa.connection.Segment;
+import tr.com.aa.connection.SegmentRunner;
+import tr.com.aa.exception.FtpException;
+import tr.com.aa.pool.ConnectionKey;
+import tr.com.aa.pool.ConnectionPool;
+import tr.com.aa.util.MyDateUtils;
+
+/**
+ * Downloads one large file over several FTP data connections at once. The file is split into
+ * ranges, each range is fetched on its own pooled connection starting with REST at its offset and
+ * written into its place in a preallocated local file. Progress of every range is saved next to the
+ * local file, so a failed or interrupted download resumes each range where it stopped .
+ */
+@Slf4j
+public class SegmentedFtpDownloader {
+
+  /**
+   * Ranges smaller than this are not worth an extra connection .
+   */
+  public static final long DEFAULT_MIN_SEGMENT_SIZE = 16L * 1024 * 1024;
+
+  private final ConnectionPool connectionPool;
+  private final ConnectionKey connectionKey;
+  private final int segments;
+  private long minSegmentSize = DEFAULT_MIN_SEGMENT_SIZE;
+
+  /**
+   * @param connectionPool pool the connections are borrowed from .
+   * @param connectionKey  an FTP or FTPS server .
+   * @param segments       maximum number of ranges downloaded at the same time .
+   */
+  public SegmentedFtpDownloader(ConnectionPool connectionPool, ConnectionKey connectionKey,
+                                int segments) {
+
+    if (connectionKey.getProtocol() == Protocol.SFTP) {
+      throw new IllegalArgumentException("Segmented download over REST needs an FTP server");
+    }
+    if (segments < 1) {
+      throw new IllegalArgumentException("segments must be at least 1");
+    }
+    this.connectionPool = connectionPool;
+    this.connectionKey = connectionKey;
+    this.segments = segments;
+  }
+
+  public void setMinSegmentSize(long minSegmentSize) {
+
+    this.minSegmentSize = minSegmentSize;
+  }
+
+  public void downloadFile(String remoteFilePath, String localDirectoryPath) throws FtpException {
+
+    downloadFile(remoteFilePath, localDirectoryPath, null);
+  }
+
+  /**
+   * @param remoteFilePath     path of the file on the server .
+   * @param localDirectoryPath path of directory where the file will be stored .
+   * @param localFileName      null To keep the original file name unchanged .
+   * @throws FtpException if any range could not be downloaded .
+   */
+  public void downloadFile(String remoteFilePath, String localDirectoryPath, String localFileName)
+      throws FtpException {
+
+    Path localFile = Paths.get(localDirectoryPath, localFileName == null
+        ? FilenameUtils.getName(remoteFilePath) : localFileName);
+    localFile.getParent().toFile().mkdirs();
+
+    long remoteSize = connectionPool.execute(connectionKey,
+        connection -> ((FtpConnection) connection).getFileSize(remoteFilePath));
+
+    SegmentProgress progress = SegmentProgress.open(localFile, remoteSize, segments,
+        minSegmentSize);
+    preallocate(localFile, remoteSize);
+    progress.save();
+
+    log.info("Downloading {} ({} B) to {} in {} segments", remoteFilePath, remoteSize, localFile,
+        progress.getSegments().size());
+
+    try (FileChannel target = FileChannel.open(localFile, StandardOpenOption.WRITE)) {
+      download(remoteFilePath, target, progress);
+    } catch (IOException e) {
+      throw new FtpException("Unable to write to local file " + localFile, e);
+    }
+
+    progress.delete();
+
+    File file = localFile.toFile();
+    file.setLastModified(MyDateUtils.asLong(connectionPool.execute(connectionKey,
+        connection -> ((FtpConnection) connection).getModificationTime(remoteFilePath))));
+    log.info("Download completed {} <--> {}B...", file.getAbsolutePath(), file.length());
+  }
+
+  private void download(String remoteFilePath, FileChannel target, SegmentProgress progress) {
+
+    try {
+      SegmentRunner.run(remoteFilePath, progress.getSegments(),
+          segment -> downloadSegment(remoteFilePath, target, segment, progress));
+    } finally {
+      progress.save();
+    }
+  }
+
+  private void downloadSegment(String remoteFilePath, FileChannel target, Segment segment,
+                               SegmentProgress progress) {
+
+    long done = progress.getDone(segment);
+    long remaining = segment.getLength() - done;
+
+    if (remaining <= 0) {
+      log.debug("{} of {} is already complete", segment, remoteFilePath);
+      return;
+    }
+
+    log.debug("Downloading {} of {} from byte {}", segment, remoteFilePath, done);
+    connectionPool.execute(connectionKey, connection -> ((FtpConnection) connection)
+        .downloadRange(remoteFilePath, target, segment.getOffset() + done, remaining,
+            bytes -> progress.update(segment, done + bytes)));
+  }
+
+  private static void preallocate(Path localFile, long size) {
+
+    try (RandomAccessFile file = new RandomAccessFile(localFile.toFile(), "rw")) {
+      if (file.length() != size) {
+        file.setLength(size);
+      }
+    } catch (IOException e) {
+      throw new FtpException("Unable to allocate local file " + localFile, e);
+    }
+  }
+}
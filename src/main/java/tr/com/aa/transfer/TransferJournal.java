@@ -0,0 +1,261 @@
+package tr.com.aa.transfer;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.extern.slf4j.Slf4j;
+import tr.com.aa.connection.AaFtpFile;
+import tr.com.aa.exception.FtpException;
+import tr.com.aa.util.MyDateUtils;
+
+/**
+ * Append-only record of a directory transfer job, so that a job restarted after a crash picks up
+ * where the previous run stopped. The journal remembers which directories were already listed
+ * (with their entries), which transfers were started at which local offset, and which ones
+ * completed. A restarted job uses the recorded listings instead of asking the server and skips
+ * completed transfers without any round trip .
+ *
+ * <p>Every record is one tab separated line written straight to the file, so everything recorded
+ * before the JVM died is there on restart. A torn last line is ignored .
+ */
+@Slf4j
+public class TransferJournal implements Closeable {
+
+  private static final String ENTRY = "E";
+  private static final String LISTED = "L";
+  private static final String STARTED = "S";
+  private static final String DONE = "D";
+  private static final String FAILED = "F";
+  private static final String DIRECTORY = "d";
+  private static final String FILE = "f";
+  private static final char FIELD_SEPARATOR = '\t';
+
+  private final Path file;
+  private final Map<String, List<AaFtpFile>> listings = new ConcurrentHashMap<>();
+  private final Map<String, Long> offsets = new ConcurrentHashMap<>();
+  private final Set<String> completed = ConcurrentHashMap.newKeySet();
+  private OutputStream out;
+
+  private TransferJournal(Path file) {
+
+    this.file = file;
+  }
+
+  /**
+   * Replay an existing journal, or start a new one .
+   *
+   * @param file .
+   * @return .
+   * @throws FtpException if the journal can not be read or written .
+   */
+  public static TransferJournal open(Path file) throws FtpException {
+
+    TransferJournal journal = new TransferJournal(file);
+
+    try {
+      if (Files.exists(file)) {
+        journal.replay();
+      } else if (file.getParent() != null) {
+        Files.createDirectories(file.getParent());
+      }
+      journal.out = Files.newOutputStream(file, StandardOpenOption.CREATE,
+          StandardOpenOption.APPEND);
+    } catch (IOException e) {
+      throw new FtpException("Unable to open transfer journal " + file, e);
+    }
+
+    return journal;
+  }
+
+  /**
+   * @param remoteDirectoryPath .
+   * @return the entries recorded when the directory was listed, null if it was not listed yet .
+   */
+  public List<AaFtpFile> getListing(String remoteDirectoryPath) {
+
+    return listings.get(remoteDirectoryPath);
+  }
+
+  /**
+   * @param path key of the transfer .
+   * @return true if the transfer completed in this or an earlier run .
+   */
+  public boolean isCompleted(String path) {
+
+    return completed.contains(path);
+  }
+
+  /**
+   * @param path key of the transfer .
+   * @return local offset recorded when the transfer last started or failed, -1 if never started .
+   */
+  public long getOffset(String path) {
+
+    return offsets.getOrDefault(path, -1L);
+  }
+
+  /**
+   * @return number of completed transfers recorded .
+   */
+  public int getCompletedCount() {
+
+    return completed.size();
+  }
+
+  public synchronized void listed(String remoteDirectoryPath, List<AaFtpFile> entries) {
+
+    for (AaFtpFile entry : entries) {
+      append(ENTRY, remoteDirectoryPath, entry.isDirectory() ? DIRECTORY : FILE,
+          Long.toString(entry.getSize()),
+          Long.toString(MyDateUtils.asLong(entry.getLastModified())), entry.getAbsolutePath(),
+          entry.getName());
+    }
+    append(LISTED, remoteDirectoryPath);
+    listings.put(remoteDirectoryPath, Collections.unmodifiableList(new ArrayList<>(entries)));
+  }
+
+  public synchronized void started(String path, long offset) {
+
+    append(STARTED, path, Long.toString(offset));
+    offsets.put(path, offset);
+  }
+
+  public synchronized void completed(String path) {
+
+    append(DONE, path);
+    completed.add(path);
+  }
+
+  public synchronized void failed(String path, long offset) {
+
+    append(FAILED, path, Long.toString(offset));
+    offsets.put(path, offset);
+  }
+
+  /**
+   * Close and remove the journal once the job has finished without failures .
+   */
+  public synchronized void delete() {
+
+    close();
+    try {
+      Files.deleteIfExists(file);
+    } catch (IOException e) {
+      log.warn("Unable to delete transfer journal {}", file, e);
+    }
+  }
+
+  @Override
+  public synchronized void close() {
+
+    if (out == null) {
+      return;
+    }
+    try {
+      out.close();
+    } catch (IOException e) {
+      log.warn("Unable to close transfer journal {}", file, e);
+    }
+    out = null;
+  }
+
+  private void append(String type, String... fields) {
+
+    if (out == null) {
+      throw new FtpException("Transfer journal " + file + " is closed.");
+    }
+
+    StringBuilder line = new StringBuilder(type);
+    for (String field : fields) {
+      line.append(FIELD_SEPARATOR).append(escape(field));
+    }
+    line.append('\n');
+
+    try {
+      out.write(line.toString().getBytes(StandardCharsets.UTF_8));
+    } catch (IOException e) {
+      throw new FtpException("Unable to write transfer journal " + file, e);
+    }
+  }
+
+  private void replay() throws IOException {
+
+    Map<String, List<AaFtpFile>> pending = new ConcurrentHashMap<>();
+    int records = 0;
+
+    try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        String[] fields = line.split(String.valueOf(FIELD_SEPARATOR), -1);
+        for (int i = 0; i < fields.length; i++) {
+          fields[i] = unescape(fields[i]);
+        }
+        try {
+          replay(fields, pending);
+          records++;
+        } catch (RuntimeException e) {
+          log.warn("Ignoring unreadable journal record '{}'", line);
+        }
+      }
+    }
+
+    log.info("Replayed {} records of transfer journal {}: {} directories listed, {} completed",
+        records, file, listings.size(), completed.size());
+  }
+
+  private void replay(String[] fields, Map<String, List<AaFtpFile>> pending) {
+
+    switch (fields[0]) {
+      case ENTRY:
+        pending.computeIfAbsent(fields[1], key -> new ArrayList<>()).add(new AaFtpFile(fields[6],
+            Long.parseLong(fields[3]), fields[5], Long.parseLong(fields[4]),
+            DIRECTORY.equals(fields[2])));
+        break;
+      case LISTED:
+        List<AaFtpFile> entries = pending.remove(fields[1]);
+        listings.put(fields[1], entries == null
+            ? Collections.emptyList() : Collections.unmodifiableList(entries));
+        break;
+      case STARTED:
+      case FAILED:
+        offsets.put(fields[1], Long.parseLong(fields[2]));
+        break;
+      case DONE:
+        completed.add(fields[1]);
+        break;
+      default:
+        throw new IllegalArgumentException(fields[0]);
+    }
+  }
+
+  private static String escape(String field) {
+
+    return field.replace("\\", "\\\\").replace("\t", "\\t").replace("\n", "\\n");
+  }
+
+  private static String unescape(String field) {
+
+    StringBuilder value = new StringBuilder(field.length());
+    for (int i = 0; i < field.length(); i++) {
+      char c = field.charAt(i);
+      if (c == '\\' && i + 1 < field.length()) {
+        char next = field.charAt(++i);
+        value.append(next == 't' ? '\t' : next == 'n' ? '\n' : next);
+      } else {
+        value.append(c);
+      }
+    }
+    return value.toString();
+  }
+}
@@ -0,0 +1,189 @@
+package tr.com.aa.tuning;
+
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Sizes the copy buffers and sftp request pipeline of one server to its bandwidth-delay product.
+ * The round trip time is measured with a no-op command before a transfer, at most once a minute,
+ * and every finished transfer reports its throughput. A transfer that reached the rate the socket
+ * buffer allows was held back by it, so the window is doubled for the next one; otherwise it is
+ * set to twice the measured bandwidth times the round trip time .
+ *
+ * <p>Socket buffers are left to the kernel, because an explicit SO_RCVBUF switches off its receive
+ * buffer autotuning, unless a {@link TuningProfile} fixes their size. Either way the connections
+ * report the receive buffer they actually got, which is what the window limit is judged by .
+ */
+@Slf4j
+public class LinkTuner {
+
+  public static final int MIN_BUFFER_SIZE = 64 * 1024;
+  public static final int MAX_BUFFER_SIZE = 16 * 1024 * 1024;
+  public static final int MAX_COPY_BUFFER_SIZE = 1024 * 1024;
+  /**
+   * Buffer size before anything is measured, the old fixed default .
+   */
+  public static final int INITIAL_BUFFER_SIZE = 128 * 1024;
+  /**
+   * Payload of one JSch read or write request .
+   */
+  static final int SFTP_REQUEST_SIZE = 32 * 1024;
+  static final int MIN_SFTP_BULK_REQUESTS = 16;
+  static final int MAX_SFTP_BULK_REQUESTS = 1024;
+  // transfers shorter than this are dominated by tcp slow start and say little about the link
+  private static final long MIN_SAMPLE_BYTES = 4L * 1024 * 1024;
+  private static final long MIN_SAMPLE_NANOS = TimeUnit.MILLISECONDS.toNanos(500);
+  private static final long RTT_MAX_AGE_NANOS = TimeUnit.MINUTES.toNanos(1);
+  private static final double WINDOW_LIMITED = 0.8;
+  private static final double SMOOTHING = 0.3;
+
+  private final String host;
+  private volatile TuningProfile profile;
+  private long rttNanos = -1;
+  private long rttMeasuredAt;
+  private double bytesPerSecond = -1;
+  private int windowSize = INITIAL_BUFFER_SIZE;
+  // SO_RCVBUF the last connection got, -1 until one reported it
+  private int effectiveSocketBufferSize = -1;
+
+  LinkTuner(String host, TuningProfile profile) {
+
+    this.host = host;
+    this.profile = profile;
+  }
+
+  void setProfile(TuningProfile profile) {
+
+    this.profile = profile;
+  }
+
+  /**
+   * @return true if the round trip time should be measured before the next transfer .
+   */
+  public synchronized boolean needsRtt() {
+
+    return rttNanos < 0 || System.nanoTime() - rttMeasuredAt > RTT_MAX_AGE_NANOS;
+  }
+
+  public synchronized void onRtt(long nanos) {
+
+    rttNanos = rttNanos < 0 ? nanos : (long) (SMOOTHING * nanos + (1 - SMOOTHING) * rttNanos);
+    rttMeasuredAt = System.nanoTime();
+  }
+
+  /**
+   * @param receiveBufferSize SO_RCVBUF of a new connection, read back after the buffers were
+   *                          applied .
+   */
+  public synchronized void onSocketBuffer(int receiveBufferSize) {
+
+    if (receiveBufferSize > 0) {
+      effectiveSocketBufferSize = receiveBufferSize;
+    }
+  }
+
+  /**
+   * @param bytes number of bytes the transfer moved .
+   * @param nanos time it took .
+   */
+  public synchronized void onTransfer(long bytes, long nanos) {
+
+    if (bytes < MIN_SAMPLE_BYTES || nanos < MIN_SAMPLE_NANOS || rttNanos <= 0) {
+      return;
+    }
+
+    double rate = bytes * (double) TimeUnit.SECONDS.toNanos(1) / nanos;
+    bytesPerSecond = bytesPerSecond < 0
+        ? rate : SMOOTHING * rate + (1 - SMOOTHING) * bytesPerSecond;
+
+    double rttSeconds = rttNanos / (double) TimeUnit.SECONDS.toNanos(1);
+    int socketBuffer = effectiveSocketBufferSize > 0 ? effectiveSocketBufferSize : windowSize;
+    double windowRate = socketBuffer / rttSeconds;
+    long next = rate >= WINDOW_LIMITED * windowRate
+        ? 2L * Math.max(socketBuffer, windowSize) : (long) (2 * bytesPerSecond * rttSeconds);
+    int size = (int) Math.max(MIN_BUFFER_SIZE, Math.min(MAX_BUFFER_SIZE, next));
+
+    if (size != windowSize) {
+      log.debug("{}: {} B/s at {} ms rtt with a {} B socket buffer, window {} -> {} B", host,
+          (long) rate, TimeUnit.NANOSECONDS.toMillis(rttNanos), socketBuffer, windowSize, size);
+      windowSize = size;
+    }
+  }
+
+  /**
+   * @return SO_RCVBUF and SO_SNDBUF to set on the next connection, 0 to leave them to the kernel .
+   */
+  public int getSocketBufferSize() {
+
+    TuningProfile fixed = profile;
+    return fixed != null && fixed.getSocketBufferSize() > 0 ? fixed.getSocketBufferSize() : 0;
+  }
+
+  /**
+   * @return the measured bandwidth-delay product with headroom, or the fixed socket buffer size .
+   */
+  public synchronized int getWindowSize() {
+
+    int fixed = getSocketBufferSize();
+    return fixed > 0 ? fixed : windowSize;
+  }
+
+  /**
+   * @return SO_RCVBUF the last connection got, -1 before one reported it .
+   */
+  public synchronized int getEffectiveSocketBufferSize() {
+
+    return effectiveSocketBufferSize;
+  }
+
+  /**
+   * @return buffer of the copy loops, half the window within 64 KB and 1 MB .
+   */
+  public int getCopyBufferSize() {
+
+    TuningProfile fixed = profile;
+    if (fixed != null && fixed.getCopyBufferSize() > 0) {
+      return fixed.getCopyBufferSize();
+    }
+    return Math.max(MIN_BUFFER_SIZE, Math.min(MAX_COPY_BUFFER_SIZE, getWindowSize() / 2));
+  }
+
+  /**
+   * @return sftp requests in flight that fill the window .
+   */
+  public int getSftpBulkRequests() {
+
+    TuningProfile fixed = profile;
+    if (fixed != null && fixed.getSftpBulkRequests() > 0) {
+      return fixed.getSftpBulkRequests();
+    }
+    return Math.max(MIN_SFTP_BULK_REQUESTS,
+        Math.min(MAX_SFTP_BULK_REQUESTS, getWindowSize() / SFTP_REQUEST_SIZE));
+  }
+
+  public synchronized long getRttMillis() {
+
+    return rttNanos < 0 ? -1 : TimeUnit.NANOSECONDS.toMillis(rttNanos);
+  }
+
+  /**
+   * @return smoothed throughput of the last transfers, -1 before the first one .
+   */
+  public synchronized long getBytesPerSecond() {
+
+    return (long) bytesPerSecond;
+  }
+
+  public String getHost() {
+
+    return host;
+  }
+
+  @Override
+  public String toString() {
+
+    return String.format("LinkTuner[%s rtt=%dms, rate=%dB/s, window=%dB, socketBuffer=%dB]",
+        host, getRttMillis(), getBytesPerSecond(), getWindowSize(),
+        getEffectiveSocketBufferSize());
+  }
+}
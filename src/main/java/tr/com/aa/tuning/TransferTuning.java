@@ -0,0 +1,36 @@
+package tr.com.aa.tuning;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * One {@link LinkTuner} per server, shared by all connections to it, with optional fixed sizes
+ * per server .
+ */
+public class TransferTuning {
+
+  private final Map<String, LinkTuner> tuners = new ConcurrentHashMap<>();
+  private final Map<String, TuningProfile> profiles = new ConcurrentHashMap<>();
+
+  /**
+   * @param host    server name as given to the client .
+   * @param profile fixed sizes of the server, null to measure all of them again .
+   */
+  public void setHostProfile(String host, TuningProfile profile) {
+
+    if (profile == null) {
+      profiles.remove(host);
+    } else {
+      profiles.put(host, profile);
+    }
+    LinkTuner tuner = tuners.get(host);
+    if (tuner != null) {
+      tuner.setProfile(profile);
+    }
+  }
+
+  public LinkTuner forHost(String host) {
+
+    return tuners.computeIfAbsent(host, h -> new LinkTuner(h, profiles.get(h)));
+  }
+}
@@ -0,0 +1,52 @@
+package tr.com.aa.tuning;
+
+/**
+ * Fixed sizes for a server, used instead of the measured ones. A value of 0 leaves that size to
+ * {@link LinkTuner} .
+ */
+public class TuningProfile {
+
+  private int socketBufferSize;
+  private int copyBufferSize;
+  private int sftpBulkRequests;
+
+  public int getSocketBufferSize() {
+
+    return socketBufferSize;
+  }
+
+  /**
+   * @param socketBufferSize SO_RCVBUF and SO_SNDBUF of the data connections in bytes, 0 (the
+   *                         default) to leave them to the autotuning of the kernel .
+   */
+  public void setSocketBufferSize(int socketBufferSize) {
+
+    this.socketBufferSize = socketBufferSize;
+  }
+
+  public int getCopyBufferSize() {
+
+    return copyBufferSize;
+  }
+
+  /**
+   * @param copyBufferSize buffer of the copy loops in bytes .
+   */
+  public void setCopyBufferSize(int copyBufferSize) {
+
+    this.copyBufferSize = copyBufferSize;
+  }
+
+  public int getSftpBulkRequests() {
+
+    return sftpBulkRequests;
+  }
+
+  /**
+   * @param sftpBulkRequests read or write requests an sftp channel keeps in flight .
+   */
+  public void setSftpBulkRequests(int sftpBulkRequests) {
+
+    this.sftpBulkRequests = sftpBulkRequests;
+  }
+}
@@ -0,0 +1,69 @@
+package tr.com.aa.util;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Keeps large heap buffers for reuse, so that copy loops with a tuned buffer size do not allocate
+ * one per file. The buffers are heap buffers because the copies read from and write to streams,
+ * which need a byte array .
+ */
+public class ByteBufferPool {
+
+  private static final int DEFAULT_BUFFERS_PER_SIZE = 64;
+  private static final ByteBufferPool SHARED = new ByteBufferPool(DEFAULT_BUFFERS_PER_SIZE);
+
+  private final int buffersPerSize;
+  private final ConcurrentMap<Integer, BlockingQueue<ByteBuffer>> buffers =
+      new ConcurrentHashMap<>();
+
+  /**
+   * @param buffersPerSize maximum number of idle buffers kept for every buffer size .
+   */
+  public ByteBufferPool(int buffersPerSize) {
+
+    this.buffersPerSize = buffersPerSize;
+  }
+
+  /**
+   * @return the pool used by the connections .
+   */
+  public static ByteBufferPool shared() {
+
+    return SHARED;
+  }
+
+  /**
+   * @param size capacity of the buffer .
+   * @return a cleared heap buffer of the given capacity, backed by an accessible array .
+   */
+  public ByteBuffer acquire(int size) {
+
+    ByteBuffer buffer = queue(size).poll();
+
+    if (buffer == null) {
+      return ByteBuffer.allocate(size);
+    }
+
+    buffer.clear();
+    return buffer;
+  }
+
+  /**
+   * @param buffer a buffer obtained from {@link #acquire(int)} that is no longer used .
+   */
+  public void release(ByteBuffer buffer) {
+
+    if (buffer != null && buffer.hasArray()) {
+      queue(buffer.capacity()).offer(buffer);
+    }
+  }
+
+  private BlockingQueue<ByteBuffer> queue(int size) {
+
+    return buffers.computeIfAbsent(size, s -> new ArrayBlockingQueue<>(buffersPerSize));
+  }
+}
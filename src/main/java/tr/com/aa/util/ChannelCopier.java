@@ -0,0 +1,80 @@
+package tr.com.aa.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Copy loops of the transfers with one large pooled heap buffer. Neither side of an FTP transfer
+ * is a channel the JDK can copy to without user space: commons-net hands out plain socket
+ * streams. The buffer size decides how much is read and written per call .
+ */
+public class ChannelCopier {
+
+  private ChannelCopier() {
+    // static helpers only
+  }
+
+  /**
+   * Copy everything from the stream into the target at the target's current position .
+   *
+   * @param source     .
+   * @param target     .
+   * @param bufferSize size of the heap buffer used for the copy .
+   * @return number of bytes copied .
+   * @throws IOException .
+   */
+  public static long copy(InputStream source, OutputStream target, int bufferSize)
+      throws IOException {
+
+    ByteBufferPool pool = ByteBufferPool.shared();
+    ByteBuffer buffer = pool.acquire(bufferSize);
+    byte[] bytes = buffer.array();
+    int offset = buffer.arrayOffset();
+    long total = 0;
+
+    try {
+      int read;
+      while ((read = source.read(bytes, offset, bufferSize)) != -1) {
+        target.write(bytes, offset, read);
+        total += read;
+      }
+    } finally {
+      pool.release(buffer);
+    }
+
+    return total;
+  }
+
+  /**
+   * Copy a file from its current position to its end into a stream .
+   *
+   * @param source     .
+   * @param target     .
+   * @param bufferSize size of the heap buffer used for the copy .
+   * @return number of bytes copied .
+   * @throws IOException .
+   */
+  public static long copy(FileChannel source, OutputStream target, int bufferSize)
+      throws IOException {
+
+    ByteBufferPool pool = ByteBufferPool.shared();
+    ByteBuffer buffer = pool.acquire(bufferSize);
+    long total = 0;
+
+    try {
+      int read;
+      while ((read = source.read(buffer)) != -1) {
+        target.write(buffer.array(), buffer.arrayOffset(), read);
+        buffer.clear();
+        total += read;
+      }
+    } finally {
+      pool.release(buffer);
+    }
+
+    return total;
+  }
+}
@@ -4,6 +4,10 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 
 public class FileStreamFactory {
 
@@ -16,4 +20,14 @@ public class FileStreamFactory {
 
     return new FileOutputStream(new File(filePath));
   }
+
+  /**
+   * @param filePath .
+   * @return a channel positioned at the start of the file .
+   * @throws IOException .
+   */
+  public FileChannel createReadChannel(String filePath) throws IOException {
+
+    return FileChannel.open(Paths.get(filePath), StandardOpenOption.READ);
+  }
 }
@@ -88,6 +88,16 @@ public class MyDateUtils {
     return LocalDateTime.ofInstant(Instant.ofEpochMilli(milliseconds), ZoneId.systemDefault());
   }
 
+  /**
+   * @param utcDateTime a date time read in UTC, like the MDTM and MLST answers of ftp servers .
+   * @return the same instant in the system time zone .
+   */
+  public static LocalDateTime fromUtc(LocalDateTime utcDateTime) {
+
+    return utcDateTime.atOffset(ZoneOffset.UTC).atZoneSameInstant(ZoneId.systemDefault())
+        .toLocalDateTime();
+  }
+
   /**
    * @param localDateTime .
    * @return .
@@ -0,0 +1,77 @@
+package tr.com.aa.util;
+
+import java.util.Comparator;
+
+/**
+ * Helpers for the "/" separated paths of the remote side .
+ */
+public final class RemotePaths {
+
+  public static final String FILE_SEPARATOR = "/";
+
+  /**
+   * Parents first, so that a directory is always handled before its children .
+   */
+  public static final Comparator<String> TOP_DOWN =
+      Comparator.comparingInt(RemotePaths::depth).thenComparing(Comparator.naturalOrder());
+
+  private RemotePaths() {
+
+  }
+
+  /**
+   * Collapse repeated separators and drop the trailing one, "/a//b/" becomes "/a/b" .
+   *
+   * @param remotePath .
+   * @return .
+   */
+  public static String normalize(String remotePath) {
+
+    String path = remotePath.replaceAll("/{2,}", FILE_SEPARATOR);
+    if (path.length() > 1 && path.endsWith(FILE_SEPARATOR)) {
+      path = path.substring(0, path.length() - 1);
+    }
+    return path.isEmpty() ? "." : path;
+  }
+
+  /**
+   * @param normalizedPath .
+   * @return the directory holding the path, null for the root and for a bare relative name .
+   */
+  public static String parentOf(String normalizedPath) {
+
+    int index = normalizedPath.lastIndexOf('/');
+    if (index < 0 || normalizedPath.equals(FILE_SEPARATOR)) {
+      return null;
+    }
+    return index == 0 ? FILE_SEPARATOR : normalizedPath.substring(0, index);
+  }
+
+  /**
+   * Join a directory and a name with exactly one separator, "/" and "a" become "/a" .
+   *
+   * @param remoteDirectory .
+   * @param name            .
+   * @return .
+   */
+  public static String child(String remoteDirectory, String name) {
+
+    return remoteDirectory.endsWith(FILE_SEPARATOR)
+        ? remoteDirectory + name : remoteDirectory + FILE_SEPARATOR + name;
+  }
+
+  /**
+   * @param remotePath .
+   * @return number of separators in the path .
+   */
+  public static int depth(String remotePath) {
+
+    int depth = 0;
+    for (int i = 0; i < remotePath.length(); i++) {
+      if (remotePath.charAt(i) == '/') {
+        depth++;
+      }
+    }
+    return depth;
+  }
+}
@@ -0,0 +1,121 @@
+package tr.com.aa.async;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import tr.com.aa.client.ClientFactory.Protocol;
+import tr.com.aa.client.auth.UserCredentials;
+import tr.com.aa.connection.Connection;
+import tr.com.aa.pool.ConnectionKey;
+import tr.com.aa.pool.ConnectionPool;
+
+class TransferSchedulerTest {
+
+  private final ConnectionKey first =
+      new ConnectionKey(Protocol.FTP, "first", 21, UserCredentials.ANONYMOUS);
+  private final ConnectionKey second =
+      new ConnectionKey(Protocol.FTP, "second", 21, UserCredentials.ANONYMOUS);
+  private final ConnectionPool pool = mock(ConnectionPool.class);
+  private final Connection connection = mock(Connection.class);
+  // jobs handed to the executor, run one at a time by the test
+  private final Queue<Runnable> tasks = new ArrayDeque<>();
+  private final List<String> started = new ArrayList<>();
+
+  @BeforeEach
+  void setUp() {
+
+    when(pool.execute(any(), any())).thenAnswer(
+        invocation -> invocation.<Function<Connection, Object>>getArgument(1).apply(connection));
+  }
+
+  @Test
+  void sharesSlotsByWeight() {
+
+    TransferScheduler scheduler = new TransferScheduler(pool, tasks::add, 1, 1);
+    scheduler.setHostWeight(first, 2);
+    scheduler.setHostWeight(second, 1);
+    for (int i = 1; i <= 6; i++) {
+      submit(scheduler, first, TransferScheduler.DEFAULT_PRIORITY, "a" + i);
+    }
+    for (int i = 1; i <= 3; i++) {
+      submit(scheduler, second, TransferScheduler.DEFAULT_PRIORITY, "b" + i);
+    }
+
+    runAll();
+
+    assertThat(started).containsExactly("a1", "a2", "b1", "a3", "a4", "b2", "a5", "a6", "b3");
+  }
+
+  @Test
+  void higherPriorityStartsFirstOnAnyServer() {
+
+    TransferScheduler scheduler = new TransferScheduler(pool, tasks::add, 1, 1);
+    submit(scheduler, first, 0, "running");
+    submit(scheduler, second, 0, "low");
+    submit(scheduler, first, 5, "high");
+
+    runAll();
+
+    assertThat(started).containsExactly("running", "high", "low");
+  }
+
+  @Test
+  void respectsTheHostLimit() {
+
+    TransferScheduler scheduler = new TransferScheduler(pool, tasks::add, 3, 1);
+    submit(scheduler, first, TransferScheduler.DEFAULT_PRIORITY, "a1");
+    submit(scheduler, first, TransferScheduler.DEFAULT_PRIORITY, "a2");
+    submit(scheduler, second, TransferScheduler.DEFAULT_PRIORITY, "b1");
+
+    assertThat(scheduler.getRunning()).isEqualTo(2);
+    assertThat(scheduler.getQueueDepth()).isEqualTo(1);
+
+    runAll();
+
+    assertThat(started).containsExactly("a1", "b1", "a2");
+    assertThat(scheduler.getRunning()).isZero();
+  }
+
+  @Test
+  void cancelledJobIsRemovedFromTheQueue() {
+
+    TransferScheduler scheduler = new TransferScheduler(pool, tasks::add, 1, 1);
+    submit(scheduler, first, TransferScheduler.DEFAULT_PRIORITY, "running");
+    CompletableFuture<String> waiting =
+        submit(scheduler, first, TransferScheduler.DEFAULT_PRIORITY, "cancelled");
+
+    waiting.cancel(false);
+
+    assertThat(scheduler.getQueueDepth()).isZero();
+    assertThat(scheduler.getMetrics(first).getCancelledCount()).isEqualTo(1);
+    runAll();
+    assertThat(started).containsExactly("running");
+  }
+
+  private CompletableFuture<String> submit(TransferScheduler scheduler, ConnectionKey key,
+                                           int priority, String name) {
+
+    return scheduler.submit(key, priority, borrowed -> {
+      started.add(name);
+      return name;
+    });
+  }
+
+  private void runAll() {
+
+    Runnable task;
+    while ((task = tasks.poll()) != null) {
+      task.run();
+    }
+  }
+}
@@ -0,0 +1,55 @@
+package tr.com.aa.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import tr.com.aa.connection.AaFtpFile;
+
+class MetadataCacheTest {
+
+  private static final long MOD_TIME = 1_584_180_900_000L;
+
+  private final MetadataCache cache = new MetadataCache();
+  private final AtomicInteger loads = new AtomicInteger();
+
+  @Test
+  void normalizedAbsolutePathsShareAnEntry() {
+
+    stat("/data//report.csv");
+    stat("/data/report.csv");
+
+    assertThat(loads.get()).isEqualTo(1);
+    assertThat(cache.getHitCount()).isEqualTo(1);
+  }
+
+  @Test
+  void relativePathsAreNotCached() {
+
+    stat("data/report.csv");
+    stat("data/report.csv");
+
+    assertThat(loads.get()).isEqualTo(2);
+    assertThat(cache.size()).isZero();
+  }
+
+  @Test
+  void invalidatingARelativePathClearsTheCache() {
+
+    stat("/home/user/report.csv");
+
+    cache.invalidate("report.csv");
+    stat("/home/user/report.csv");
+
+    assertThat(loads.get()).isEqualTo(2);
+  }
+
+  private Optional<AaFtpFile> stat(String remotePath) {
+
+    return cache.stat(remotePath, () -> {
+      loads.incrementAndGet();
+      return Optional.of(new AaFtpFile("report.csv", 1, remotePath, MOD_TIME, false));
+    });
+  }
+}
@@ -0,0 +1,36 @@
+package tr.com.aa.checksum;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+class ChecksumAlgorithmTest {
+
+  @Test
+  void crcIgnoresLeadingZerosAndCase() {
+
+    assertThat(ChecksumAlgorithm.CRC32.matches("0000beef", "BEEF")).isTrue();
+    assertThat(ChecksumAlgorithm.CRC32C.matches(" 0a1b ", "a1b")).isTrue();
+    assertThat(ChecksumAlgorithm.CRC32.matches("beef", "beee")).isFalse();
+  }
+
+  @Test
+  void crcThatIsNotHexDoesNotMatch() {
+
+    assertThat(ChecksumAlgorithm.CRC32.matches("not hex", "0")).isFalse();
+  }
+
+  @Test
+  void digestsCompareTheWholeValue() {
+
+    assertThat(ChecksumAlgorithm.MD5.matches("ABCDEF ", "abcdef")).isTrue();
+    assertThat(ChecksumAlgorithm.MD5.matches("00abcdef", "abcdef")).isFalse();
+  }
+
+  @Test
+  void missingValueNeverMatches() {
+
+    assertThat(ChecksumAlgorithm.SHA_256.matches(null, "abc")).isFalse();
+    assertThat(ChecksumAlgorithm.SHA_256.matches("abc", null)).isFalse();
+  }
+}
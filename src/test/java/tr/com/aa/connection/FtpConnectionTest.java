@@ -0,0 +1,193 @@
+package tr.com.aa.connection;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.DeflaterOutputStream;
+import org.apache.commons.net.ftp.FTP;
+import org.apache.commons.net.ftp.FTPClient;
+import org.apache.commons.net.ftp.FTPCmd;
+import org.apache.commons.net.ftp.FTPReply;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import tr.com.aa.checksum.ChecksumAlgorithm;
+import tr.com.aa.compression.CompressionOptions;
+import tr.com.aa.exception.FtpException;
+
+class FtpConnectionTest {
+
+  private static final String REMOTE_FILE = "/data/report.csv";
+  private static final byte[] CONTENT =
+      "id;name\n1;compressed and verified\n".getBytes(StandardCharsets.US_ASCII);
+
+  @TempDir
+  Path localDirectory;
+
+  private final FTPClient client = mock(FTPClient.class);
+  // transfer mode of the mocked server, S or Z
+  private final AtomicReference<String> mode = new AtomicReference<>("S");
+
+  @BeforeEach
+  void setUp() throws IOException {
+
+    when(client.hasFeature("MODE", "Z")).thenReturn(true);
+    when(client.sendCommand(eq("MODE"), anyString())).thenAnswer(invocation -> {
+      mode.set(invocation.getArgument(1));
+      return FTPReply.COMMAND_OK;
+    });
+    when(client.sendCommand(FTPCmd.SIZE, REMOTE_FILE)).thenReturn(FTPReply.FILE_STATUS);
+    when(client.getReplyString()).thenReturn(FTPReply.FILE_STATUS + " " + CONTENT.length);
+    when(client.completePendingCommand()).thenReturn(true);
+    when(client.retrieveFileStream(REMOTE_FILE)).thenAnswer(invocation -> dataStream(CONTENT));
+    CRC32 crc = new CRC32();
+    crc.update(CONTENT, 0, CONTENT.length);
+    byte[] sidecar = (Long.toHexString(crc.getValue()) + "  report.csv\n")
+        .getBytes(StandardCharsets.US_ASCII);
+    when(client.retrieveFileStream(REMOTE_FILE + ChecksumAlgorithm.CRC32.getSidecarExtension()))
+        .thenAnswer(invocation -> dataStream(sidecar));
+  }
+
+  @Test
+  void verifiesACompressedDownloadInStreamMode() throws IOException {
+
+    CompressionOptions compression = new CompressionOptions();
+    compression.setMinimumSize(0);
+    FtpConnection connection = new FtpConnection(client);
+    connection.setCompressionOptions(compression);
+    connection.setChecksumAlgorithm(ChecksumAlgorithm.CRC32);
+    connection.setSidecarChecksums(true);
+
+    connection.downloadFile(REMOTE_FILE, localDirectory.toString());
+
+    assertThat(localDirectory.resolve("report.csv")).hasBinaryContent(CONTENT);
+    assertThat(mode.get()).isEqualTo("S");
+  }
+
+  @Test
+  void looksForSidecarsOnlyWhenEnabled() throws IOException {
+
+    FtpConnection connection = new FtpConnection(client);
+    connection.setChecksumAlgorithm(ChecksumAlgorithm.CRC32);
+
+    connection.downloadFile(REMOTE_FILE, localDirectory.toString());
+
+    assertThat(localDirectory.resolve("report.csv")).hasBinaryContent(CONTENT);
+    verify(client, never())
+        .retrieveFileStream(REMOTE_FILE + ChecksumAlgorithm.CRC32.getSidecarExtension());
+  }
+
+  @Test
+  void resetReturnsToTheLoginState() throws IOException {
+
+    when(client.printWorkingDirectory()).thenReturn("/home/user");
+    when(client.changeWorkingDirectory(anyString())).thenReturn(true);
+    when(client.setFileType(FTP.BINARY_FILE_TYPE)).thenReturn(true);
+    FtpConnection connection = new FtpConnection(client);
+    connection.changeDirectory("/data");
+    mode.set("Z");
+
+    connection.reset();
+
+    verify(client).changeWorkingDirectory("/home/user");
+    verify(client).setFileType(FTP.BINARY_FILE_TYPE);
+    // MODE Z was not entered by the connection itself, so it is not left either
+    assertThat(mode.get()).isEqualTo("Z");
+  }
+
+  @Test
+  void resetLeavesTheModeZOfAFailedTransfer() throws IOException {
+
+    when(client.setFileType(FTP.BINARY_FILE_TYPE)).thenReturn(true);
+    when(client.retrieveFileStream(REMOTE_FILE)).thenReturn(null);
+    AtomicInteger modeResets = new AtomicInteger();
+    when(client.sendCommand("MODE", "S")).thenAnswer(invocation -> {
+      // the first MODE S, right after the failed RETR, is rejected
+      if (modeResets.incrementAndGet() == 1) {
+        return FTPReply.UNRECOGNIZED_COMMAND;
+      }
+      mode.set("S");
+      return FTPReply.COMMAND_OK;
+    });
+    CompressionOptions compression = new CompressionOptions();
+    compression.setMinimumSize(0);
+    FtpConnection connection = new FtpConnection(client);
+    connection.setCompressionOptions(compression);
+
+    assertThatThrownBy(() -> connection.downloadFile(REMOTE_FILE, localDirectory.toString()))
+        .isInstanceOf(FtpException.class);
+    assertThat(mode.get()).isEqualTo("Z");
+
+    connection.reset();
+
+    assertThat(mode.get()).isEqualTo("S");
+    verify(client, never()).changeWorkingDirectory(anyString());
+  }
+
+  @Test
+  void streamsTheListingFromTheDataConnection() throws IOException {
+
+    StreamingFTPClient streamingClient = mock(StreamingFTPClient.class);
+    Socket socket = mock(Socket.class);
+    String listing = "type=cdir;modify=20200314101500; /data\r\n"
+        + "type=file;size=10;modify=20200314101500; a.txt\r\n"
+        + "type=dir;modify=20200314101500; sub\r\n";
+    when(streamingClient.hasFeature("MLST")).thenReturn(true);
+    when(streamingClient.getControlEncoding()).thenReturn("UTF-8");
+    when(streamingClient.getReplyCode()).thenReturn(FTPReply.FILE_STATUS_OK);
+    when(streamingClient.openDataConnection(FTPCmd.MLSD, "/data")).thenReturn(socket);
+    when(socket.getInputStream())
+        .thenReturn(new ByteArrayInputStream(listing.getBytes(StandardCharsets.UTF_8)));
+    when(streamingClient.completePendingCommand()).thenReturn(true);
+    FtpConnection connection = new FtpConnection(streamingClient);
+
+    try (Stream<AaFtpFile> entries = connection.streamFiles("/data/")) {
+      Iterator<AaFtpFile> iterator = entries.iterator();
+      assertThat(iterator.next().getAbsolutePath()).isEqualTo("/data/a.txt");
+      // the final reply is read only when the stream is closed
+      verify(streamingClient, never()).completePendingCommand();
+      AaFtpFile directory = iterator.next();
+      assertThat(directory.getName()).isEqualTo("sub");
+      assertThat(directory.isDirectory()).isTrue();
+      assertThat(iterator.hasNext()).isFalse();
+    }
+
+    verify(socket).close();
+    verify(streamingClient, times(1)).completePendingCommand();
+    verify(streamingClient, never()).initiateMListParsing(anyString());
+  }
+
+  /**
+   * What the data connection carries in the current mode .
+   */
+  private InputStream dataStream(byte[] content) throws IOException {
+
+    if (!"Z".equals(mode.get())) {
+      return new ByteArrayInputStream(content);
+    }
+    ByteArrayOutputStream deflated = new ByteArrayOutputStream();
+    try (DeflaterOutputStream out = new DeflaterOutputStream(deflated)) {
+      out.write(content);
+    }
+    return new ByteArrayInputStream(deflated.toByteArray());
+  }
+}
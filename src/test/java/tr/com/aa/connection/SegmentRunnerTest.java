@@ -0,0 +1,41 @@
+package tr.com.aa.connection;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.junit.jupiter.api.Test;
+import tr.com.aa.exception.FtpException;
+
+class SegmentRunnerTest {
+
+  private final List<Segment> plan = Segment.split(30, 3, 0);
+
+  @Test
+  void runsEverySegment() {
+
+    Set<Integer> done = ConcurrentHashMap.newKeySet();
+
+    SegmentRunner.run("/data/big.bin", plan, segment -> done.add(segment.getIndex()));
+
+    assertThat(done).containsExactlyInAnyOrder(0, 1, 2);
+  }
+
+  @Test
+  void firstFailureIsThrownWithTheOthersSuppressed() {
+
+    Throwable thrown = catchThrowable(() -> SegmentRunner.run("/data/big.bin", plan, segment -> {
+      if (segment.getIndex() > 0) {
+        throw new IOException("segment " + segment.getIndex());
+      }
+    }));
+
+    assertThat(thrown).isInstanceOf(FtpException.class).hasMessageContaining("/data/big.bin");
+    assertThat(thrown.getCause()).hasMessage("segment 1");
+    assertThat(thrown.getSuppressed()).extracting(Throwable::getMessage)
+        .containsExactly("segment 2");
+  }
+}
@@ -0,0 +1,36 @@
+package tr.com.aa.connection;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class SegmentTest {
+
+  @Test
+  void splitsIntoNearlyEqualContiguousSegments() {
+
+    List<Segment> segments = Segment.split(10, 3, 0);
+
+    assertThat(segments).extracting(Segment::getLength).containsExactly(4L, 3L, 3L);
+    assertThat(segments).extracting(Segment::getOffset).containsExactly(0L, 4L, 7L);
+    assertThat(segments).extracting(Segment::getIndex).containsExactly(0, 1, 2);
+    assertThat(segments.get(2).getEnd()).isEqualTo(10);
+  }
+
+  @Test
+  void minimumSizeLimitsTheCount() {
+
+    assertThat(Segment.split(100, 8, 30)).hasSize(3);
+    assertThat(Segment.split(10, 8, 30)).hasSize(1);
+  }
+
+  @Test
+  void emptyFileIsOneEmptySegment() {
+
+    List<Segment> segments = Segment.split(0, 4, 16);
+
+    assertThat(segments).hasSize(1);
+    assertThat(segments.get(0).getLength()).isZero();
+  }
+}
@@ -0,0 +1,118 @@
+package tr.com.aa.delta;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import tr.com.aa.connection.Segment;
+
+class BlockManifestTest {
+
+  private static final int BLOCK_SIZE = 4;
+
+  @TempDir
+  Path directory;
+
+  @Test
+  void sameContentHasNoChangedRanges() {
+
+    assertThat(manifest("aaaabbbbcc").changedRanges(manifest("aaaabbbbcc"))).isEmpty();
+  }
+
+  @Test
+  void changedBlockIsOneRange() {
+
+    List<Segment> ranges = manifest("aaaaXbbbcccc").changedRanges(manifest("aaaabbbbcccc"));
+
+    assertThat(ranges).hasSize(1);
+    assertRange(ranges.get(0), 4, 4);
+  }
+
+  @Test
+  void adjacentChangedBlocksAreMerged() {
+
+    List<Segment> ranges =
+        manifest("XaaabbbXccccddXd").changedRanges(manifest("aaaabbbbccccdddd"));
+
+    assertThat(ranges).hasSize(2);
+    assertRange(ranges.get(0), 0, 8);
+    assertRange(ranges.get(1), 12, 4);
+  }
+
+  @Test
+  void appendedBytesEndAtTheFileSize() {
+
+    List<Segment> ranges = manifest("aaaabbbbcc").changedRanges(manifest("aaaabbbb"));
+
+    assertThat(ranges).hasSize(1);
+    assertRange(ranges.get(0), 8, 2);
+  }
+
+  @Test
+  void grownLastBlockIsChanged() {
+
+    List<Segment> ranges = manifest("aaaabbbbccc").changedRanges(manifest("aaaabbbbc"));
+
+    assertThat(ranges).hasSize(1);
+    assertRange(ranges.get(0), 8, 3);
+  }
+
+  @Test
+  void truncatedFileHasNoRangeBeyondItsEnd() {
+
+    assertThat(manifest("aaaabbbb").changedRanges(manifest("aaaabbbbcccc"))).isEmpty();
+  }
+
+  @Test
+  void differentBlockSizesAreRejected() {
+
+    BlockManifest other = hash("aaaabbbb", BLOCK_SIZE * 2);
+
+    assertThatThrownBy(() -> manifest("aaaabbbb").changedRanges(other))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  void hashingAFileMatchesHashingItsBytes() throws IOException {
+
+    Path file = directory.resolve("data.bin");
+    Files.write(file, "aaaabbbbccccd".getBytes(StandardCharsets.US_ASCII));
+
+    BlockManifest manifest;
+    try (FileChannel channel = FileChannel.open(file)) {
+      manifest = BlockManifest.of(channel, BLOCK_SIZE);
+    }
+
+    assertThat(manifest.getFileSize()).isEqualTo(13);
+    assertThat(manifest.getBlockCount()).isEqualTo(4);
+    assertThat(manifest.changedRanges(manifest("aaaabbbbccccd"))).isEmpty();
+  }
+
+  private static BlockManifest manifest(String content) {
+
+    return hash(content, BLOCK_SIZE);
+  }
+
+  private static BlockManifest hash(String content, int blockSize) {
+
+    BlockManifest.Hasher hasher = new BlockManifest.Hasher(blockSize);
+    byte[] bytes = content.getBytes(StandardCharsets.US_ASCII);
+    // in two parts, so that a block is split across updates
+    hasher.update(bytes, 0, bytes.length / 2 + 1);
+    hasher.update(bytes, bytes.length / 2 + 1, bytes.length - bytes.length / 2 - 1);
+    return hasher.finish();
+  }
+
+  private static void assertRange(Segment range, long offset, long length) {
+
+    assertThat(range.getOffset()).isEqualTo(offset);
+    assertThat(range.getLength()).isEqualTo(length);
+  }
+}
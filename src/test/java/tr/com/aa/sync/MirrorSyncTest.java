@@ -0,0 +1,98 @@
+package tr.com.aa.sync;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import tr.com.aa.client.ClientFactory.Protocol;
+import tr.com.aa.client.auth.UserCredentials;
+import tr.com.aa.connection.AaFtpFile;
+import tr.com.aa.connection.Connection;
+import tr.com.aa.exception.FtpException;
+import tr.com.aa.pool.ConnectionKey;
+import tr.com.aa.pool.ConnectionPool;
+
+class MirrorSyncTest {
+
+  private static final long MOD_TIME = 1_584_180_900_000L;
+
+  @TempDir
+  Path localRoot;
+
+  private final ConnectionKey key =
+      new ConnectionKey(Protocol.FTP, "localhost", 21, UserCredentials.ANONYMOUS);
+  private final ConnectionPool pool = mock(ConnectionPool.class);
+  private final Connection connection = mock(Connection.class);
+
+  @BeforeEach
+  void setUp() {
+
+    when(pool.execute(eq(key), any())).thenAnswer(
+        invocation -> invocation.<Function<Connection, Object>>getArgument(1).apply(connection));
+    when(connection.streamFiles("/remote")).thenAnswer(invocation -> Stream.of(
+        new AaFtpFile("empty.txt", 0, "/remote/empty.txt", MOD_TIME, false),
+        new AaFtpFile("data.txt", 3, "/remote/data.txt", MOD_TIME, false)));
+    doAnswer(invocation -> {
+      Files.write(Paths.get(invocation.<String>getArgument(1), invocation.getArgument(2)),
+          new byte[3]);
+      return null;
+    }).when(connection).downloadFile(eq("/remote/data.txt"), anyString(), anyString(),
+        anyBoolean(), anyBoolean());
+  }
+
+  @Test
+  void mirrorsZeroByteFiles() {
+
+    MirrorSync sync = new MirrorSync(pool, key, 2);
+
+    SyncResult first = sync.mirror("/remote", localRoot.toString());
+
+    assertThat(first.getAdded()).isEqualTo(2);
+    assertThat(first.getFailed()).isZero();
+    assertThat(localRoot.resolve("empty.txt")).exists().hasBinaryContent(new byte[0]);
+    verify(connection, never()).downloadFile(eq("/remote/empty.txt"), anyString(), any(),
+        anyBoolean(), anyBoolean());
+
+    SyncResult second = sync.mirror("/remote", localRoot.toString());
+
+    assertThat(second.getUnchanged()).isEqualTo(2);
+    assertThat(second.getAdded()).isZero();
+  }
+
+  @Test
+  void keepsTheLocalCopyWhenTheDownloadFails() throws IOException {
+
+    Path data = localRoot.resolve("data.txt");
+    Files.write(data, new byte[5]);
+    doAnswer(invocation -> {
+      Files.write(Paths.get(invocation.<String>getArgument(1), invocation.getArgument(2)),
+          new byte[1]);
+      throw new FtpException("Connection reset");
+    }).when(connection).downloadFile(eq("/remote/data.txt"), anyString(), anyString(),
+        anyBoolean(), anyBoolean());
+    MirrorSync sync = new MirrorSync(pool, key, 2);
+
+    assertThatThrownBy(() -> sync.mirror("/remote", localRoot.toString()))
+        .isInstanceOf(FtpException.class);
+
+    assertThat(data).hasBinaryContent(new byte[5]);
+    assertThat(localRoot.resolve(".data.txt.part")).doesNotExist();
+  }
+}
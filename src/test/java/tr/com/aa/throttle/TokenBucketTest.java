@@ -0,0 +1,97 @@
+package tr.com.aa.throttle;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+class TokenBucketTest {
+
+  private static final long MB = 1024 * 1024;
+  // generous bounds, the tests only tell waiting from not waiting
+  private static final long NO_WAIT_MILLIS = 100;
+  private static final long WAIT_MILLIS = 150;
+
+  @Test
+  void unlimitedBucketNeverWaits() throws InterruptedIOException {
+
+    TokenBucket bucket = new TokenBucket(TokenBucket.UNLIMITED, null);
+
+    assertThat(millis(() -> bucket.acquire(100 * MB))).isLessThan(NO_WAIT_MILLIS);
+  }
+
+  @Test
+  void burstIsAvailableAtOnce() throws InterruptedIOException {
+
+    // a quarter of a second of the rate
+    TokenBucket bucket = new TokenBucket(4 * MB, null);
+
+    assertThat(millis(() -> bucket.acquire(MB))).isLessThan(NO_WAIT_MILLIS);
+  }
+
+  @Test
+  void debtIsPaidByWaiting() throws InterruptedIOException {
+
+    TokenBucket bucket = new TokenBucket(MB, null);
+    bucket.acquire(MB / 4);
+
+    // 256 KB beyond the burst at 1 MB/s
+    assertThat(millis(() -> bucket.acquire(MB / 4))).isGreaterThanOrEqualTo(WAIT_MILLIS);
+  }
+
+  @Test
+  void refillsOverTime() throws InterruptedException, InterruptedIOException {
+
+    TokenBucket bucket = new TokenBucket(4 * MB, null);
+    bucket.acquire(MB);
+
+    TimeUnit.MILLISECONDS.sleep(300);
+
+    assertThat(millis(() -> bucket.acquire(MB))).isLessThan(NO_WAIT_MILLIS);
+  }
+
+  @Test
+  void refillIsCappedAtTheBurst() throws InterruptedException, InterruptedIOException {
+
+    TokenBucket bucket = new TokenBucket(MB, null);
+
+    TimeUnit.MILLISECONDS.sleep(300);
+
+    // the idle time saved up only the 256 KB burst, not 300 ms of the rate
+    assertThat(millis(() -> bucket.acquire(MB / 2))).isGreaterThanOrEqualTo(WAIT_MILLIS);
+  }
+
+  @Test
+  void parentLimitsItsChildren() throws InterruptedIOException {
+
+    TokenBucket parent = new TokenBucket(MB, null);
+    TokenBucket child = new TokenBucket(TokenBucket.UNLIMITED, parent);
+    child.acquire(MB / 4);
+
+    assertThat(millis(() -> child.acquire(MB / 4))).isGreaterThanOrEqualTo(WAIT_MILLIS);
+  }
+
+  @Test
+  void removingTheRateEndsTheLimit() throws InterruptedIOException {
+
+    TokenBucket bucket = new TokenBucket(MB, null);
+    bucket.acquire(MB / 4);
+
+    bucket.setRate(TokenBucket.UNLIMITED);
+
+    assertThat(millis(() -> bucket.acquire(MB))).isLessThan(NO_WAIT_MILLIS);
+  }
+
+  private static long millis(Acquisition acquisition) throws InterruptedIOException {
+
+    long start = System.nanoTime();
+    acquisition.run();
+    return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+  }
+
+  private interface Acquisition {
+
+    void run() throws InterruptedIOException;
+  }
+}
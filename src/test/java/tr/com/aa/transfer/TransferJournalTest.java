@@ -0,0 +1,118 @@
+package tr.com.aa.transfer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import tr.com.aa.connection.AaFtpFile;
+import tr.com.aa.exception.FtpException;
+
+class TransferJournalTest {
+
+  private static final long MOD_TIME = 1_584_180_900_000L;
+
+  @TempDir
+  Path directory;
+
+  @Test
+  void replaysTheRecordsOfAnEarlierRun() {
+
+    Path file = directory.resolve("job.journal");
+    TransferJournal journal = TransferJournal.open(file);
+    journal.listed("/remote", Arrays.asList(
+        new AaFtpFile("a.txt", 10, "/remote/a.txt", MOD_TIME, false),
+        new AaFtpFile("sub", 0, "/remote/sub", MOD_TIME, true)));
+    journal.started("/remote/a.txt", 0);
+    journal.failed("/remote/a.txt", 4);
+    journal.completed("/remote/b.txt");
+    journal.close();
+
+    TransferJournal replayed = TransferJournal.open(file);
+
+    List<AaFtpFile> listing = replayed.getListing("/remote");
+    assertThat(listing).extracting(AaFtpFile::getName).containsExactly("a.txt", "sub");
+    assertThat(listing.get(0).getSize()).isEqualTo(10);
+    assertThat(listing.get(0).isDirectory()).isFalse();
+    assertThat(listing.get(1).isDirectory()).isTrue();
+    assertThat(replayed.getListing("/remote/sub")).isNull();
+    assertThat(replayed.getOffset("/remote/a.txt")).isEqualTo(4);
+    assertThat(replayed.getOffset("/remote/b.txt")).isEqualTo(-1);
+    assertThat(replayed.isCompleted("/remote/b.txt")).isTrue();
+    assertThat(replayed.isCompleted("/remote/a.txt")).isFalse();
+    assertThat(replayed.getCompletedCount()).isEqualTo(1);
+    replayed.close();
+  }
+
+  @Test
+  void escapesSeparatorsInNamesAndPaths() {
+
+    Path file = directory.resolve("job.journal");
+    String name = "tab\there\nnew\\line";
+    String path = "/remote/" + name;
+    TransferJournal journal = TransferJournal.open(file);
+    journal.listed("/remote", Arrays.asList(new AaFtpFile(name, 1, path, MOD_TIME, false)));
+    journal.completed(path);
+    journal.close();
+
+    TransferJournal replayed = TransferJournal.open(file);
+
+    assertThat(replayed.getListing("/remote")).extracting(AaFtpFile::getName)
+        .containsExactly(name);
+    assertThat(replayed.getListing("/remote")).extracting(AaFtpFile::getAbsolutePath)
+        .containsExactly(path);
+    assertThat(replayed.isCompleted(path)).isTrue();
+    replayed.close();
+  }
+
+  @Test
+  void ignoresATornLastLine() throws IOException {
+
+    Path file = directory.resolve("job.journal");
+    TransferJournal journal = TransferJournal.open(file);
+    journal.completed("/remote/a.txt");
+    journal.close();
+    Files.write(file, "S\t/remote/b.txt".getBytes(StandardCharsets.UTF_8),
+        StandardOpenOption.APPEND);
+
+    TransferJournal replayed = TransferJournal.open(file);
+
+    assertThat(replayed.isCompleted("/remote/a.txt")).isTrue();
+    assertThat(replayed.getOffset("/remote/b.txt")).isEqualTo(-1);
+    replayed.close();
+  }
+
+  @Test
+  void listingWithoutItsEndRecordIsNotReplayed() throws IOException {
+
+    Path file = directory.resolve("job.journal");
+    Files.write(file, ("E\t/remote\tf\t1\t" + MOD_TIME + "\t/remote/a.txt\ta.txt\n")
+        .getBytes(StandardCharsets.UTF_8));
+
+    TransferJournal replayed = TransferJournal.open(file);
+
+    assertThat(replayed.getListing("/remote")).isNull();
+    replayed.close();
+  }
+
+  @Test
+  void deleteRemovesTheFile() {
+
+    Path file = directory.resolve("nested").resolve("job.journal");
+    TransferJournal journal = TransferJournal.open(file);
+    journal.completed("/remote/a.txt");
+
+    journal.delete();
+
+    assertThat(file).doesNotExist();
+    assertThatThrownBy(() -> journal.completed("/remote/b.txt"))
+        .isInstanceOf(FtpException.class);
+  }
+}
@@ -0,0 +1,60 @@
+package tr.com.aa.tuning;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+class LinkTunerTest {
+
+  private static final long RTT_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+  private static final long ONE_SECOND = TimeUnit.SECONDS.toNanos(1);
+  private static final int MB = 1024 * 1024;
+
+  @Test
+  void leavesSocketBuffersToTheKernel() {
+
+    LinkTuner tuner = new LinkTuner("host", null);
+
+    assertThat(tuner.getSocketBufferSize()).isZero();
+    assertThat(tuner.getWindowSize()).isEqualTo(LinkTuner.INITIAL_BUFFER_SIZE);
+  }
+
+  @Test
+  void profileFixesTheSocketBuffers() {
+
+    TuningProfile profile = new TuningProfile();
+    profile.setSocketBufferSize(4 * MB);
+    LinkTuner tuner = new LinkTuner("host", profile);
+
+    assertThat(tuner.getSocketBufferSize()).isEqualTo(4 * MB);
+    assertThat(tuner.getWindowSize()).isEqualTo(4 * MB);
+  }
+
+  @Test
+  void windowLimitIsJudgedByTheEffectiveBuffer() {
+
+    LinkTuner tuner = new LinkTuner("host", null);
+    tuner.onRtt(RTT_NANOS);
+    tuner.onSocketBuffer(8 * MB);
+
+    // 8 MB/s over 100 ms is 800 KB in flight, far below the 8 MB the socket got
+    tuner.onTransfer(8L * MB, ONE_SECOND);
+
+    assertThat(tuner.getEffectiveSocketBufferSize()).isEqualTo(8 * MB);
+    assertThat(tuner.getWindowSize()).isEqualTo((int) (2 * 8L * MB / 10));
+  }
+
+  @Test
+  void windowGrowsWhenTheEffectiveBufferHeldTheTransferBack() {
+
+    LinkTuner tuner = new LinkTuner("host", null);
+    tuner.onRtt(RTT_NANOS);
+    tuner.onSocketBuffer(MB);
+
+    // 10 MB/s over 100 ms fills the 1 MB the socket got
+    tuner.onTransfer(10L * MB, ONE_SECOND);
+
+    assertThat(tuner.getWindowSize()).isEqualTo(2 * MB);
+  }
+}
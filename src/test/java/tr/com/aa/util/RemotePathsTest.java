@@ -0,0 +1,45 @@
+package tr.com.aa.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class RemotePathsTest {
+
+  @Test
+  void normalizeCollapsesSeparators() {
+
+    assertThat(RemotePaths.normalize("/a//b/")).isEqualTo("/a/b");
+    assertThat(RemotePaths.normalize("//")).isEqualTo("/");
+    assertThat(RemotePaths.normalize("")).isEqualTo(".");
+  }
+
+  @Test
+  void parentOf() {
+
+    assertThat(RemotePaths.parentOf("/a/b")).isEqualTo("/a");
+    assertThat(RemotePaths.parentOf("/a")).isEqualTo("/");
+    assertThat(RemotePaths.parentOf("/")).isNull();
+    assertThat(RemotePaths.parentOf("a")).isNull();
+  }
+
+  @Test
+  void childJoinsWithOneSeparator() {
+
+    assertThat(RemotePaths.child("/", "sub")).isEqualTo("/sub");
+    assertThat(RemotePaths.child("/a", "sub")).isEqualTo("/a/sub");
+    assertThat(RemotePaths.child("a", "sub")).isEqualTo("a/sub");
+  }
+
+  @Test
+  void topDownSortsParentsFirst() {
+
+    List<String> paths = Arrays.asList("/b/c", "/a/b/c", "/b", "/a");
+
+    paths.sort(RemotePaths.TOP_DOWN);
+
+    assertThat(paths).containsExactly("/a", "/b", "/b/c", "/a/b/c");
+  }
+}